@@ -1,7 +1,12 @@
 package ac.il.bgu.qa;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * Represents a book with its essential details and borrowing status.
+ * A book may stand for several physical copies of the same title; borrowing takes one copy and
+ * returning gives one back. The available copies are counted atomically without locking, so
+ * concurrent borrowers of the same book each get a distinct copy or fail.
  */
 public class Book {
     // The International Standard Book Number (ISBN) uniquely identifying the book.
@@ -10,8 +15,14 @@ public class Book {
     private final String title;
     // The name of the author of the book.
     private final String author;
-    // Status to check if the book is currently borrowed or not.
-    private boolean isBorrowed;
+    // The number of physical copies of the book.
+    private final int copies;
+    // The number of copies not currently borrowed.
+    private volatile int availableCopies;
+
+    // Updates availableCopies atomically without a separate AtomicInteger per book.
+    private static final AtomicIntegerFieldUpdater<Book> AVAILABLE_COPIES =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "availableCopies");
 
     /**
      * Constructs a new Book object.
@@ -21,10 +32,26 @@ public class Book {
      * @param author The author of the book.
      */
     public Book(String ISBN, String title, String author) {
+        this(ISBN, title, author, 1);
+    }
+
+    /**
+     * Constructs a new Book object with several copies, all of them available.
+     *
+     * @param ISBN   The International Standard Book Number (ISBN) of the book.
+     * @param title  The title of the book.
+     * @param author The author of the book.
+     * @param copies The number of physical copies, at least 1.
+     */
+    public Book(String ISBN, String title, String author, int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("Invalid number of copies.");
+        }
         this.ISBN = ISBN;
         this.title = title;
         this.author = author;
-        this.isBorrowed = false;
+        this.copies = copies;
+        this.availableCopies = copies;
     }
 
     // Getter methods
@@ -56,36 +83,67 @@ public class Book {
         return author;
     }
 
+    /**
+     * Retrieves the number of physical copies of the book.
+     *
+     * @return The number of copies.
+     */
+    public int getCopies() {
+        return copies;
+    }
+
+    /**
+     * Retrieves the number of copies not currently borrowed.
+     *
+     * @return The number of available copies.
+     */
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
     /**
      * Checks the borrowing status of the book.
      *
-     * @return true if the book is borrowed, otherwise false.
+     * @return true if every copy of the book is borrowed, otherwise false.
      */
     public boolean isBorrowed() {
-        return isBorrowed;
+        return availableCopies == 0;
     }
 
     /**
-     * Marks the book as borrowed.
-     * Throws an exception if the book is already borrowed.
+     * Checks whether any copy of the book is borrowed.
+     *
+     * @return true if at least one copy is borrowed, otherwise false.
+     */
+    public boolean hasBorrowedCopies() {
+        return getAvailableCopies() < getCopies();
+    }
+
+    /**
+     * Marks one copy of the book as borrowed.
+     * Throws an exception if every copy is already borrowed.
      */
     public void borrow() {
-        if (!isBorrowed) {
-            isBorrowed = true;
-        } else {
-            throw new IllegalStateException("Book is already borrowed!");
-        }
+        int available;
+        do {
+            available = availableCopies;
+            if (available == 0) {
+                throw new IllegalStateException("Book is already borrowed!");
+            }
+        } while (!AVAILABLE_COPIES.compareAndSet(this, available, available - 1));
     }
 
     /**
-     * Marks the book as returned/not borrowed.
-     * Throws an exception if the book was not previously borrowed.
+     * Marks one copy of the book as returned/not borrowed.
+     * Throws an exception if no copy was previously borrowed.
      */
     public void returnBook() {
-        if (isBorrowed) {
-            isBorrowed = false;
-        } else {
-            throw new IllegalStateException("ac.il.bgu.qa.Book wasn't borrowed!");
-        }
+        int available;
+        do {
+            available = availableCopies;
+            if (available == copies) {
+                throw new IllegalStateException("ac.il.bgu.qa.Book wasn't borrowed!");
+            }
+        } while (!AVAILABLE_COPIES.compareAndSet(this, available, available + 1));
     }
 }
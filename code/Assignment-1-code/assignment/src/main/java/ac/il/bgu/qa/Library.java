@@ -1,10 +1,25 @@
 package ac.il.bgu.qa;
 
 import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.events.EventPublisher;
+import ac.il.bgu.qa.events.LibraryEvent;
+import ac.il.bgu.qa.filter.BloomFilter;
+import ac.il.bgu.qa.limit.AdaptiveConcurrencyLimiter;
+import ac.il.bgu.qa.limit.Priority;
+import ac.il.bgu.qa.metrics.MetricsRecorder;
+import ac.il.bgu.qa.metrics.NoopMetricsRecorder;
+import ac.il.bgu.qa.popularity.PopularityTracker;
+import ac.il.bgu.qa.services.AsyncDatabaseService;
 import ac.il.bgu.qa.services.DatabaseService;
 import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.ReviewServicePool;
+import ac.il.bgu.qa.tracing.Span;
+import ac.il.bgu.qa.tracing.Tracer;
+import ac.il.bgu.qa.warmup.LibraryWarmUp;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Represents a library which manages a collection of books and users.
@@ -14,21 +29,223 @@ public class Library {
     // Service to interact with the database
     private final DatabaseService databaseService;
 
+    // Service for pure lookups that do not lead to a write, the database service unless configured
+    private DatabaseService lookupService;
+
+    // Non-blocking view of the database, used to fetch a book and a user at once when configured
+    private AsyncDatabaseService asyncLookupService;
+
     // Service to fetch reviews for a book
     private final ReviewService reviewService;
 
+    // Pool of review service connections, used instead of reviewService when configured
+    private ReviewServicePool reviewServicePool;
+
+    // Recorder for operation counters and latencies, disabled unless configured
+    private MetricsRecorder metrics = NoopMetricsRecorder.INSTANCE;
+
+    // Tracer for per-operation spans, disabled unless configured
+    private Tracer tracer = Tracer.NOOP;
+
+    // Whether the library's own failure exceptions are created without stack traces
+    private boolean stacklessExceptions;
+
+    // Receives an event for every successful state change, disabled unless configured
+    private EventPublisher eventPublisher = EventPublisher.NOOP;
+
+    // Limits the operations running at once, unlimited unless configured
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    // Track the most borrowed and the most looked-up ISBNs, unless null
+    private PopularityTracker borrowPopularity;
+    private PopularityTracker lookupPopularity;
+
+    // The warm-up that must finish before the library reports itself ready, unless null
+    private volatile LibraryWarmUp warmUp;
+
+    // Filters over the known ISBNs and user Ids that rule out missing records without a lookup, unless null
+    private BloomFilter isbnFilter;
+    private BloomFilter userIdFilter;
+
     // Constructor for Library, initializes both services
     public Library(DatabaseService databaseService, ReviewService reviewService) {
         this.databaseService = databaseService;
+        this.lookupService = databaseService;
         this.reviewService = reviewService;
     }
 
+    /**
+     * Sets the service used for pure lookups: fetching a book in getBookByISBN, and the book and user
+     * in notifyUserWithBookReviews. Lookups that guard a write, such as the checks made before borrowing,
+     * always use the database service given to the constructor. Typically a read-replica view, which
+     * may lag behind the database service.
+     * Should be called before the library is shared between threads.
+     *
+     * @param lookupService The lookup service, or null to use the database service given to the constructor.
+     */
+    public void setLookupService(DatabaseService lookupService) {
+        this.lookupService = lookupService == null ? databaseService : lookupService;
+    }
+
+    /**
+     * Sets a non-blocking view of the database used to fetch the book and the user concurrently
+     * in borrowBook and notifyUserWithBookReviews, instead of one after the other. Validation
+     * failures are still reported in the same order as without it. The service must read the same
+     * data as the database service, e.g. a BlockingDatabaseServiceAdapter wrapping it.
+     * Should be called before the library is shared between threads.
+     *
+     * @param asyncLookupService The non-blocking service, or null to fetch sequentially.
+     */
+    public void setAsyncLookupService(AsyncDatabaseService asyncLookupService) {
+        this.asyncLookupService = asyncLookupService;
+    }
+
+    /**
+     * Sets a pool of review service connections. When set, reviews are fetched with a connection
+     * leased from the pool and handed back afterwards, instead of using the review service given
+     * to the constructor and closing it after every fetch.
+     * Should be called before the library is shared between threads.
+     *
+     * @param reviewServicePool The pool, or null to use the review service given to the constructor.
+     */
+    public void setReviewServicePool(ReviewServicePool reviewServicePool) {
+        this.reviewServicePool = reviewServicePool;
+    }
+
+    /**
+     * Sets the recorder for per-operation success and failure counters and latencies.
+     * Should be called before the library is shared between threads.
+     *
+     * @param metrics The metrics recorder, or null to disable metrics.
+     */
+    public void setMetrics(MetricsRecorder metrics) {
+        this.metrics = metrics == null ? NoopMetricsRecorder.INSTANCE : metrics;
+    }
+
+    /**
+     * Sets the tracer used to start a span for every operation and notification attempt.
+     * Service calls get child spans when the services are wrapped in tracing decorators.
+     * Should be called before the library is shared between threads.
+     *
+     * @param tracer The tracer, or null to disable tracing.
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer == null ? Tracer.NOOP : tracer;
+    }
+
+    /**
+     * Sets whether the exceptions the library raises for expected failures, such as a missing or
+     * already borrowed book, are created without stack traces. Filling in stack traces dominates the
+     * cost of failing calls; stackless exceptions keep their type and message.
+     * Should be called before the library is shared between threads.
+     *
+     * @param stacklessExceptions true to omit stack traces, false to keep them.
+     */
+    public void setStacklessExceptions(boolean stacklessExceptions) {
+        this.stacklessExceptions = stacklessExceptions;
+    }
+
+    /**
+     * Sets the publisher receiving an event after every book added, user registered, book borrowed and
+     * book returned. Events are published only after the database write succeeded.
+     * Should be called before the library is shared between threads.
+     *
+     * @param eventPublisher The event publisher, or null to disable events.
+     */
+    public void setEventPublisher(EventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher == null ? EventPublisher.NOOP : eventPublisher;
+    }
+
+    /**
+     * Sets Bloom filters over the known ISBNs and user Ids. A book or user the filter has never seen is
+     * reported as missing without querying the database; books added and users registered through the
+     * library are added to the filters. Every ISBN and user Id already in the database, or written to it
+     * other than through this library, must be added to the filters too, or those records will be
+     * reported as missing. Saved lookups are counted as library.filter.isbn.negative and
+     * library.filter.userId.negative, lookups let through that found nothing as
+     * library.filter.isbn.falsePositive and library.filter.userId.falsePositive.
+     * Should be called before the library is shared between threads.
+     *
+     * @param isbnFilter   The filter over known ISBNs, or null to always look books up.
+     * @param userIdFilter The filter over known user Ids, or null to always look users up.
+     */
+    public void setMembershipFilters(BloomFilter isbnFilter, BloomFilter userIdFilter) {
+        this.isbnFilter = isbnFilter;
+        this.userIdFilter = userIdFilter;
+    }
+
+    /**
+     * Sets the limiter bounding the number of operations running at once. Borrowing and returning are
+     * admitted with CRITICAL priority, the review notification sent by getBookByISBN with OPTIONAL
+     * priority, and everything else with STANDARD priority. Operations the limiter rejects fail
+     * immediately with a LibraryOverloadedException; a rejected notification inside getBookByISBN is
+     * skipped like any other failed notification.
+     * Should be called before the library is shared between threads.
+     *
+     * @param concurrencyLimiter The limiter, or null to admit every operation.
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Sets the trackers of the most popular books. Every successful borrowBook records the ISBN in the
+     * borrow tracker, and every getBookByISBN that finds its book records the ISBN in the lookup tracker.
+     * Should be called before the library is shared between threads.
+     *
+     * @param borrowPopularity The tracker of borrowed ISBNs, or null to not track borrowing.
+     * @param lookupPopularity The tracker of looked-up ISBNs, or null to not track lookups.
+     */
+    public void setPopularityTrackers(PopularityTracker borrowPopularity, PopularityTracker lookupPopularity) {
+        this.borrowPopularity = borrowPopularity;
+        this.lookupPopularity = lookupPopularity;
+    }
+
+    /**
+     * Sets the warm-up that must finish before {@link #isReady()} reports the library ready. The warm-up
+     * is started by its owner, typically right after the library is constructed.
+     *
+     * @param warmUp The warm-up, or null to be ready at once.
+     */
+    public void setWarmUp(LibraryWarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Checks whether the library should take traffic, e.g. for a load balancer's readiness probe.
+     *
+     * @return true if no warm-up is set or the warm-up has finished, otherwise false.
+     */
+    public boolean isReady() {
+        LibraryWarmUp current = warmUp;
+        return current == null || current.isReady();
+    }
+
     /**
      * Adds a book to the library's collection.
      *
      * @param book The book to be added.
      */
     public void addBook(Book book) {
+        Span span = tracer.startSpan("library.addBook");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.STANDARD);
+            doAddBook(book);
+            recordSuccess("addBook", start);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("addBook", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    // See addBook.
+    private void doAddBook(Book book) {
         // Multiple checks to validate the book object's properties
         if (book == null) {
             throw new IllegalArgumentException("Invalid book.");
@@ -38,16 +255,27 @@ public class Library {
             throw new IllegalArgumentException("Invalid title.");
         } else if (!isAuthorValid(book.getAuthor())) {
             throw new IllegalArgumentException("Invalid author.");
-        } else if (book.isBorrowed()) {
+        } else if (book.isBorrowed() || book.hasBorrowedCopies()) {
             throw new IllegalArgumentException("Book with invalid borrowed state.");
         }
 
         // If book already exists in the database, throw exception
-        if (databaseService.getBookByISBN(book.getISBN()) != null)
+        if (mightExist(isbnFilter, book.getISBN(), "isbn")
+                && confirm(isbnFilter, databaseService.getBookByISBN(book.getISBN()), "isbn") != null)
             throw new IllegalArgumentException("Book already exists.");
 
+        // Make the ISBN known to the filter before the book becomes visible, so it is never reported missing.
+        if (isbnFilter != null) {
+            isbnFilter.add(book.getISBN());
+        }
+
         // If all checks pass, add the book to the database
         databaseService.addBook(book.getISBN(), book);
+
+        // Announce the change.
+        if (eventPublisher.isEnabled()) {
+            eventPublisher.publish(LibraryEvent.bookAdded(book));
+        }
     }
 
     /**
@@ -56,7 +284,7 @@ public class Library {
      *  @param isbn The International Standard Book Number to be validated.
      *  @return true if valid, false otherwise.
     */
-    private boolean isISBNValid(String isbn) {
+    boolean isISBNValid(String isbn) {
         // Check if the ISBN is null, return false if it is
         if (isbn == null) {
             return false;
@@ -99,7 +327,7 @@ public class Library {
      *  @param name The name of the author.
      *  @return true if valid, false otherwise.
     */
-    private boolean isAuthorValid(String name) {
+    boolean isAuthorValid(String name) {
         /*
          * Three key criteria for a valid author name:
          * 1) The name should only consist of alphabetic characters, hyphens, spaces, dots, and apostrophes.
@@ -138,6 +366,16 @@ public class Library {
         return true;
     }
 
+    /**
+     *  Validates if a user Id is of valid format (a 12-digit number).
+     *
+     *  @param userId The Id of the user.
+     *  @return true if valid, false otherwise.
+    */
+    boolean isUserIdValid(String userId) {
+        return userId != null && userId.matches("\\d{12}");
+    }
+
 
     /**
      * Registers a user with the library.
@@ -145,10 +383,29 @@ public class Library {
      * @param user The user to be registered.
      */
     public void registerUser(User user) {
+        Span span = tracer.startSpan("library.registerUser");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.STANDARD);
+            doRegisterUser(user);
+            recordSuccess("registerUser", start);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("registerUser", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    // See registerUser.
+    private void doRegisterUser(User user) {
         // Multiple checks to validate the user object's properties.
         if (user == null) {
             throw new IllegalArgumentException("Invalid user.");
-        } else if (user.getId() == null || !user.getId().matches("\\d{12}")) {
+        } else if (!isUserIdValid(user.getId())) {
             throw new IllegalArgumentException("Invalid user Id.");
         } else if (user.getName() == null || user.getName().equals("")) {
             throw new IllegalArgumentException("Invalid user name.");
@@ -158,11 +415,22 @@ public class Library {
 
         // Before registering, check if a user with the given Id already exists.
         // If such a user is found, throw an exception.
-        if (databaseService.getUserById(user.getId()) != null)
+        if (mightExist(userIdFilter, user.getId(), "userId")
+                && confirm(userIdFilter, databaseService.getUserById(user.getId()), "userId") != null)
             throw new IllegalArgumentException("User already exists.");
 
+        // Make the Id known to the filter before the user becomes visible, so it is never reported missing.
+        if (userIdFilter != null) {
+            userIdFilter.add(user.getId());
+        }
+
         // If all checks have passed, call the database service to register the user.
         databaseService.registerUser(user.getId(), user);
+
+        // Announce the change.
+        if (eventPublisher.isEnabled()) {
+            eventPublisher.publish(LibraryEvent.userRegistered(user));
+        }
     }
 
 
@@ -173,42 +441,134 @@ public class Library {
      * @param userId The Id of the user borrowing the book.
      */
     public void borrowBook(String ISBN, String userId) {
+        Span span = tracer.startSpan("library.borrowBook");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.CRITICAL);
+            doBorrowBook(ISBN, userId);
+            recordSuccess("borrowBook", start);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("borrowBook", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
 
-        // Validate the ISBN. If it's invalid, throw an exception.
+    /**
+     * Borrows a book for a user, reporting expected failures as an outcome instead of throwing.
+     * Failures of the underlying services are still thrown.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The Id of the user borrowing the book.
+     * @return SUCCESS, or the reason the book could not be borrowed.
+     */
+    public LibraryOutcome tryBorrowBook(String ISBN, String userId) {
+        Span span = tracer.startSpan("library.borrowBook");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.CRITICAL);
+            LibraryOutcome outcome = borrowOutcome(ISBN, userId);
+            recordOutcome("borrowBook", start, outcome, span);
+            return outcome;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("borrowBook", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    // See borrowBook.
+    private void doBorrowBook(String ISBN, String userId) {
+        LibraryOutcome outcome = borrowOutcome(ISBN, userId);
+        if (outcome != LibraryOutcome.SUCCESS) {
+            throw failure(outcome, "Book is already borrowed!");
+        }
+    }
+
+    // Borrows a book, shared by borrowBook and tryBorrowBook.
+    private LibraryOutcome borrowOutcome(String ISBN, String userId) {
+
+        // Validate the ISBN. If it's invalid, report it.
         if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
+            return LibraryOutcome.INVALID_ISBN;
         }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+        // When configured, start fetching the user while the book is fetched.
+        AsyncDatabaseService async = asyncLookupService;
+        CompletableFuture<User> pendingUser = async != null && isUserIdValid(userId)
+                && (userIdFilter == null || userIdFilter.mightContain(userId)) ? async.getUserById(userId) : null;
 
-        // If no book is found for the given ISBN, throw an exception.
+        // Retrieve the book associated with the ISBN from the database, unless the filter rules it out.
+        Book book = mightExist(isbnFilter, ISBN, "isbn")
+                ? confirm(isbnFilter, async != null ? await(async.getBookByISBN(ISBN)) : databaseService.getBookByISBN(ISBN), "isbn")
+                : null;
+
+        // If no book is found for the given ISBN, report it.
         if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+            return LibraryOutcome.BOOK_NOT_FOUND;
         }
 
         // Validate the user Id's format (should be a 12-digit number).
-        // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
+        // If it's invalid, report it.
+        if (!isUserIdValid(userId)) {
+            return LibraryOutcome.INVALID_USER_ID;
         }
 
         // Check if the user Id's corresponds to a registered user in the database.
-        // If not, throw an exception indicating the user is not registered.
-        if (databaseService.getUserById(userId) == null) {
-            throw new UserNotRegisteredException("User not found!");
+        // If not, report that the user is not registered.
+        User user = mightExist(userIdFilter, userId, "userId")
+                ? confirm(userIdFilter, pendingUser != null ? await(pendingUser) : databaseService.getUserById(userId), "userId")
+                : null;
+        if (user == null) {
+            return LibraryOutcome.USER_NOT_REGISTERED;
         }
 
-        // If the book is already borrowed, throw an exception.
+        // If the book is already borrowed, report it.
         if (book.isBorrowed()) {
-            throw new BookAlreadyBorrowedException("Book is already borrowed!");
+            return LibraryOutcome.BOOK_ALREADY_BORROWED;
         }
 
-        // Mark the book as borrowed.
-        book.borrow();
+        // Take a copy of the book. If another caller took the last copy since the check above, report it.
+        try {
+            book.borrow();
+        } catch (IllegalStateException e) {
+            return LibraryOutcome.BOOK_ALREADY_BORROWED;
+        }
 
         // Record the borrowing transaction in the database by associating the book's ISBN with the user's Id.
-        databaseService.borrowBook(ISBN, userId);
+        // A database shared with other processes may report that one of them borrowed the book first.
+        boolean recorded = false;
+        try {
+            databaseService.borrowBook(ISBN, userId);
+            recorded = true;
+        } catch (BookAlreadyBorrowedException e) {
+            return LibraryOutcome.BOOK_ALREADY_BORROWED;
+        } finally {
+            // If the database did not record the borrowing, for whatever reason, give the copy back.
+            if (!recorded) {
+                book.returnBook();
+            }
+        }
+
+        // Announce the change.
+        if (eventPublisher.isEnabled()) {
+            eventPublisher.publish(LibraryEvent.bookBorrowed(ISBN, userId));
+        }
+
+        // Count the borrowing towards the book's popularity.
+        if (borrowPopularity != null) {
+            borrowPopularity.record(ISBN);
+        }
+
+        return LibraryOutcome.SUCCESS;
     }
 
     /**
@@ -217,31 +577,173 @@ public class Library {
      * @param ISBN The International Standard Book Number of the book.
      */
     public void returnBook(String ISBN) {
+        Span span = tracer.startSpan("library.returnBook");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.CRITICAL);
+            doReturnBook(ISBN, null);
+            recordSuccess("returnBook", start);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("returnBook", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    /**
+     * Returns a previously borrowed book, reporting expected failures as an outcome instead of throwing.
+     * Failures of the underlying services are still thrown.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return SUCCESS, or the reason the book could not be returned.
+     */
+    public LibraryOutcome tryReturnBook(String ISBN) {
+        Span span = tracer.startSpan("library.returnBook");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.CRITICAL);
+            LibraryOutcome outcome = returnOutcome(ISBN, null);
+            recordOutcome("returnBook", start, outcome, span);
+            return outcome;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("returnBook", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    /**
+     * Returns the copy of a book held by a user.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The Id of the user returning the book.
+     */
+    public void returnBook(String ISBN, String userId) {
+        Span span = tracer.startSpan("library.returnBook");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.CRITICAL);
+            doReturnBook(ISBN, userId);
+            recordSuccess("returnBook", start);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("returnBook", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    /**
+     * Returns the copy of a book held by a user, reporting expected failures as an outcome instead of throwing.
+     * Failures of the underlying services are still thrown.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The Id of the user returning the book.
+     * @return SUCCESS, or the reason the book could not be returned.
+     */
+    public LibraryOutcome tryReturnBook(String ISBN, String userId) {
+        Span span = tracer.startSpan("library.returnBook");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(Priority.CRITICAL);
+            LibraryOutcome outcome = returnOutcome(ISBN, userId);
+            recordOutcome("returnBook", start, outcome, span);
+            return outcome;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("returnBook", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    // See returnBook; the user Id is null when the returning user is not known.
+    private void doReturnBook(String ISBN, String userId) {
+        LibraryOutcome outcome = returnOutcome(ISBN, userId);
+        if (outcome != LibraryOutcome.SUCCESS) {
+            throw failure(outcome, null);
+        }
+    }
+
+    // Returns a book, shared by returnBook and tryReturnBook.
+    private LibraryOutcome returnOutcome(String ISBN, String userId) {
         
-        // Validate the ISBN. If it's not valid, throw an exception.
+        // Validate the ISBN. If it's not valid, report it.
         if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
+            return LibraryOutcome.INVALID_ISBN;
         }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+        // Validate the user Id, if one is given. If it's not valid, report it.
+        if (userId != null && !isUserIdValid(userId)) {
+            return LibraryOutcome.INVALID_USER_ID;
+        }
 
-        // If no book is found for the given ISBN, throw a book not found exception.
+        // Retrieve the book associated with the ISBN from the database, unless the filter rules it out.
+        Book book = findBook(databaseService, ISBN);
+
+        // If no book is found for the given ISBN, report it.
         if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+            return LibraryOutcome.BOOK_NOT_FOUND;
         }
 
-        // Check if the book is currently borrowed. If not, it means it was never borrowed
-        // or it has already been returned, therefore throw an exception.
-        if (!book.isBorrowed()) {
-            throw new BookNotBorrowedException("Book wasn't borrowed!");
+        // Check if any copy of the book is currently borrowed. If not, it means it was never borrowed
+        // or it has already been returned, therefore report it.
+        if (!book.isBorrowed() && !book.hasBorrowedCopies()) {
+            return LibraryOutcome.BOOK_NOT_BORROWED;
         }
 
-        // Change the status of the book to not borrowed.
-        book.returnBook();
+        // If a returning user is named, they must hold a copy; otherwise report the book as not borrowed by them.
+        if (userId != null && !databaseService.holdsCopy(ISBN, userId)) {
+            return LibraryOutcome.BOOK_NOT_BORROWED;
+        }
 
-        // Update the database to reflect the returned status of the book.
-        databaseService.returnBook(ISBN);
+        // Give the copy back. If another caller returned the last borrowed copy since the check above, report it.
+        try {
+            book.returnBook();
+        } catch (IllegalStateException e) {
+            return LibraryOutcome.BOOK_NOT_BORROWED;
+        }
+
+        // Update the database to reflect the returned status of the book, and who returned it if known.
+        // A database shared with other processes, or a concurrent return of the same copy by the same user,
+        // may report that the book was returned first.
+        boolean recorded = false;
+        try {
+            if (userId == null) {
+                databaseService.returnBook(ISBN);
+            } else {
+                databaseService.returnBook(ISBN, userId);
+            }
+            recorded = true;
+        } catch (BookNotBorrowedException e) {
+            return LibraryOutcome.BOOK_NOT_BORROWED;
+        } finally {
+            // If the database did not record the return, for whatever reason, take back the copy given back above.
+            if (!recorded) {
+                book.borrow();
+            }
+        }
+
+        // Announce the change.
+        if (eventPublisher.isEnabled()) {
+            eventPublisher.publish(LibraryEvent.bookReturned(ISBN, userId));
+        }
+
+        return LibraryOutcome.SUCCESS;
     }
 
     /**
@@ -251,6 +753,30 @@ public class Library {
      * @param userId The Id of the user to whom the reviews are to be sent.
      */
     public void notifyUserWithBookReviews(String ISBN, String userId) {
+        notifyUserWithBookReviews(ISBN, userId, Priority.STANDARD);
+    }
+
+    // See notifyUserWithBookReviews; the priority is the one the concurrency limiter admits the notification with.
+    private void notifyUserWithBookReviews(String ISBN, String userId, Priority priority) {
+        Span span = tracer.startSpan("library.notifyUserWithBookReviews");
+        long start = startTiming();
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        try {
+            permit = admit(priority);
+            doNotifyUserWithBookReviews(ISBN, userId);
+            recordSuccess("notifyUserWithBookReviews", start);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("notifyUserWithBookReviews", start, e);
+            throw e;
+        } finally {
+            release(permit);
+            span.end();
+        }
+    }
+
+    // See notifyUserWithBookReviews.
+    private void doNotifyUserWithBookReviews(String ISBN, String userId) {
 
         // Validate the ISBN. If it's invalid, throw an exception.
         if (!isISBNValid(ISBN)) {
@@ -259,41 +785,70 @@ public class Library {
 
         // Validate the user Id format (should be a 12-digit number).
         // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
+        if (!isUserIdValid(userId)) {
             throw new IllegalArgumentException("Invalid user Id.");
         }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+        // When configured, start fetching the user while the book is fetched.
+        AsyncDatabaseService async = asyncLookupService;
+        CompletableFuture<User> pendingUser = async != null
+                && (userIdFilter == null || userIdFilter.mightContain(userId)) ? async.getUserById(userId) : null;
+
+        // Retrieve the book associated with the ISBN from the database, unless the filter rules it out.
+        Book book = mightExist(isbnFilter, ISBN, "isbn")
+                ? confirm(isbnFilter, async != null ? await(async.getBookByISBN(ISBN)) : lookupService.getBookByISBN(ISBN), "isbn")
+                : null;
 
         // If no book is found for the given ISBN, throw a book not found exception.
         if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+            throw stacklessExceptions
+                    ? new BookNotFoundException("Book not found!", false)
+                    : new BookNotFoundException("Book not found!");
         }
 
         // Retrieve the user associated with the user Id from the database.
-        User user = databaseService.getUserById(userId);
+        User user = mightExist(userIdFilter, userId, "userId")
+                ? confirm(userIdFilter, pendingUser != null ? await(pendingUser) : lookupService.getUserById(userId), "userId")
+                : null;
 
         // If the user is not found in the database, throw an exception.
         if (user == null) {
-            throw new UserNotRegisteredException("User not found!");
+            throw stacklessExceptions
+                    ? new UserNotRegisteredException("User not found!", false)
+                    : new UserNotRegisteredException("User not found!");
         }
 
-        // Fetch the list of reviews for the specified book using the review service.
+        // Fetch the list of reviews for the specified book using the review service,
+        // or a connection leased from the pool if one is configured.
+        ReviewServicePool pool = reviewServicePool;
+        ReviewService service = pool == null ? reviewService : pool.lease();
+        boolean serviceFailed = false;
         List<String> reviews;
         try {
-            reviews = reviewService.getReviewsForBook(ISBN);
+            reviews = service.getReviewsForBook(ISBN);
 
             // If no reviews are found or the review list is empty, throw an exception.
             if (reviews == null || reviews.isEmpty()) {
-                throw new NoReviewsFoundException("No reviews found!");
+                throw stacklessExceptions
+                        ? new NoReviewsFoundException("No reviews found!", false)
+                        : new NoReviewsFoundException("No reviews found!");
             }
         } catch (ReviewException e) {
             // If there's an issue fetching the reviews, throw a service unavailable exception.
-            throw new ReviewServiceUnavailableException("Review service unavailable!");
+            serviceFailed = true;
+            throw stacklessExceptions
+                    ? new ReviewServiceUnavailableException("Review service unavailable!", false)
+                    : new ReviewServiceUnavailableException("Review service unavailable!");
         } finally {
-            // Always close the review service connection after attempting to fetch the reviews.
-            reviewService.close();
+            if (pool == null) {
+                // Always close the review service connection after attempting to fetch the reviews.
+                reviewService.close();
+            } else if (serviceFailed) {
+                // Discard a pooled connection that failed, keep healthy ones for reuse.
+                pool.invalidate(service);
+            } else {
+                pool.release(service);
+            }
         }
 
         // Construct the notification message containing the book's title and its reviews.
@@ -302,17 +857,25 @@ public class Library {
         // Attempt to send the notification to the user. If it fails, retry up to 5 times.
         int retryCount = 0;
         while (retryCount < 5) {
+            Span attempt = tracer.startSpan("library.notification.send")
+                    .setAttribute("attempt", String.valueOf(retryCount + 1));
             try {
                 user.sendNotification(notificationMessage);
                 return;
             } catch (NotificationException e) {
+                attempt.recordException(e);
                 retryCount++;
+                metrics.increment("library.notification.retries");
                 System.err.println("Notification failed! Retrying attempt " + retryCount + "/5");
+            } finally {
+                attempt.end();
             }
         }
 
         // If all retry attempts fail, throw a notification exception.
-        throw new NotificationException("Notification failed!");
+        throw stacklessExceptions
+                ? new NotificationException("Notification failed!", false)
+                : new NotificationException("Notification failed!");
     }
 
     /**
@@ -323,6 +886,42 @@ public class Library {
      * @return       The book with the given ISBN if found, and notifies the user with its reviews.
      */
     public Book getBookByISBN(String ISBN, String userId) {
+        Span span = tracer.startSpan("library.getBookByISBN");
+        long start = startTiming();
+        Book book;
+        try {
+            // The permit covers the lookups only. The notification below takes its own OPTIONAL permit,
+            // so slow reviews must not count towards this operation's latency.
+            AdaptiveConcurrencyLimiter.Permit permit = admit(Priority.STANDARD);
+            try {
+                book = doGetBookByISBN(ISBN, userId);
+            } finally {
+                release(permit);
+            }
+            recordSuccess("getBookByISBN", start);
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            recordFailure("getBookByISBN", start, e);
+            span.end();
+            throw e;
+        }
+
+        // Attempt to notify the user with the book's reviews.
+        // This step is optional, so even if it fails, the book should still be returned.
+        try {
+            notifyUserWithBookReviews(ISBN, userId, Priority.OPTIONAL);
+        } catch (Exception e) {
+            System.out.println("Notification failed!");
+        } finally {
+            span.end();
+        }
+
+        // Return the retrieved book.
+        return book;
+    }
+
+    // See getBookByISBN. Looks the book up and checks it is available, without notifying the user.
+    private Book doGetBookByISBN(String ISBN, String userId) {
         // Validate the ISBN. If it's invalid, throw an exception.
         if (!isISBNValid(ISBN)) {
             throw new IllegalArgumentException("Invalid ISBN.");
@@ -330,33 +929,196 @@ public class Library {
 
         // Validate the user Id format (should be a 12-digit number). 
         // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
+        if (!isUserIdValid(userId)) {
             throw new IllegalArgumentException("Invalid user Id.");
         }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+        // Retrieve the book associated with the ISBN from the database, unless the filter rules it out.
+        Book book = findBook(lookupService, ISBN);
 
         // If no book is found for the given ISBN, throw a book not found exception.
         if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+            throw stacklessExceptions
+                    ? new BookNotFoundException("Book not found!", false)
+                    : new BookNotFoundException("Book not found!");
+        }
+
+        // Count the lookup towards the book's popularity.
+        if (lookupPopularity != null) {
+            lookupPopularity.record(ISBN);
         }
 
         // If the book is already borrowed, throw an exception.
         if (book.isBorrowed()) {
-            throw new BookAlreadyBorrowedException("Book was already borrowed!");
+            throw stacklessExceptions
+                    ? new BookAlreadyBorrowedException("Book was already borrowed!", false)
+                    : new BookAlreadyBorrowedException("Book was already borrowed!");
         }
 
-        // Attempt to notify the user with the book's reviews.
-        // This step is optional, so even if it fails, the book should still be returned.
+        return book;
+    }
+
+    // Admits an operation through the concurrency limiter, throwing if it is rejected.
+    private AdaptiveConcurrencyLimiter.Permit admit(Priority priority) {
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter == null) {
+            return null;
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(priority);
+        if (permit == null) {
+            throw stacklessExceptions
+                    ? new LibraryOverloadedException("Library overloaded!", false)
+                    : new LibraryOverloadedException("Library overloaded!");
+        }
+        return permit;
+    }
+
+    // Releases a permit taken by admit, if any.
+    private static void release(AdaptiveConcurrencyLimiter.Permit permit) {
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    // Looks a book up, skipping the lookup when the ISBN filter rules the book out.
+    private Book findBook(DatabaseService source, String ISBN) {
+        return mightExist(isbnFilter, ISBN, "isbn") ? confirm(isbnFilter, source.getBookByISBN(ISBN), "isbn") : null;
+    }
+
+    // Checks a key against a membership filter, counting the lookup saved when the key is ruled out.
+    private boolean mightExist(BloomFilter filter, String key, String kind) {
+        if (filter == null || filter.mightContain(key)) {
+            return true;
+        }
+        if (metrics.isEnabled()) {
+            metrics.increment("library.filter." + kind + ".negative");
+        }
+        return false;
+    }
+
+    // Passes a lookup result through, counting a false positive when the filter let a missing key through.
+    private <T> T confirm(BloomFilter filter, T found, String kind) {
+        if (found == null && filter != null && metrics.isEnabled()) {
+            metrics.increment("library.filter." + kind + ".falsePositive");
+        }
+        return found;
+    }
+
+    /**
+     * Creates the exception the throwing API raises for a failed outcome, without a stack trace
+     * if stackless exceptions are enabled.
+     *
+     * @param outcome                 The failed outcome.
+     * @param alreadyBorrowedMessage  The message for BOOK_ALREADY_BORROWED, which differs between operations.
+     * @return The exception.
+     */
+    private RuntimeException failure(LibraryOutcome outcome, String alreadyBorrowedMessage) {
+        switch (outcome) {
+            case INVALID_ISBN:
+                return new IllegalArgumentException("Invalid ISBN.");
+            case INVALID_USER_ID:
+                return new IllegalArgumentException("Invalid user Id.");
+            case BOOK_NOT_FOUND:
+                return stacklessExceptions
+                        ? new BookNotFoundException("Book not found!", false)
+                        : new BookNotFoundException("Book not found!");
+            case USER_NOT_REGISTERED:
+                return stacklessExceptions
+                        ? new UserNotRegisteredException("User not found!", false)
+                        : new UserNotRegisteredException("User not found!");
+            case BOOK_ALREADY_BORROWED:
+                return stacklessExceptions
+                        ? new BookAlreadyBorrowedException(alreadyBorrowedMessage, false)
+                        : new BookAlreadyBorrowedException(alreadyBorrowedMessage);
+            case BOOK_NOT_BORROWED:
+                return stacklessExceptions
+                        ? new BookNotBorrowedException("Book wasn't borrowed!", false)
+                        : new BookNotBorrowedException("Book wasn't borrowed!");
+            default:
+                throw new IllegalArgumentException("Not a failure: " + outcome);
+        }
+    }
+
+    /**
+     * Waits for a lookup started on the async lookup service, rethrowing its failure unwrapped.
+     *
+     * @param future The pending lookup.
+     * @return The looked up value.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
         try {
-            notifyUserWithBookReviews(ISBN, userId);
-        } catch (Exception e) {
-            System.out.println("Notification failed!");
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
+    }
 
-        // Return the retrieved book.
-        return book;
+    /**
+     * Takes the start timestamp of an operation, skipping the clock read when metrics are disabled.
+     *
+     * @return The current time in nanoseconds, or 0 if metrics are disabled.
+     */
+    private long startTiming() {
+        return metrics.isEnabled() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the latency and success of an operation.
+     *
+     * @param operation The name of the library operation.
+     * @param start     The timestamp taken when the operation started.
+     */
+    private void recordSuccess(String operation, long start) {
+        if (metrics.isEnabled()) {
+            metrics.recordLatency("library." + operation, System.nanoTime() - start);
+            metrics.increment("library." + operation + ".success");
+        }
     }
-}
 
+    /**
+     * Records the latency of a failed operation and counts the failure by its exception type.
+     *
+     * @param operation The name of the library operation.
+     * @param start     The timestamp taken when the operation started.
+     * @param failure   The exception the operation failed with.
+     */
+    private void recordFailure(String operation, long start, RuntimeException failure) {
+        recordFailure(operation, start, failure.getClass());
+    }
+
+    /**
+     * Records the latency of a failed operation and counts the failure by the type of exception
+     * it failed with, or would have failed with in the throwing API.
+     *
+     * @param operation   The name of the library operation.
+     * @param start       The timestamp taken when the operation started.
+     * @param failureType The type of the exception.
+     */
+    private void recordFailure(String operation, long start, Class<? extends RuntimeException> failureType) {
+        if (metrics.isEnabled()) {
+            metrics.recordLatency("library." + operation, System.nanoTime() - start);
+            metrics.increment("library." + operation + ".failure." + failureType.getSimpleName());
+        }
+    }
+
+    /**
+     * Records the outcome of an operation called through the exception-free API, counting failures
+     * under the same names as the throwing API, and marks the span with the outcome.
+     *
+     * @param operation The name of the library operation.
+     * @param start     The timestamp taken when the operation started.
+     * @param outcome   The outcome of the operation.
+     * @param span      The operation's span.
+     */
+    private void recordOutcome(String operation, long start, LibraryOutcome outcome, Span span) {
+        span.setAttribute("outcome", outcome.name());
+        if (outcome.isSuccess()) {
+            recordSuccess(operation, start);
+        } else {
+            recordFailure(operation, start, outcome.getExceptionType());
+        }
+    }
+}
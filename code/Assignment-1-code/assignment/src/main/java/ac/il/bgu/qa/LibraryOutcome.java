@@ -0,0 +1,45 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.errors.UserNotRegisteredException;
+
+/**
+ * The outcome of a library operation called through the exception-free API, such as
+ * {@link Library#tryBorrowBook}. Every failure matches an exception the throwing API raises instead.
+ */
+public enum LibraryOutcome {
+    SUCCESS(null),
+    INVALID_ISBN(IllegalArgumentException.class),
+    INVALID_USER_ID(IllegalArgumentException.class),
+    BOOK_NOT_FOUND(BookNotFoundException.class),
+    USER_NOT_REGISTERED(UserNotRegisteredException.class),
+    BOOK_ALREADY_BORROWED(BookAlreadyBorrowedException.class),
+    BOOK_NOT_BORROWED(BookNotBorrowedException.class);
+
+    // The exception the throwing API raises for this outcome, or null for success.
+    private final Class<? extends RuntimeException> exceptionType;
+
+    LibraryOutcome(Class<? extends RuntimeException> exceptionType) {
+        this.exceptionType = exceptionType;
+    }
+
+    /**
+     * Retrieves the exception the throwing API raises for this outcome.
+     *
+     * @return The exception type, or null for success.
+     */
+    public Class<? extends RuntimeException> getExceptionType() {
+        return exceptionType;
+    }
+
+    /**
+     * Checks whether the operation succeeded.
+     *
+     * @return true for SUCCESS, otherwise false.
+     */
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+}
@@ -0,0 +1,147 @@
+package ac.il.bgu.qa.cache;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+/**
+ * A database service decorator that keeps recently used books and users in bounded on-heap caches.
+ * <p>
+ * Added books and registered users are written through to the underlying service but not cached,
+ * since the underlying service may keep its own copy; they are cached when first looked up. Borrowing and returning are written through as well; the cached book is the instance the library
+ * marked as borrowed or returned, so it stays current. If the underlying write fails, the book is
+ * invalidated so the next lookup reloads it. Absent books and users are never cached.
+ * <p>
+ * All writes must go through this decorator, otherwise cached entries can become stale.
+ */
+public class CachingDatabaseService implements DatabaseService {
+
+    // The database service being cached.
+    private final DatabaseService delegate;
+
+    // Cached books by ISBN and users by Id.
+    private final LruCache<String, Book> books;
+    private final LruCache<String, User> users;
+
+    /**
+     * Constructs a new CachingDatabaseService.
+     *
+     * @param delegate     The database service being cached.
+     * @param bookCapacity The largest number of books kept in the cache.
+     * @param userCapacity The largest number of users kept in the cache.
+     */
+    public CachingDatabaseService(DatabaseService delegate, int bookCapacity, int userCapacity) {
+        this.delegate = delegate;
+        this.books = new LruCache<>(bookCapacity);
+        this.users = new LruCache<>(userCapacity);
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        books.invalidate(ISBN);
+        delegate.addBook(ISBN, book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        users.invalidate(id);
+        delegate.registerUser(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        Book book = books.get(ISBN);
+        if (book == null) {
+            long generation = books.generation(ISBN);
+            book = delegate.getBookByISBN(ISBN);
+            if (book != null) {
+                books.putIfGeneration(ISBN, book, generation);
+            }
+        }
+        return book;
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        User user = users.get(userId);
+        if (user == null) {
+            long generation = users.generation(userId);
+            user = delegate.getUserById(userId);
+            if (user != null) {
+                users.putIfGeneration(userId, user, generation);
+            }
+        }
+        return user;
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        try {
+            delegate.borrowBook(ISBN, userId);
+        } catch (RuntimeException e) {
+            books.invalidate(ISBN);
+            throw e;
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        try {
+            delegate.returnBook(ISBN);
+        } catch (RuntimeException e) {
+            books.invalidate(ISBN);
+            throw e;
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        try {
+            delegate.returnBook(ISBN, userId);
+        } catch (RuntimeException e) {
+            books.invalidate(ISBN);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return delegate.holdsCopy(ISBN, userId);
+    }
+
+    /**
+     * Drops a cached book, e.g. after it was changed without going through this decorator.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     */
+    public void invalidateBook(String ISBN) {
+        books.invalidate(ISBN);
+    }
+
+    /**
+     * Drops a cached user, e.g. after it was changed without going through this decorator.
+     *
+     * @param userId The Id of the user.
+     */
+    public void invalidateUser(String userId) {
+        users.invalidate(userId);
+    }
+
+    /**
+     * Retrieves the book cache, e.g. to read its hit and miss statistics.
+     *
+     * @return The book cache.
+     */
+    public LruCache<String, Book> getBookCache() {
+        return books;
+    }
+
+    /**
+     * Retrieves the user cache, e.g. to read its hit and miss statistics.
+     *
+     * @return The user cache.
+     */
+    public LruCache<String, User> getUserCache() {
+        return users;
+    }
+}
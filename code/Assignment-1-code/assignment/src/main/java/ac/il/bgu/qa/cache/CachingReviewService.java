@@ -0,0 +1,72 @@
+package ac.il.bgu.qa.cache;
+
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A review service decorator that keeps the reviews of recently requested books in a bounded cache.
+ * <p>
+ * Empty results and failures are never cached. Closing the decorator closes the underlying service
+ * but keeps the cache, since the library closes its review service after every fetch.
+ */
+public class CachingReviewService implements ReviewService {
+
+    // The review service being cached.
+    private final ReviewService delegate;
+
+    // Cached reviews by ISBN, unmodifiable.
+    private final LruCache<String, List<String>> reviews;
+
+    /**
+     * Constructs a new CachingReviewService.
+     *
+     * @param delegate The review service being cached.
+     * @param capacity The largest number of books whose reviews are kept.
+     */
+    public CachingReviewService(ReviewService delegate, int capacity) {
+        this.delegate = delegate;
+        this.reviews = new LruCache<>(capacity);
+    }
+
+    @Override
+    public List<String> getReviewsForBook(String ISBN) {
+        List<String> cached = reviews.get(ISBN);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = reviews.generation(ISBN);
+        List<String> loaded = delegate.getReviewsForBook(ISBN);
+        if (loaded == null || loaded.isEmpty()) {
+            return loaded;
+        }
+        List<String> copy = Collections.unmodifiableList(new ArrayList<>(loaded));
+        reviews.putIfGeneration(ISBN, copy, generation);
+        return copy;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Drops the cached reviews of a book, e.g. after a new review was posted.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     */
+    public void invalidate(String ISBN) {
+        reviews.invalidate(ISBN);
+    }
+
+    /**
+     * Retrieves the cache, e.g. to read its hit and miss statistics.
+     *
+     * @return The review cache.
+     */
+    public LruCache<String, List<String>> getCache() {
+        return reviews;
+    }
+}
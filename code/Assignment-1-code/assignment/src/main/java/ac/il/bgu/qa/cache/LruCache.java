@@ -0,0 +1,212 @@
+package ac.il.bgu.qa.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, concurrent least-recently-used cache.
+ * Keys are spread over independently locked segments, each evicting its own least recently used entry.
+ * <p>
+ * Every segment keeps a generation number that changes whenever one of its keys is invalidated.
+ * A caller that loads a value from a slower store reads the generation first and fills the cache with
+ * {@link #putIfGeneration}, so a load that raced with an invalidation never caches a stale value.
+ */
+public class LruCache<K, V> {
+
+    /**
+     * A locked part of the cache.
+     */
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        // The largest number of entries this segment keeps.
+        private final int capacity;
+        // Counts evictions of the whole cache.
+        private final LongAdder evictions;
+        // Changes whenever a key of this segment is invalidated.
+        long generation;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // The segments, a power of two in number.
+    private final Segment<K, V>[] segments;
+
+    // Statistics.
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a new LruCache.
+     *
+     * @param capacity The largest number of entries kept, spread evenly over the segments.
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        // Use up to 16 segments, but keep at least 16 entries per segment.
+        int segmentCount = 1;
+        while (segmentCount < 16 && capacity / (segmentCount * 2) >= 16) {
+            segmentCount *= 2;
+        }
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>((capacity + segmentCount - 1) / segmentCount, evictions);
+        }
+    }
+
+    /**
+     * Looks up a cached value and marks it as recently used.
+     *
+     * @param key The key to look up.
+     * @return The cached value, or null if it is not cached.
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves the current generation of the segment holding a key.
+     * Read it before loading a value from a slower store, and fill the cache with {@link #putIfGeneration}.
+     *
+     * @param key The key about to be loaded.
+     * @return The generation of the key's segment.
+     */
+    public long generation(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    /**
+     * Caches a value, replacing any previous one.
+     *
+     * @param key   The key.
+     * @param value The value to cache.
+     */
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Caches a loaded value unless a key of the same segment was invalidated since the load started.
+     *
+     * @param key        The key.
+     * @param value      The loaded value.
+     * @param generation The generation read before the load started.
+     * @return true if the value was cached, otherwise false.
+     */
+    public boolean putIfGeneration(K key, V value, long generation) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.generation != generation) {
+                return false;
+            }
+            segment.put(key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Removes a key and prevents loads that started before this call from caching a value for it.
+     *
+     * @param key The key to invalidate.
+     */
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+            segment.generation++;
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.generation++;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of cached entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Retrieves the number of lookups that found a cached value.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Retrieves the number of lookups that found nothing.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Retrieves the number of entries evicted to stay within capacity.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // Picks the segment of a key, spreading the hash's high bits into the low ones.
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+}
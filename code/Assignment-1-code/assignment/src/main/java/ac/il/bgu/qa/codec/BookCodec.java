@@ -0,0 +1,230 @@
+package ac.il.bgu.qa.codec;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.storage.IsbnKeys;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes books in a compact, versioned binary format, shared by snapshots, logs and caches.
+ * <p>
+ * Version 2 layout: a version byte, a flags byte, for books with several copies the number of copies and
+ * of available copies as 4-byte ints, then the ISBN, the title and the author. Version 1 records, which
+ * always hold a single copy, are still read.
+ * An ISBN of exactly 13 digits is packed into an 8-byte long; any other ISBN, e.g. a hyphenated one,
+ * is written as a string. Strings are UTF-8, prefixed with their length as an unsigned varint.
+ * Null fields are marked in the flags and take no space. Buffers must use big-endian byte order, the default.
+ */
+public final class BookCodec {
+
+    // The version written by this codec.
+    public static final byte VERSION = 2;
+
+    // Flag bits.
+    static final int BORROWED = 1;
+    static final int PACKED_ISBN = 1 << 1;
+    static final int NULL_ISBN = 1 << 2;
+    static final int NULL_TITLE = 1 << 3;
+    static final int NULL_AUTHOR = 1 << 4;
+    static final int MULTI_COPY = 1 << 5;
+
+    private BookCodec() {
+    }
+
+    /**
+     * Encodes a book into a new array.
+     *
+     * @param book The book to encode.
+     * @return The encoded book.
+     */
+    public static byte[] encode(Book book) {
+        Fields fields = new Fields(book);
+        ByteBuffer buffer = ByteBuffer.allocate(fields.size());
+        fields.write(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes a book at the buffer's position and advances it past the record.
+     *
+     * @param book   The book to encode.
+     * @param buffer The buffer to write to.
+     * @throws java.nio.BufferOverflowException If the buffer has too little room left.
+     */
+    public static void encode(Book book, ByteBuffer buffer) {
+        new Fields(book).write(buffer);
+    }
+
+    /**
+     * Retrieves the number of bytes a book encodes to.
+     *
+     * @param book The book.
+     * @return The encoded size.
+     */
+    public static int encodedSize(Book book) {
+        return new Fields(book).size();
+    }
+
+    /**
+     * Decodes the book at the buffer's position into a new Book and advances the buffer past the record.
+     *
+     * @param buffer The buffer to read from.
+     * @return The decoded book.
+     */
+    public static Book decode(ByteBuffer buffer) {
+        checkVersion(buffer.get());
+        int flags = buffer.get();
+        int copies = 1;
+        int available = (flags & BORROWED) != 0 ? 0 : 1;
+        if ((flags & MULTI_COPY) != 0) {
+            copies = buffer.getInt();
+            available = buffer.getInt();
+        }
+        String ISBN = readIsbn(buffer, flags);
+        String title = (flags & NULL_TITLE) != 0 ? null : Encoding.getString(buffer);
+        String author = (flags & NULL_AUTHOR) != 0 ? null : Encoding.getString(buffer);
+
+        Book book = new Book(ISBN, title, author, copies);
+        for (int i = available; i < copies; i++) {
+            book.borrow();
+        }
+        return book;
+    }
+
+    /**
+     * Creates a view of the book at the buffer's position without copying or decoding its fields,
+     * and advances the buffer past the record. Fields are decoded when accessed, and borrowing or
+     * returning the view updates the flags byte in the buffer.
+     *
+     * @param buffer The buffer holding the record; it must not be changed while the view is in use.
+     * @return A view of the encoded book.
+     */
+    public static Book view(ByteBuffer buffer) {
+        int start = buffer.position();
+        checkVersion(buffer.get());
+        int flags = buffer.get();
+        int copiesOffset = -1;
+        if ((flags & MULTI_COPY) != 0) {
+            copiesOffset = buffer.position();
+            buffer.position(copiesOffset + 8);
+        }
+        int isbnOffset = buffer.position();
+        readIsbnLength(buffer, flags);
+        int titleOffset = buffer.position();
+        if ((flags & NULL_TITLE) == 0) {
+            Encoding.skipString(buffer);
+        }
+        int authorOffset = buffer.position();
+        if ((flags & NULL_AUTHOR) == 0) {
+            Encoding.skipString(buffer);
+        }
+        return new EncodedBook(buffer.duplicate(), start, copiesOffset, isbnOffset, titleOffset, authorOffset);
+    }
+
+    // Reads the ISBN field according to the flags.
+    static String readIsbn(ByteBuffer buffer, int flags) {
+        if ((flags & NULL_ISBN) != 0) {
+            return null;
+        }
+        if ((flags & PACKED_ISBN) != 0) {
+            return IsbnKeys.unpack(buffer.getLong());
+        }
+        return Encoding.getString(buffer);
+    }
+
+    // Skips the ISBN field according to the flags.
+    private static void readIsbnLength(ByteBuffer buffer, int flags) {
+        if ((flags & NULL_ISBN) != 0) {
+            return;
+        }
+        if ((flags & PACKED_ISBN) != 0) {
+            buffer.position(buffer.position() + 8);
+        } else {
+            Encoding.skipString(buffer);
+        }
+    }
+
+    // Rejects records written by an unknown version of the codec.
+    static void checkVersion(byte version) {
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported book encoding version: " + version);
+        }
+    }
+
+    /**
+     * The fields of a book prepared for encoding, so strings are converted to UTF-8 only once.
+     */
+    private static final class Fields {
+        final int flags;
+        final int copies;
+        final int availableCopies;
+        final long packedIsbn;
+        final byte[] isbn;
+        final byte[] title;
+        final byte[] author;
+
+        Fields(Book book) {
+            String ISBN = book.getISBN();
+            int flags = book.isBorrowed() ? BORROWED : 0;
+            if (book.getCopies() > 1) {
+                flags |= MULTI_COPY;
+            }
+            long packed = ISBN != null && ISBN.length() == 13 ? IsbnKeys.pack(ISBN) : IsbnKeys.INVALID;
+            if (ISBN == null) {
+                flags |= NULL_ISBN;
+            } else if (packed != IsbnKeys.INVALID) {
+                flags |= PACKED_ISBN;
+            }
+            if (book.getTitle() == null) {
+                flags |= NULL_TITLE;
+            }
+            if (book.getAuthor() == null) {
+                flags |= NULL_AUTHOR;
+            }
+            this.flags = flags;
+            this.copies = book.getCopies();
+            this.availableCopies = book.getAvailableCopies();
+            this.packedIsbn = packed;
+            this.isbn = ISBN == null || packed != IsbnKeys.INVALID ? null : Encoding.utf8(ISBN);
+            this.title = book.getTitle() == null ? null : Encoding.utf8(book.getTitle());
+            this.author = book.getAuthor() == null ? null : Encoding.utf8(book.getAuthor());
+        }
+
+        int size() {
+            int size = 2;
+            if ((flags & MULTI_COPY) != 0) {
+                size += 8;
+            }
+            if ((flags & PACKED_ISBN) != 0) {
+                size += 8;
+            } else if (isbn != null) {
+                size += Encoding.varintSize(isbn.length) + isbn.length;
+            }
+            if (title != null) {
+                size += Encoding.varintSize(title.length) + title.length;
+            }
+            if (author != null) {
+                size += Encoding.varintSize(author.length) + author.length;
+            }
+            return size;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.put(VERSION).put((byte) flags);
+            if ((flags & MULTI_COPY) != 0) {
+                buffer.putInt(copies).putInt(availableCopies);
+            }
+            if ((flags & PACKED_ISBN) != 0) {
+                buffer.putLong(packedIsbn);
+            } else if (isbn != null) {
+                Encoding.putString(buffer, isbn);
+            }
+            if (title != null) {
+                Encoding.putString(buffer, title);
+            }
+            if (author != null) {
+                Encoding.putString(buffer, author);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ac.il.bgu.qa.codec;
+
+import ac.il.bgu.qa.Book;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A view of a book encoded by {@link BookCodec}, decoding each field from the buffer when it is accessed.
+ * Borrowing or returning the view updates the flags byte, and for books with several copies the count
+ * of available copies, in the buffer. Not safe for concurrent use.
+ */
+class EncodedBook extends Book {
+
+    // The buffer holding the record.
+    private final ByteBuffer buffer;
+    // Offsets of the flags byte and of each field within the buffer.
+    private final int flagsOffset;
+    private final int copiesOffset;
+    private final int isbnOffset;
+    private final int titleOffset;
+    private final int authorOffset;
+
+    // The copies offset is -1 for single-copy records.
+    EncodedBook(ByteBuffer buffer, int start, int copiesOffset, int isbnOffset, int titleOffset, int authorOffset) {
+        super(null, null, null);
+        this.buffer = buffer;
+        this.flagsOffset = start + 1;
+        this.copiesOffset = copiesOffset;
+        this.isbnOffset = isbnOffset;
+        this.titleOffset = titleOffset;
+        this.authorOffset = authorOffset;
+    }
+
+    @Override
+    public String getISBN() {
+        return BookCodec.readIsbn(at(isbnOffset), flags());
+    }
+
+    @Override
+    public String getTitle() {
+        return (flags() & BookCodec.NULL_TITLE) != 0 ? null : Encoding.getString(at(titleOffset));
+    }
+
+    @Override
+    public String getAuthor() {
+        return (flags() & BookCodec.NULL_AUTHOR) != 0 ? null : Encoding.getString(at(authorOffset));
+    }
+
+    @Override
+    public int getCopies() {
+        return copiesOffset < 0 ? 1 : buffer.getInt(copiesOffset);
+    }
+
+    @Override
+    public int getAvailableCopies() {
+        if (copiesOffset < 0) {
+            return isBorrowed() ? 0 : 1;
+        }
+        return buffer.getInt(copiesOffset + 4);
+    }
+
+    @Override
+    public boolean isBorrowed() {
+        return (flags() & BookCodec.BORROWED) != 0;
+    }
+
+    @Override
+    public void borrow() {
+        if (isBorrowed()) {
+            throw new IllegalStateException("Book is already borrowed!");
+        }
+        setAvailableCopies(getAvailableCopies() - 1);
+    }
+
+    @Override
+    public void returnBook() {
+        if (!hasBorrowedCopies()) {
+            throw new IllegalStateException("ac.il.bgu.qa.Book wasn't borrowed!");
+        }
+        setAvailableCopies(getAvailableCopies() + 1);
+    }
+
+    // Writes the number of available copies, keeping the borrowed flag set exactly when none is left.
+    private void setAvailableCopies(int available) {
+        if (copiesOffset >= 0) {
+            buffer.putInt(copiesOffset + 4, available);
+        }
+        int flags = available == 0 ? flags() | BookCodec.BORROWED : flags() & ~BookCodec.BORROWED;
+        buffer.put(flagsOffset, (byte) flags);
+    }
+
+    private int flags() {
+        return buffer.get(flagsOffset);
+    }
+
+    // Returns a buffer positioned at the given offset, leaving the shared buffer untouched.
+    private ByteBuffer at(int offset) {
+        ByteBuffer field = buffer.duplicate();
+        field.position(offset);
+        return field;
+    }
+}
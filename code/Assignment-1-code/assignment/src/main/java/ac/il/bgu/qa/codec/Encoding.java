@@ -0,0 +1,111 @@
+package ac.il.bgu.qa.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Primitive encodings shared by the codecs: unsigned varints and varint-length-prefixed UTF-8 strings.
+ */
+final class Encoding {
+
+    private Encoding() {
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte, least significant group first.
+     *
+     * @param buffer The buffer to write to.
+     * @param value  A non-negative value.
+     */
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param buffer The buffer to read from.
+     * @return The value.
+     */
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    /**
+     * Retrieves the number of bytes a varint takes.
+     *
+     * @param value A non-negative value.
+     * @return The encoded size.
+     */
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a UTF-8 string prefixed with its length in bytes.
+     *
+     * @param buffer The buffer to write to.
+     * @param bytes  The UTF-8 bytes of the string.
+     */
+    static void putString(ByteBuffer buffer, byte[] bytes) {
+        putVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string. Heap buffers are decoded straight from their backing array.
+     *
+     * @param buffer The buffer to read from.
+     * @return The string.
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = getVarint(buffer);
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Skips a length-prefixed string.
+     *
+     * @param buffer The buffer positioned at the string.
+     */
+    static void skipString(ByteBuffer buffer) {
+        int length = getVarint(buffer);
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Encodes a string as UTF-8.
+     *
+     * @param value The string.
+     * @return The UTF-8 bytes.
+     */
+    static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,85 @@
+package ac.il.bgu.qa.codec;
+
+import ac.il.bgu.qa.events.LibraryEvent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes library events in a compact, versioned binary format, used by event logs.
+ * <p>
+ * Version 1 layout: a version byte, the type's ordinal, a flags byte, the sequence number and timestamp
+ * as 8-byte longs, then the ISBN, title, author, user Id and user name. Null fields are marked in the
+ * flags and take no space. Strings are UTF-8, prefixed with their length as an unsigned varint.
+ */
+public final class LibraryEventCodec {
+
+    // The version written by this codec.
+    public static final byte VERSION = 1;
+
+    // The event types, by ordinal.
+    private static final LibraryEvent.Type[] TYPES = LibraryEvent.Type.values();
+
+    private LibraryEventCodec() {
+    }
+
+    /**
+     * Encodes an event into a new array.
+     *
+     * @param event The event to encode.
+     * @return The encoded event.
+     */
+    public static byte[] encode(LibraryEvent event) {
+        byte[][] fields = {
+                utf8OrNull(event.getISBN()), utf8OrNull(event.getTitle()), utf8OrNull(event.getAuthor()),
+                utf8OrNull(event.getUserId()), utf8OrNull(event.getUserName())
+        };
+        int size = 3 + 8 + 8;
+        int flags = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == null) {
+                flags |= 1 << i;
+            } else {
+                size += Encoding.varintSize(fields[i].length) + fields[i].length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION).put((byte) event.getType().ordinal()).put((byte) flags)
+                .putLong(event.getSequence()).putLong(event.getTimestampMillis());
+        for (byte[] field : fields) {
+            if (field != null) {
+                Encoding.putString(buffer, field);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the event at the buffer's position and advances the buffer past the record.
+     *
+     * @param buffer The buffer to read from.
+     * @return The decoded event, carrying its original sequence number.
+     */
+    public static LibraryEvent decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported event encoding version: " + version);
+        }
+        int type = buffer.get();
+        if (type < 0 || type >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown event type: " + type);
+        }
+        int flags = buffer.get();
+        long sequence = buffer.getLong();
+        long timestampMillis = buffer.getLong();
+        String[] fields = new String[5];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = (flags & (1 << i)) != 0 ? null : Encoding.getString(buffer);
+        }
+        return new LibraryEvent(sequence, TYPES[type], timestampMillis, fields[0], fields[1], fields[2], fields[3], fields[4]);
+    }
+
+    // Encodes a string as UTF-8, keeping null.
+    private static byte[] utf8OrNull(String value) {
+        return value == null ? null : Encoding.utf8(value);
+    }
+}
@@ -0,0 +1,112 @@
+package ac.il.bgu.qa.codec;
+
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.NotificationService;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Encodes users in a compact, versioned binary format, shared by snapshots, logs and caches.
+ * <p>
+ * Version 1 layout: a version byte, a flags byte, the Id and the name.
+ * An Id of exactly 12 digits is packed into an 8-byte long; any other Id is written as a string.
+ * Strings are UTF-8, prefixed with their length as an unsigned varint.
+ * The notification service is not encoded; decoding looks it up by user Id.
+ */
+public final class UserCodec {
+
+    // The version written by this codec.
+    public static final byte VERSION = 1;
+
+    // Flag bits.
+    private static final int PACKED_ID = 1;
+    private static final int NULL_ID = 1 << 1;
+    private static final int NULL_NAME = 1 << 2;
+
+    private UserCodec() {
+    }
+
+    /**
+     * Encodes a user into a new array.
+     *
+     * @param user The user to encode.
+     * @return The encoded user.
+     */
+    public static byte[] encode(User user) {
+        byte[] id = isPackable(user.getId()) || user.getId() == null ? null : Encoding.utf8(user.getId());
+        byte[] name = user.getName() == null ? null : Encoding.utf8(user.getName());
+        int size = 2 + (isPackable(user.getId()) ? 8 : 0)
+                + (id == null ? 0 : Encoding.varintSize(id.length) + id.length)
+                + (name == null ? 0 : Encoding.varintSize(name.length) + name.length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        write(user, id, name, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes a user at the buffer's position and advances it past the record.
+     *
+     * @param user   The user to encode.
+     * @param buffer The buffer to write to.
+     * @throws java.nio.BufferOverflowException If the buffer has too little room left.
+     */
+    public static void encode(User user, ByteBuffer buffer) {
+        byte[] id = isPackable(user.getId()) || user.getId() == null ? null : Encoding.utf8(user.getId());
+        byte[] name = user.getName() == null ? null : Encoding.utf8(user.getName());
+        write(user, id, name, buffer);
+    }
+
+    /**
+     * Decodes the user at the buffer's position and advances the buffer past the record.
+     *
+     * @param buffer                The buffer to read from.
+     * @param notificationServices  Looks up the notification service of a user by Id.
+     * @return The decoded user.
+     */
+    public static User decode(ByteBuffer buffer, Function<String, NotificationService> notificationServices) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported user encoding version: " + version);
+        }
+        int flags = buffer.get();
+        String id;
+        if ((flags & NULL_ID) != 0) {
+            id = null;
+        } else if ((flags & PACKED_ID) != 0) {
+            id = String.format("%012d", buffer.getLong());
+        } else {
+            id = Encoding.getString(buffer);
+        }
+        String name = (flags & NULL_NAME) != 0 ? null : Encoding.getString(buffer);
+        return new User(name, id, notificationServices.apply(id));
+    }
+
+    // Writes a user whose string fields were already converted to UTF-8.
+    private static void write(User user, byte[] id, byte[] name, ByteBuffer buffer) {
+        boolean packed = isPackable(user.getId());
+        int flags = (packed ? PACKED_ID : 0) | (user.getId() == null ? NULL_ID : 0) | (name == null ? NULL_NAME : 0);
+        buffer.put(VERSION).put((byte) flags);
+        if (packed) {
+            buffer.putLong(Long.parseLong(user.getId()));
+        } else if (id != null) {
+            Encoding.putString(buffer, id);
+        }
+        if (name != null) {
+            Encoding.putString(buffer, name);
+        }
+    }
+
+    // Checks whether an Id consists of exactly 12 digits.
+    private static boolean isPackable(String id) {
+        if (id == null || id.length() != 12) {
+            return false;
+        }
+        for (int i = 0; i < 12; i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
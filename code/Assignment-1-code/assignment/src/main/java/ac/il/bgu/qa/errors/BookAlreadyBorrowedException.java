@@ -14,4 +14,15 @@ public class BookAlreadyBorrowedException extends RuntimeException {
     public BookAlreadyBorrowedException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new BookAlreadyBorrowedException with the specified detail message, optionally without a stack trace.
+     * Without a stack trace the exception has no cause; use {@link #BookAlreadyBorrowedException(String)} when one may be set later.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace whether the stack trace is filled in.
+     */
+    public BookAlreadyBorrowedException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
 }
@@ -14,4 +14,15 @@ public class BookNotBorrowedException extends RuntimeException {
     public BookNotBorrowedException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new BookNotBorrowedException with the specified detail message, optionally without a stack trace.
+     * Without a stack trace the exception has no cause; use {@link #BookNotBorrowedException(String)} when one may be set later.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace whether the stack trace is filled in.
+     */
+    public BookNotBorrowedException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
 }
@@ -0,0 +1,28 @@
+package ac.il.bgu.qa.errors;
+
+/**
+ * Represents a custom exception that is thrown when the library rejects an operation
+ * because too many operations are already running.
+ */
+public class LibraryOverloadedException extends RuntimeException {
+
+    /**
+     * Constructs a new LibraryOverloadedException with the specified detail message.
+     *
+     * @param message the detail message. 
+     */
+    public LibraryOverloadedException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new LibraryOverloadedException with the specified detail message, optionally without a stack trace.
+     * Without a stack trace the exception has no cause; use {@link #LibraryOverloadedException(String)} when one may be set later.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace whether the stack trace is filled in.
+     */
+    public LibraryOverloadedException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
+}
@@ -14,4 +14,15 @@ public class ReviewException extends RuntimeException {
     public ReviewException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new ReviewException with the specified detail message, optionally without a stack trace.
+     * Without a stack trace the exception has no cause; use {@link #ReviewException(String)} when one may be set later.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace whether the stack trace is filled in.
+     */
+    public ReviewException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
 }
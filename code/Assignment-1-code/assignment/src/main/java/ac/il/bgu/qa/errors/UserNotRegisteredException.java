@@ -14,4 +14,15 @@ public class UserNotRegisteredException extends RuntimeException {
     public UserNotRegisteredException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new UserNotRegisteredException with the specified detail message, optionally without a stack trace.
+     * Without a stack trace the exception has no cause; use {@link #UserNotRegisteredException(String)} when one may be set later.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace whether the stack trace is filled in.
+     */
+    public UserNotRegisteredException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
 }
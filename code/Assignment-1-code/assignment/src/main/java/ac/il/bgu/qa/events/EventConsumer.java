@@ -0,0 +1,153 @@
+package ac.il.bgu.qa.events;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads an {@link EventRingBuffer} on a dedicated thread and hands every event to a sink, in sequence order.
+ * <p>
+ * The consumer never holds up publishers: when it falls behind by more than the buffer's capacity it skips
+ * to the oldest event still available and reports the gap to the sink. A sink that throws loses that
+ * event only. When idle, the consumer spins briefly and then parks with increasing pauses.
+ */
+public class EventConsumer implements Closeable {
+
+    // Number of empty polls spent spinning before parking.
+    private static final int SPIN_TRIES = 100;
+    // Longest pause between polls when idle.
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // The buffer being read.
+    private final EventRingBuffer ring;
+    // The sink receiving the events.
+    private final EventSink sink;
+    // The thread reading the buffer.
+    private final Thread thread;
+
+    // The sequence number of the next event to read; written by the consumer thread only.
+    private volatile long sequence;
+    // Set to stop the consumer once it has caught up.
+    private volatile boolean closing;
+
+    // Statistics, written by the consumer thread only.
+    private volatile long consumed;
+    private volatile long missed;
+    private volatile long sinkFailures;
+
+    // Constructs a new EventConsumer starting at the given sequence number.
+    EventConsumer(EventRingBuffer ring, EventSink sink, String name, long sequence) {
+        this.ring = ring;
+        this.sink = sink;
+        this.sequence = sequence;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the consumer thread.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the consumer after it has delivered every event published so far, then closes the sink.
+     *
+     * @throws IOException If closing the sink fails.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+
+    /**
+     * Retrieves the sequence number of the next event this consumer will read.
+     *
+     * @return The consumer's position.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Retrieves the number of events handed to the sink.
+     *
+     * @return The number of consumed events.
+     */
+    public long getConsumedCount() {
+        return consumed;
+    }
+
+    /**
+     * Retrieves the number of events overwritten before this consumer could read them.
+     *
+     * @return The number of missed events.
+     */
+    public long getMissedCount() {
+        return missed;
+    }
+
+    /**
+     * Retrieves the number of events the sink failed to handle.
+     *
+     * @return The number of sink failures.
+     */
+    public long getSinkFailureCount() {
+        return sinkFailures;
+    }
+
+    // The consumer thread's loop.
+    private void run() {
+        int idlePolls = 0;
+        long parkNanos = 1000;
+        while (true) {
+            long next = sequence;
+            LibraryEvent event = ring.read(next);
+            if (event == null || event.getSequence() < next) {
+                // Nothing new; stop if closing and every claimed event was delivered or dropped.
+                if (closing && next >= ring.getPublishedCount()) {
+                    return;
+                }
+                if (++idlePolls > SPIN_TRIES) {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                }
+                continue;
+            }
+            idlePolls = 0;
+            parkNanos = 1000;
+
+            if (event.getSequence() > next) {
+                // Overwritten: resume at the oldest event that can still be in the buffer.
+                long resume = Math.max(next + 1, ring.getPublishedCount() - ring.getCapacity());
+                missed += resume - next;
+                sequence = resume;
+                try {
+                    sink.onOverrun(resume - next);
+                } catch (RuntimeException e) {
+                    sinkFailures++;
+                }
+                continue;
+            }
+
+            LibraryEvent following = ring.read(next + 1);
+            boolean endOfBatch = following == null || following.getSequence() != next + 1;
+            try {
+                sink.onEvent(event, endOfBatch);
+                consumed++;
+            } catch (RuntimeException e) {
+                sinkFailures++;
+            }
+            sequence = next + 1;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ac.il.bgu.qa.events;
+
+/**
+ * Provides an interface for components that receive the library's state changes.
+ * Publishing must be cheap and must never block, since it happens on the library's write paths.
+ */
+public interface EventPublisher {
+
+    /**
+     * A publisher that discards every event. Used by default so that the library pays only
+     * for a single {@link #isEnabled()} check.
+     */
+    EventPublisher NOOP = new EventPublisher() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void publish(LibraryEvent event) {
+        }
+    };
+
+    /**
+     * Checks whether published events are kept.
+     * Callers use this to skip creating events when publishing is disabled.
+     *
+     * @return true if events are kept, otherwise false.
+     */
+    boolean isEnabled();
+
+    /**
+     * Publishes an event. An event instance may be published only once.
+     *
+     * @param event The event.
+     */
+    void publish(LibraryEvent event);
+}
@@ -0,0 +1,110 @@
+package ac.il.bgu.qa.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, in-process event stream in the style of the LMAX Disruptor.
+ * <p>
+ * Publishers claim the next sequence number and store the event in the slot it maps to, without locks and
+ * without ever waiting for consumers. Consumers ({@link EventConsumer}) each track their own position and
+ * read events in sequence order. A consumer that falls more than the capacity behind finds its events
+ * overwritten; it skips ahead and reports the gap instead of slowing down the publishers.
+ */
+public class EventRingBuffer implements EventPublisher {
+
+    // The slots, holding the latest event published to each.
+    private final AtomicReferenceArray<LibraryEvent> slots;
+    // Maps a sequence number to its slot.
+    private final int mask;
+    // The next sequence number to claim.
+    private final AtomicLong cursor = new AtomicLong();
+    // Counts events dropped because a later event took their slot first.
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Constructs a new EventRingBuffer.
+     *
+     * @param capacity The number of slots, a power of two; bounds how far a consumer may fall behind.
+     */
+    public EventRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two.");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void publish(LibraryEvent event) {
+        long sequence = cursor.getAndIncrement();
+        event.setSequence(sequence);
+        int index = (int) (sequence & mask);
+        while (true) {
+            LibraryEvent current = slots.get(index);
+            // A publisher delayed by a whole lap must not overwrite the newer event.
+            if (current != null && current.getSequence() > sequence) {
+                dropped.increment();
+                return;
+            }
+            if (slots.compareAndSet(index, current, event)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Creates a consumer that delivers events published from now on to a sink.
+     *
+     * @param sink The sink receiving the events.
+     * @param name The name of the consumer's thread.
+     * @return The consumer, not yet started.
+     */
+    public EventConsumer newConsumer(EventSink sink, String name) {
+        return new EventConsumer(this, sink, name, cursor.get());
+    }
+
+    /**
+     * Retrieves the number of slots.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Retrieves the number of events published so far, which is also the next sequence number.
+     *
+     * @return The number of published events.
+     */
+    public long getPublishedCount() {
+        return cursor.get();
+    }
+
+    /**
+     * Retrieves the number of events dropped because their publisher was overtaken by a whole lap.
+     *
+     * @return The number of dropped events.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Reads the event with a sequence number, if it is available.
+     *
+     * @param sequence The sequence number.
+     * @return The event; an event with a lower sequence number if it is not published yet;
+     *         or an event with a higher sequence number if it was overwritten. Null if the slot was never used.
+     */
+    LibraryEvent read(long sequence) {
+        return slots.get((int) (sequence & mask));
+    }
+}
@@ -0,0 +1,36 @@
+package ac.il.bgu.qa.events;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Provides an interface for the destinations of an event stream, such as files or downstream systems.
+ * A sink is called by a single consumer thread, never concurrently.
+ */
+public interface EventSink extends Closeable {
+
+    /**
+     * Receives the next event of the stream.
+     *
+     * @param event      The event.
+     * @param endOfBatch true if no further event is available right now; a good time to flush buffers.
+     */
+    void onEvent(LibraryEvent event, boolean endOfBatch);
+
+    /**
+     * Called when the consumer fell so far behind that events were overwritten before it read them.
+     *
+     * @param missedEvents The number of events skipped.
+     */
+    default void onOverrun(long missedEvents) {
+    }
+
+    /**
+     * Releases the sink's resources. Called once, after the last event.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
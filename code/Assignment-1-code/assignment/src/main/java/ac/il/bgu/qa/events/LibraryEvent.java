@@ -0,0 +1,212 @@
+package ac.il.bgu.qa.events;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+
+/**
+ * A change to the state of a library, published after the change was written to the database.
+ * Events are immutable once published; each one carries the fields needed to apply it elsewhere,
+ * and the fields that do not apply to its type are null.
+ */
+public final class LibraryEvent {
+
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        BOOK_ADDED,
+        USER_REGISTERED,
+        BOOK_BORROWED,
+        BOOK_RETURNED
+    }
+
+    // The kind of change.
+    private final Type type;
+    // Wall-clock time of the change, in milliseconds since the epoch.
+    private final long timestampMillis;
+    // The book involved, if any.
+    private final String ISBN;
+    private final String title;
+    private final String author;
+    // The user involved, if any.
+    private final String userId;
+    private final String userName;
+
+    // Position in the stream, assigned once when the event is published.
+    private long sequence = -1;
+
+    /**
+     * Constructs a new LibraryEvent.
+     *
+     * @param type            The kind of change.
+     * @param timestampMillis The time of the change, in milliseconds since the epoch.
+     * @param ISBN            The ISBN of the book involved, or null.
+     * @param title           The title of an added book, or null.
+     * @param author          The author of an added book, or null.
+     * @param userId          The Id of the user involved, or null.
+     * @param userName        The name of a registered user, or null.
+     */
+    public LibraryEvent(Type type, long timestampMillis, String ISBN, String title, String author, String userId, String userName) {
+        this(-1, type, timestampMillis, ISBN, title, author, userId, userName);
+    }
+
+    /**
+     * Constructs a LibraryEvent that was already published, e.g. one read back from a log.
+     *
+     * @param sequence        The position of the event in its stream.
+     * @param type            The kind of change.
+     * @param timestampMillis The time of the change, in milliseconds since the epoch.
+     * @param ISBN            The ISBN of the book involved, or null.
+     * @param title           The title of an added book, or null.
+     * @param author          The author of an added book, or null.
+     * @param userId          The Id of the user involved, or null.
+     * @param userName        The name of a registered user, or null.
+     */
+    public LibraryEvent(long sequence, Type type, long timestampMillis, String ISBN, String title, String author, String userId, String userName) {
+        this.sequence = sequence;
+        this.type = type;
+        this.timestampMillis = timestampMillis;
+        this.ISBN = ISBN;
+        this.title = title;
+        this.author = author;
+        this.userId = userId;
+        this.userName = userName;
+    }
+
+    /**
+     * Creates an event for a book added to the library.
+     *
+     * @param book The added book.
+     * @return The event.
+     */
+    public static LibraryEvent bookAdded(Book book) {
+        return new LibraryEvent(Type.BOOK_ADDED, System.currentTimeMillis(), book.getISBN(), book.getTitle(), book.getAuthor(), null, null);
+    }
+
+    /**
+     * Creates an event for a user registered with the library.
+     *
+     * @param user The registered user.
+     * @return The event.
+     */
+    public static LibraryEvent userRegistered(User user) {
+        return new LibraryEvent(Type.USER_REGISTERED, System.currentTimeMillis(), null, null, null, user.getId(), user.getName());
+    }
+
+    /**
+     * Creates an event for a borrowed book.
+     *
+     * @param ISBN   The ISBN of the book.
+     * @param userId The Id of the borrowing user.
+     * @return The event.
+     */
+    public static LibraryEvent bookBorrowed(String ISBN, String userId) {
+        return new LibraryEvent(Type.BOOK_BORROWED, System.currentTimeMillis(), ISBN, null, null, userId, null);
+    }
+
+    /**
+     * Creates an event for a returned book.
+     *
+     * @param ISBN The ISBN of the book.
+     * @return The event.
+     */
+    public static LibraryEvent bookReturned(String ISBN) {
+        return bookReturned(ISBN, null);
+    }
+
+    /**
+     * Creates an event for a copy of a book returned by a known user.
+     *
+     * @param ISBN   The ISBN of the book.
+     * @param userId The Id of the returning user, or null if unknown.
+     * @return The event.
+     */
+    public static LibraryEvent bookReturned(String ISBN, String userId) {
+        return new LibraryEvent(Type.BOOK_RETURNED, System.currentTimeMillis(), ISBN, null, null, userId, null);
+    }
+
+    /**
+     * Retrieves the kind of change.
+     *
+     * @return The event's type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the time of the change.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Retrieves the ISBN of the book involved.
+     *
+     * @return The ISBN, or null if no book is involved.
+     */
+    public String getISBN() {
+        return ISBN;
+    }
+
+    /**
+     * Retrieves the title of an added book.
+     *
+     * @return The title, or null if the event is not a BOOK_ADDED event.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Retrieves the author of an added book.
+     *
+     * @return The author, or null if the event is not a BOOK_ADDED event.
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Retrieves the Id of the user involved.
+     *
+     * @return The user Id, or null if no user is involved.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Retrieves the name of a registered user.
+     *
+     * @return The name, or null if the event is not a USER_REGISTERED event.
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Retrieves the position of this event in the stream it was published to.
+     *
+     * @return The sequence number, or -1 if the event was not published.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    // Assigns the position in the stream; called once, before the event is made visible to consumers.
+    void setSequence(long sequence) {
+        if (this.sequence != -1) {
+            throw new IllegalStateException("Event was already published.");
+        }
+        this.sequence = sequence;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + sequence + "[ISBN=" + ISBN + ", userId=" + userId + "]";
+    }
+}
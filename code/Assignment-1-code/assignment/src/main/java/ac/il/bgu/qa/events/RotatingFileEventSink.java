@@ -0,0 +1,162 @@
+package ac.il.bgu.qa.events;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An event sink that appends events to local files as one JSON object per line.
+ * <p>
+ * Files are named {@code <prefix>-<number>.jsonl} with increasing numbers. When the current file would
+ * grow beyond the size limit, the sink starts the next one and deletes the oldest files beyond the
+ * retention limit. Output is flushed at the end of every batch.
+ */
+public class RotatingFileEventSink implements EventSink {
+
+    // The directory holding the files.
+    private final Path directory;
+    // The start of every file name.
+    private final String prefix;
+    // The size, in bytes, after which the sink rotates.
+    private final long maxFileBytes;
+    // The number of files kept.
+    private final int maxFiles;
+
+    // The files written, oldest first; the last one is current.
+    private final Deque<Path> files = new ArrayDeque<>();
+    // The number of the current file.
+    private long fileNumber;
+    // The current file's stream and size.
+    private OutputStream out;
+    private long fileBytes;
+
+    /**
+     * Constructs a new RotatingFileEventSink, continuing after any files left by an earlier run.
+     *
+     * @param directory    The directory holding the files; created if missing.
+     * @param prefix       The start of every file name.
+     * @param maxFileBytes The size after which the sink starts a new file.
+     * @param maxFiles     The number of files kept, including the current one.
+     * @throws IOException If the directory or first file cannot be created.
+     */
+    public RotatingFileEventSink(Path directory, String prefix, long maxFileBytes, int maxFiles) throws IOException {
+        if (maxFileBytes <= 0 || maxFiles <= 0) {
+            throw new IllegalArgumentException("Invalid rotation limits.");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.prefix = prefix;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+
+        List<Long> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "-*.jsonl")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length() + 1, name.length() - ".jsonl".length());
+                if (!number.isEmpty() && number.chars().allMatch(Character::isDigit)) {
+                    existing.add(Long.parseLong(number));
+                }
+            }
+        }
+        Collections.sort(existing);
+        for (long number : existing) {
+            files.addLast(fileFor(number));
+        }
+        fileNumber = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+        openNext();
+    }
+
+    @Override
+    public void onEvent(LibraryEvent event, boolean endOfBatch) {
+        byte[] line = toJson(event).getBytes(StandardCharsets.UTF_8);
+        try {
+            if (fileBytes > 0 && fileBytes + line.length > maxFileBytes) {
+                out.close();
+                openNext();
+            }
+            out.write(line);
+            fileBytes += line.length;
+            if (endOfBatch) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Retrieves the files currently kept, oldest first.
+     *
+     * @return The files.
+     */
+    public List<Path> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    // Starts the next file and deletes the oldest ones beyond the retention limit.
+    private void openNext() throws IOException {
+        Path file = fileFor(++fileNumber);
+        out = new BufferedOutputStream(Files.newOutputStream(file));
+        fileBytes = 0;
+        files.addLast(file);
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(files.removeFirst());
+        }
+    }
+
+    // Resolves the file with the given number.
+    private Path fileFor(long number) {
+        return directory.resolve(prefix + "-" + number + ".jsonl");
+    }
+
+    // Formats an event as a JSON line, leaving out fields that do not apply.
+    private static String toJson(LibraryEvent event) {
+        StringBuilder line = new StringBuilder(128);
+        line.append("{\"sequence\":").append(event.getSequence())
+                .append(",\"timestamp\":").append(event.getTimestampMillis())
+                .append(",\"type\":\"").append(event.getType()).append('"');
+        appendField(line, "isbn", event.getISBN());
+        appendField(line, "title", event.getTitle());
+        appendField(line, "author", event.getAuthor());
+        appendField(line, "userId", event.getUserId());
+        appendField(line, "userName", event.getUserName());
+        line.append("}\n");
+        return line.toString();
+    }
+
+    // Appends a string field, quoted and escaped, unless it is null.
+    private static void appendField(StringBuilder line, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,325 @@
+package ac.il.bgu.qa.eventsourcing;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.codec.BookCodec;
+import ac.il.bgu.qa.codec.UserCodec;
+import ac.il.bgu.qa.events.LibraryEvent;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A database service whose state is a fold over an event log.
+ * <p>
+ * Every write appends an event to a {@link PartitionedEventLog} and then applies it to in-memory maps,
+ * the projection that answers lookups. The projection can be written to a snapshot; {@link #open} rebuilds
+ * it from the latest snapshot plus the events logged after it, replaying the partitions in parallel.
+ * Since the events of a key all live in one partition, the rebuilt state does not depend on how the
+ * partitions' replays interleave.
+ * <p>
+ * Applying is idempotent: every partition remembers the last sequence number applied to it and skips
+ * events at or before it. Users are rebuilt with the notification service looked up by user Id.
+ */
+public class EventSourcedDatabaseService implements DatabaseService, Closeable {
+
+    // Identifies snapshot files, followed by the snapshot format version.
+    private static final int SNAPSHOT_MAGIC = 0x4C424553;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // The log receiving every write.
+    private final PartitionedEventLog log;
+    // Looks up the notification service of a rebuilt user by Id.
+    private final Function<String, NotificationService> notificationServices;
+
+    // The projection: books by ISBN, users by Id and the borrower of every borrowed book, by ISBN.
+    private final ConcurrentHashMap<String, Book> books = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> borrowers = new ConcurrentHashMap<>();
+    // The last sequence number applied, per partition.
+    private final AtomicLongArray applied;
+
+    // The number of events applied when the service was opened.
+    private long replayed;
+
+    // Held shared by writes and exclusively while a snapshot is taken.
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    // Keep appending and applying in the same order within a partition.
+    private final Object[] partitionLocks;
+
+    // Constructs an empty projection over a log.
+    private EventSourcedDatabaseService(PartitionedEventLog log, Function<String, NotificationService> notificationServices) {
+        this.log = log;
+        this.notificationServices = notificationServices;
+        this.applied = new AtomicLongArray(log.getPartitionCount());
+        this.partitionLocks = new Object[log.getPartitionCount()];
+        for (int i = 0; i < partitionLocks.length; i++) {
+            applied.set(i, -1);
+            partitionLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Opens a database service over a log, rebuilding its state from a snapshot, if one exists,
+     * and the events logged after it.
+     *
+     * @param log                  The log; its events must not be replayed by anyone else at the same time.
+     * @param snapshot             The snapshot file, or null to rebuild from the whole log.
+     * @param notificationServices Looks up the notification service of a rebuilt user by Id.
+     * @param threads              The number of partitions replayed at once.
+     * @return The database service.
+     * @throws IOException If the snapshot or log cannot be read.
+     */
+    public static EventSourcedDatabaseService open(PartitionedEventLog log, Path snapshot,
+                                                   Function<String, NotificationService> notificationServices,
+                                                   int threads) throws IOException {
+        EventSourcedDatabaseService service = new EventSourcedDatabaseService(log, notificationServices);
+        if (snapshot != null && Files.exists(snapshot)) {
+            service.loadSnapshot(snapshot);
+        }
+        long[] after = new long[log.getPartitionCount()];
+        for (int i = 0; i < after.length; i++) {
+            after[i] = service.applied.get(i);
+        }
+        service.replayed = PartitionedEventLog.replay(log.getDirectory(), log.getPartitionCount(), threads, after,
+                event -> service.apply(event, log.partitionOf(event), null));
+        return service;
+    }
+
+    /**
+     * Logs the addition of a book and adds it to the projection. Book events carry no copy count,
+     * so books hold a single copy.
+     *
+     * @param ISBN The International Standard Book Number identifying the book.
+     * @param book The book to be added.
+     * @throws IllegalArgumentException If the book has more than one copy.
+     */
+    @Override
+    public void addBook(String ISBN, Book book) {
+        if (book.getCopies() != 1) {
+            throw new IllegalArgumentException("Event-sourced books hold a single copy.");
+        }
+        record(new LibraryEvent(LibraryEvent.Type.BOOK_ADDED, System.currentTimeMillis(), ISBN, book.getTitle(), book.getAuthor(), null, null), book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        record(new LibraryEvent(LibraryEvent.Type.USER_REGISTERED, System.currentTimeMillis(), null, null, null, id, user.getName()), user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return ISBN == null ? null : books.get(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return userId == null ? null : users.get(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        record(LibraryEvent.bookBorrowed(ISBN, userId), null);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        record(LibraryEvent.bookReturned(ISBN), null);
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return ISBN != null && userId != null && userId.equals(borrowers.get(ISBN));
+    }
+
+    /**
+     * Retrieves the user currently holding a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The Id of the borrowing user, or null if the book is not borrowed.
+     */
+    public String getBorrowerId(String ISBN) {
+        return borrowers.get(ISBN);
+    }
+
+    /**
+     * Retrieves the number of logged events applied when the service was opened, after the snapshot.
+     *
+     * @return The number of replayed events.
+     */
+    public long getReplayedCount() {
+        return replayed;
+    }
+
+    /**
+     * Writes the current state to a snapshot file, replacing it atomically. Writes wait while the
+     * snapshot is taken; the log is flushed first, so the snapshot never covers events that could be lost.
+     *
+     * @param file The snapshot file.
+     * @throws IOException If writing fails.
+     */
+    public void snapshot(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        snapshotLock.writeLock().lock();
+        try {
+            log.flush();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(applied.length());
+                for (int i = 0; i < applied.length(); i++) {
+                    out.writeLong(applied.get(i));
+                }
+                out.writeInt(books.size());
+                for (Map.Entry<String, Book> entry : books.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeRecord(out, BookCodec.encode(entry.getValue()));
+                    String borrower = borrowers.get(entry.getKey());
+                    out.writeBoolean(borrower != null);
+                    if (borrower != null) {
+                        out.writeUTF(borrower);
+                    }
+                }
+                out.writeInt(users.size());
+                for (Map.Entry<String, User> entry : users.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeRecord(out, UserCodec.encode(entry.getValue()));
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the log.
+     *
+     * @throws IOException If closing the log fails.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotLock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // Appends an event and applies it, keeping the partition's order. A live book or user is stored as
+    // given, so the instance the library holds stays the one in the projection.
+    private void record(LibraryEvent event, Object live) {
+        int partition = log.partitionOf(event);
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (partitionLocks[partition]) {
+                apply(log.append(event), partition, live);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Folds one event into the projection, unless it was applied already.
+    private void apply(LibraryEvent event, int partition, Object live) {
+        if (event.getSequence() <= applied.get(partition)) {
+            return;
+        }
+        switch (event.getType()) {
+            case BOOK_ADDED:
+                books.put(event.getISBN(), live != null ? (Book) live : new Book(event.getISBN(), event.getTitle(), event.getAuthor()));
+                borrowers.remove(event.getISBN());
+                break;
+            case USER_REGISTERED:
+                users.put(event.getUserId(), live != null ? (User) live
+                        : new User(event.getUserName(), event.getUserId(), notificationServices.apply(event.getUserId())));
+                break;
+            case BOOK_BORROWED: {
+                borrowers.put(event.getISBN(), event.getUserId());
+                Book book = books.get(event.getISBN());
+                // The library marks the book before writing; a replay has to do it here.
+                if (book != null && !book.isBorrowed()) {
+                    book.borrow();
+                }
+                break;
+            }
+            case BOOK_RETURNED: {
+                borrowers.remove(event.getISBN());
+                Book book = books.get(event.getISBN());
+                if (book != null && book.isBorrowed()) {
+                    book.returnBook();
+                }
+                break;
+            }
+        }
+        applied.set(partition, event.getSequence());
+    }
+
+    // Restores the projection from a snapshot file.
+    private void loadSnapshot(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a supported snapshot: " + file);
+            }
+            if (in.readInt() != applied.length()) {
+                throw new IOException("Snapshot partition count does not match the log.");
+            }
+            for (int i = 0; i < applied.length(); i++) {
+                applied.set(i, in.readLong());
+            }
+            int bookCount = in.readInt();
+            for (int i = 0; i < bookCount; i++) {
+                String ISBN = in.readUTF();
+                Book book = BookCodec.decode(ByteBuffer.wrap(readRecord(in)));
+                // The borrow state follows the logged borrowers, not a flag the library may have set
+                // on the book before its borrow event was written.
+                boolean borrowed = in.readBoolean();
+                if (borrowed) {
+                    borrowers.put(ISBN, in.readUTF());
+                }
+                if (borrowed != book.isBorrowed()) {
+                    if (borrowed) {
+                        book.borrow();
+                    } else {
+                        book.returnBook();
+                    }
+                }
+                books.put(ISBN, book);
+            }
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                String id = in.readUTF();
+                users.put(id, UserCodec.decode(ByteBuffer.wrap(readRecord(in)), notificationServices));
+            }
+        }
+    }
+
+    // Writes a length-prefixed record.
+    private static void writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    // Reads a length-prefixed record.
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        byte[] record = new byte[in.readInt()];
+        in.readFully(record);
+        return record;
+    }
+}
@@ -0,0 +1,304 @@
+package ac.il.bgu.qa.eventsourcing;
+
+import ac.il.bgu.qa.codec.LibraryEventCodec;
+import ac.il.bgu.qa.events.LibraryEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of library events, split into partition files that can be replayed in parallel.
+ * <p>
+ * Book events are assigned to a partition by ISBN and user events by user Id, so all events about one key
+ * are in one partition, in the order they were appended. Sequence numbers are unique across the log and
+ * increase within every partition.
+ * <p>
+ * Every record is framed by its length and a CRC32 checksum. A record cut short by a crash, and anything
+ * after it, is discarded when the log is opened. Appended records are buffered; they are durable only
+ * after {@link #flush()} or {@link #close()}.
+ */
+public class PartitionedEventLog implements Closeable {
+
+    // Size of the buffers used for reading and writing partition files.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // The directory holding the partition files.
+    private final Path directory;
+    // The open partition files, each locked while appending.
+    private final Partition[] partitions;
+    // The next sequence number.
+    private final AtomicLong nextSequence;
+    // Set once the log is closed; later calls to close do nothing.
+    private boolean closed;
+
+    /**
+     * An open partition file.
+     */
+    private static final class Partition {
+        final FileChannel channel;
+        final DataOutputStream out;
+
+        Partition(FileChannel channel) {
+            this.channel = channel;
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Opens a log, creating it if missing. Existing partition files are checked, and any torn record at
+     * their end is cut off.
+     *
+     * @param directory     The directory holding the partition files; created if missing.
+     * @param partitionCount The number of partitions; must stay the same for the life of the log.
+     * @throws IOException If the files cannot be read or opened.
+     */
+    public PartitionedEventLog(Path directory, int partitionCount) throws IOException {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Invalid partition count.");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.partitions = new Partition[partitionCount];
+        long[][] ends = new long[partitionCount][];
+        scanAll(directory, partitionCount, Runtime.getRuntime().availableProcessors(), (partition, file) -> {
+            ends[partition] = Files.exists(file) ? scan(file, Long.MAX_VALUE, null) : new long[] { 0, -1, 0 };
+            return 0L;
+        });
+        long lastSequence = -1;
+        for (int i = 0; i < partitionCount; i++) {
+            Path file = fileOf(directory, i);
+            long[] end = ends[i];
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(end[0]);
+            channel.position(end[0]);
+            partitions[i] = new Partition(channel);
+            lastSequence = Math.max(lastSequence, end[1]);
+        }
+        this.nextSequence = new AtomicLong(lastSequence + 1);
+    }
+
+    /**
+     * Appends an event, assigning it the next sequence number.
+     *
+     * @param event An event that was not published yet.
+     * @return A copy of the event carrying its sequence number.
+     */
+    public LibraryEvent append(LibraryEvent event) {
+        Partition partition = partitions[partitionOf(event)];
+        synchronized (partition) {
+            LibraryEvent sequenced = new LibraryEvent(nextSequence.getAndIncrement(), event.getType(), event.getTimestampMillis(),
+                    event.getISBN(), event.getTitle(), event.getAuthor(), event.getUserId(), event.getUserName());
+            byte[] record = LibraryEventCodec.encode(sequenced);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            try {
+                partition.out.writeInt(record.length);
+                partition.out.writeInt((int) crc.getValue());
+                partition.out.write(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return sequenced;
+        }
+    }
+
+    /**
+     * Finds the partition an event belongs to.
+     *
+     * @param event The event.
+     * @return The partition index.
+     */
+    public int partitionOf(LibraryEvent event) {
+        String key = event.getType() == LibraryEvent.Type.USER_REGISTERED ? event.getUserId() : event.getISBN();
+        return partitionOf(key, partitions.length);
+    }
+
+    /**
+     * Retrieves the number of partitions.
+     *
+     * @return The partition count.
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Retrieves the directory holding the partition files.
+     *
+     * @return The directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes all buffered records to disk and waits until they are stored.
+     *
+     * @throws IOException If writing fails.
+     */
+    public void flush() throws IOException {
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                partition.out.flush();
+                partition.channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the partition files. Closing a closed log does nothing.
+     *
+     * @throws IOException If writing fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                partition.out.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the partition files of a log, one thread per partition, and hands each event to a handler.
+     * The events of one partition are handled in order on a single thread; different partitions are
+     * handled concurrently, so the handler must be safe for concurrent use across partitions.
+     * Records appended but not yet flushed are not seen.
+     *
+     * @param directory      The directory holding the partition files.
+     * @param partitionCount The number of partitions.
+     * @param threads        The number of partitions read at once.
+     * @param after          The sequence number after which to start, per partition; -1 to read everything.
+     * @param handler        Receives the events.
+     * @return The number of events handed to the handler.
+     * @throws IOException If a file cannot be read.
+     */
+    public static long replay(Path directory, int partitionCount, int threads, long[] after, Consumer<LibraryEvent> handler) throws IOException {
+        return scanAll(directory, partitionCount, threads,
+                (partition, file) -> Files.exists(file) ? scan(file, after[partition], handler)[2] : 0L);
+    }
+
+    /**
+     * Reads one partition file.
+     */
+    private interface PartitionTask {
+        long run(int partition, Path file) throws IOException;
+    }
+
+    // Runs a task for every partition file on a pool of threads and sums the results.
+    private static long scanAll(Path directory, int partitionCount, int threads, PartitionTask task) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, partitionCount)));
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < partitionCount; i++) {
+                int partition = i;
+                Path file = fileOf(directory, i);
+                results.add(executor.submit(() -> task.run(partition, file)));
+            }
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the log.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the partition of a key, the same in every process.
+     *
+     * @param key            The ISBN or user Id.
+     * @param partitionCount The number of partitions.
+     * @return The partition index.
+     */
+    static int partitionOf(String key, int partitionCount) {
+        return key == null ? 0 : Math.floorMod(key.hashCode(), partitionCount);
+    }
+
+    // Resolves the file of a partition.
+    private static Path fileOf(Path directory, int partition) {
+        return directory.resolve("partition-" + partition + ".log");
+    }
+
+    // Reads a partition file up to its last intact record, handing events after the given sequence
+    // number to the handler, if any. Returns the length of the intact part, the last sequence number
+    // and the number of handled events.
+    private static long[] scan(Path file, long after, Consumer<LibraryEvent> handler) throws IOException {
+        long validLength = 0;
+        long lastSequence = -1;
+        long handled = 0;
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[256];
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE))) {
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > (1 << 24)) {
+                        break;
+                    }
+                    if (record.length < length) {
+                        record = new byte[Math.max(length, record.length * 2)];
+                    }
+                    in.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(record, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                validLength += 8 + length;
+                // The sequence number follows the version, type and flags bytes.
+                lastSequence = ByteBuffer.wrap(record, 0, length).getLong(3);
+                if (handler != null && lastSequence > after) {
+                    handler.accept(LibraryEventCodec.decode(ByteBuffer.wrap(record, 0, length)));
+                    handled++;
+                }
+            }
+        }
+        return new long[] { validLength, lastSequence, handled };
+    }
+}
@@ -0,0 +1,168 @@
+package ac.il.bgu.qa.filter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent Bloom filter over string keys, such as ISBNs or user Ids.
+ * <p>
+ * {@link #mightContain} never answers false for a key that was added, and answers true for a key that was
+ * not added with roughly the configured false-positive rate, as long as no more keys than expected are
+ * added. Keys cannot be removed. Adding and querying are lock-free and safe from any number of threads.
+ */
+public class BloomFilter {
+
+    // The bits, 64 to a word.
+    private final AtomicLongArray words;
+    // The number of bits.
+    private final long bitCount;
+    // The number of bits set for every key.
+    private final int hashCount;
+    // The number of keys the filter was sized for.
+    private final long expectedInsertions;
+    // Counts calls to add, including repeated keys.
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * Constructs a new BloomFilter sized for a number of keys and a false-positive rate.
+     *
+     * @param expectedInsertions The number of keys expected to be added.
+     * @param falsePositiveRate  The wanted rate of false positives once that many keys were added,
+     *                           between 0 and 1 exclusive.
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter configuration.");
+        }
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long wordCount = Math.max(1, (bits + 63) / 64);
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large.");
+        }
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bitCount = wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key The key; null is ignored.
+     */
+    public void add(String key) {
+        if (key == null) {
+            return;
+        }
+        long hash = hash(key);
+        long h1 = hash >>> 32;
+        long h2 = hash & 0xFFFFFFFFL;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+        insertions.increment();
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param key The key.
+     * @return false if the key was definitely never added, true if it probably was.
+     */
+    public boolean mightContain(String key) {
+        if (key == null) {
+            return false;
+        }
+        long hash = hash(key);
+        long h1 = hash >>> 32;
+        long h2 = hash & 0xFFFFFFFFL;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the number of bits, which is also the filter's memory footprint in bits.
+     *
+     * @return The number of bits.
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Retrieves the memory taken by the bits.
+     *
+     * @return The size of the bit array in bytes.
+     */
+    public long getMemoryBytes() {
+        return bitCount / 8;
+    }
+
+    /**
+     * Retrieves the number of bits set for every key.
+     *
+     * @return The number of hash functions.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Retrieves the number of keys the filter was sized for.
+     *
+     * @return The expected number of insertions.
+     */
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * Retrieves the number of calls to {@link #add}, counting repeated keys every time.
+     *
+     * @return The number of insertions.
+     */
+    public long getInsertionCount() {
+        return insertions.sum();
+    }
+
+    /**
+     * Estimates the current false-positive rate from the share of bits set.
+     * Takes time proportional to the filter's size.
+     *
+     * @return The estimated probability that an absent key is reported as present.
+     */
+    public double getEstimatedFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) set / bitCount, hashCount);
+    }
+
+    // Hashes a key to 64 bits: FNV-1a over the characters followed by a final avalanche mix.
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
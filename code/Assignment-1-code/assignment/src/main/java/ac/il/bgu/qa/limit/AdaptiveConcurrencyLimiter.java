@@ -0,0 +1,166 @@
+package ac.il.bgu.qa.limit;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of operations running at once, adapting the limit to the observed latency.
+ * <p>
+ * The limit follows additive increase, multiplicative decrease: every operation that completes within
+ * the latency threshold while the limit was at least half used raises the limit by one, and every
+ * operation that takes longer multiplies it by the backoff ratio. Operations of a given priority are
+ * admitted only while fewer than the priority's share of the limit are running, so optional work is
+ * rejected before critical work. Rejected operations fail immediately instead of queueing.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // Bounds of the limit
+    private final int minLimit;
+    private final int maxLimit;
+
+    // Operations slower than this count as a sign of overload
+    private final long latencyThresholdNanos;
+
+    // Factor applied to the limit after a slow operation
+    private final double backoffRatio;
+
+    // Clock measuring operation latency, in nanoseconds
+    private final LongSupplier clock;
+
+    // The current limit, fractional so that repeated backoffs are not lost to rounding
+    private double limit;
+
+    // Operations currently admitted
+    private int inFlight;
+
+    // Totals since construction
+    private long admittedCount;
+    private long rejectedCount;
+
+    /**
+     * Constructs a new AdaptiveConcurrencyLimiter.
+     *
+     * @param initialLimit          The limit to start with.
+     * @param minLimit              The lowest the limit may go, at least 1.
+     * @param maxLimit              The highest the limit may go.
+     * @param latencyThresholdNanos The latency above which an operation signals overload.
+     * @param backoffRatio          The factor applied to the limit after a slow operation, between 0 and 1 exclusive.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdNanos,
+                                      double backoffRatio) {
+        this(initialLimit, minLimit, maxLimit, latencyThresholdNanos, backoffRatio, System::nanoTime);
+    }
+
+    // Constructor with a replaceable clock.
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdNanos,
+                               double backoffRatio, LongSupplier clock) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit
+                || latencyThresholdNanos <= 0 || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid limiter configuration.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.clock = clock;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Admits an operation if the limit allows it for the given priority.
+     *
+     * @param priority The priority of the operation.
+     * @return A permit that must be released when the operation completes, or null if the operation is rejected.
+     */
+    public Permit tryAcquire(Priority priority) {
+        int admitted;
+        synchronized (this) {
+            int allowed = Math.max(1, (int) (limit * priority.getShare()));
+            if (inFlight >= allowed) {
+                rejectedCount++;
+                return null;
+            }
+            admitted = ++inFlight;
+            admittedCount++;
+        }
+        return new Permit(admitted, clock.getAsLong());
+    }
+
+    // Adjusts the limit for a completed operation.
+    private synchronized void complete(int inFlightAtStart, long latencyNanos) {
+        inFlight--;
+        if (latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlightAtStart * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    /**
+     * Retrieves the current limit.
+     *
+     * @return The number of operations that may run at once.
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Retrieves the number of operations currently admitted.
+     *
+     * @return The number of unreleased permits.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Retrieves the number of operations admitted since construction.
+     *
+     * @return The admitted count.
+     */
+    public synchronized long getAdmittedCount() {
+        return admittedCount;
+    }
+
+    /**
+     * Retrieves the number of operations rejected since construction.
+     *
+     * @return The rejected count.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Represents an admitted operation. Releasing it more than once has no further effect.
+     */
+    public final class Permit {
+
+        // The number of operations running when this one was admitted, including itself
+        private final int inFlightAtStart;
+
+        // When the operation was admitted
+        private final long startNanos;
+
+        // Whether the permit was released
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the permit, feeding the operation's latency into the limit.
+         */
+        public void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            complete(inFlightAtStart, clock.getAsLong() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ac.il.bgu.qa.limit;
+
+/**
+ * Represents how important an operation is when the library is overloaded.
+ * Lower priorities may only use part of the concurrency limit, so they are shed first.
+ */
+public enum Priority {
+
+    /** Operations that change borrow state: borrowing and returning books. */
+    CRITICAL(1.0),
+
+    /** Regular operations, such as adding books and explicit notifications. */
+    STANDARD(0.9),
+
+    /** Best-effort work, such as the review notification sent while fetching a book. */
+    OPTIONAL(0.5);
+
+    // The share of the concurrency limit operations of this priority may use
+    private final double share;
+
+    Priority(double share) {
+        this.share = share;
+    }
+
+    /**
+     * Retrieves the share of the concurrency limit operations of this priority may use.
+     *
+     * @return A share between 0 and 1.
+     */
+    public double getShare() {
+        return share;
+    }
+}
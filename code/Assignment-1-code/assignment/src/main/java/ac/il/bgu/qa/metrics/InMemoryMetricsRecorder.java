@@ -0,0 +1,82 @@
+package ac.il.bgu.qa.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A metrics recorder that keeps counters and latency histograms in memory,
+ * so they can be inspected or exported by the hosting process.
+ */
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+
+    // Counters by name.
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    // Latency histograms by timer name.
+    private final ConcurrentHashMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void increment(String name) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void recordLatency(String name, long nanos) {
+        getHistogram(name).record(nanos);
+    }
+
+    /**
+     * Retrieves the current value of a counter.
+     *
+     * @param name The name of the counter.
+     * @return The counter's value, or 0 if it was never incremented.
+     */
+    public long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Retrieves the latency histogram of a timer, creating an empty one if needed.
+     *
+     * @param name The name of the timer.
+     * @return The timer's histogram.
+     */
+    public LatencyHistogram getHistogram(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Retrieves a sorted snapshot of all counters.
+     *
+     * @return A map from counter name to its current value.
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        return snapshot;
+    }
+
+    /**
+     * Retrieves a sorted view of all timers.
+     *
+     * @return A map from timer name to its histogram.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(timers);
+    }
+
+    /**
+     * Clears all counters and timers.
+     */
+    public void reset() {
+        counters.clear();
+        timers.clear();
+    }
+}
@@ -0,0 +1,178 @@
+package ac.il.bgu.qa.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent, fixed-memory latency histogram using HdrHistogram-style log-linear buckets.
+ * Values below 128 are counted exactly; larger values are grouped into 64 buckets per power of two,
+ * which keeps every reported value within about 1.6% of the recorded one.
+ */
+public class LatencyHistogram {
+
+    // Values below this threshold each get their own bucket.
+    private static final int LINEAR_BUCKETS = 128;
+    // Number of buckets for each power of two above the linear range.
+    private static final int SUB_BUCKETS = 64;
+    // Highest power of two that is tracked; larger values are clamped (2^40 ns is about 18 minutes).
+    private static final int MAX_EXPONENT = 39;
+    // Largest value that can be recorded without clamping.
+    public static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    // Count of recorded values per bucket.
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR_BUCKETS + (MAX_EXPONENT - 6) * SUB_BUCKETS);
+    // Total number of recorded values.
+    private final LongAdder totalCount = new LongAdder();
+    // Sum of all recorded values, used for the mean.
+    private final LongAdder totalSum = new LongAdder();
+    // Largest value recorded so far.
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single value.
+     *
+     * @param value The value to record, negative values are treated as zero.
+     */
+    public void record(long value) {
+        recordCount(value, 1);
+    }
+
+    /**
+     * Records a value the given number of times.
+     *
+     * @param value The value to record, negative values are treated as zero.
+     * @param count How many times the value occurred.
+     */
+    public void recordCount(long value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        long clamped = Math.min(Math.max(value, 0), MAX_TRACKABLE_VALUE);
+        counts.addAndGet(bucketIndex(clamped), count);
+        totalCount.add(count);
+        totalSum.add(clamped * count);
+        max.accumulateAndGet(clamped, Math::max);
+    }
+
+    /**
+     * Adds all values recorded in another histogram into this one.
+     *
+     * @param other The histogram whose values are to be added.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.add(other.totalCount.sum());
+        totalSum.add(other.totalSum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Retrieves the number of recorded values.
+     *
+     * @return The total count.
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Retrieves the largest recorded value.
+     *
+     * @return The maximum, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Retrieves the arithmetic mean of all recorded values.
+     *
+     * @return The mean, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalSum.sum() / count;
+    }
+
+    /**
+     * Retrieves the value below which the given percentage of recorded values fall.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The highest value equivalent to the bucket holding the percentile, or 0 if empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        // The rank of the value we are looking for, at least the first one.
+        double bounded = Math.min(Math.max(percentile, 0), 100);
+        long rank = Math.max(1, (long) Math.ceil(bounded / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all recorded values.
+     * Values recorded concurrently with a reset may or may not survive it.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalSum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Maps a value to the bucket counting it.
+     *
+     * @param value A value between 0 and {@link #MAX_TRACKABLE_VALUE}.
+     * @return The index of the bucket.
+     */
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        // The exponent is at least 7 here; keep the 7 most significant bits, the leading one included.
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - 6)) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - 7) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Retrieves the largest value that falls into the given bucket.
+     *
+     * @param index The index of the bucket.
+     * @return The upper bound of the bucket, inclusive.
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int offset = index - LINEAR_BUCKETS;
+        int exponent = offset / SUB_BUCKETS + 7;
+        long subBucket = offset % SUB_BUCKETS + SUB_BUCKETS;
+        long width = 1L << (exponent - 6);
+        return (subBucket << (exponent - 6)) + width - 1;
+    }
+}
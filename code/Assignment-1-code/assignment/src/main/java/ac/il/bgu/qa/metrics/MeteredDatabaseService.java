@@ -0,0 +1,101 @@
+package ac.il.bgu.qa.metrics;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.function.Supplier;
+
+/**
+ * A database service decorator that records the latency and failures of every call
+ * made to the underlying database service.
+ * Timers are named {@code db.<method>} and failure counters {@code db.<method>.failure.<exception>}.
+ */
+public class MeteredDatabaseService implements DatabaseService {
+
+    // The database service being measured.
+    private final DatabaseService delegate;
+
+    // Where the measurements are recorded.
+    private final MetricsRecorder metrics;
+
+    // Constructor for MeteredDatabaseService, wraps the given service
+    public MeteredDatabaseService(DatabaseService delegate, MetricsRecorder metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        time("addBook", () -> {
+            delegate.addBook(ISBN, book);
+            return null;
+        });
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        time("registerUser", () -> {
+            delegate.registerUser(id, user);
+            return null;
+        });
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return time("getBookByISBN", () -> delegate.getBookByISBN(ISBN));
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return time("getUserById", () -> delegate.getUserById(userId));
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        time("borrowBook", () -> {
+            delegate.borrowBook(ISBN, userId);
+            return null;
+        });
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        time("returnBook", () -> {
+            delegate.returnBook(ISBN);
+            return null;
+        });
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        time("returnBook", () -> {
+            delegate.returnBook(ISBN, userId);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return time("holdsCopy", () -> delegate.holdsCopy(ISBN, userId));
+    }
+
+    /**
+     * Runs a call against the delegate and records its latency and, if it fails, its failure.
+     *
+     * @param method The name of the database method being called.
+     * @param call   The call to run.
+     * @return The call's result.
+     */
+    private <T> T time(String method, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            metrics.increment("db." + method + ".failure." + e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            metrics.recordLatency("db." + method, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ac.il.bgu.qa.metrics;
+
+import ac.il.bgu.qa.services.NotificationService;
+
+/**
+ * A notification service decorator that records the latency and failures of every notification
+ * sent through the underlying notification service.
+ * The timer is named {@code notification.notifyUser} and failure counters
+ * {@code notification.notifyUser.failure.<exception>}.
+ */
+public class MeteredNotificationService implements NotificationService {
+
+    // The notification service being measured.
+    private final NotificationService delegate;
+
+    // Where the measurements are recorded.
+    private final MetricsRecorder metrics;
+
+    // Constructor for MeteredNotificationService, wraps the given service
+    public MeteredNotificationService(NotificationService delegate, MetricsRecorder metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void notifyUser(String userId, String message) {
+        long start = System.nanoTime();
+        try {
+            delegate.notifyUser(userId, message);
+        } catch (RuntimeException e) {
+            metrics.increment("notification.notifyUser.failure." + e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            metrics.recordLatency("notification.notifyUser", System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ac.il.bgu.qa.metrics;
+
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.List;
+
+/**
+ * A review service decorator that records the latency and failures of every call
+ * made to the underlying review service.
+ * Timers are named {@code review.<method>} and failure counters {@code review.<method>.failure.<exception>}.
+ */
+public class MeteredReviewService implements ReviewService {
+
+    // The review service being measured.
+    private final ReviewService delegate;
+
+    // Where the measurements are recorded.
+    private final MetricsRecorder metrics;
+
+    // Constructor for MeteredReviewService, wraps the given service
+    public MeteredReviewService(ReviewService delegate, MetricsRecorder metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<String> getReviewsForBook(String ISBN) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getReviewsForBook(ISBN);
+        } catch (RuntimeException e) {
+            metrics.increment("review.getReviewsForBook.failure." + e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            metrics.recordLatency("review.getReviewsForBook", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close() {
+        long start = System.nanoTime();
+        try {
+            delegate.close();
+        } catch (RuntimeException e) {
+            metrics.increment("review.close.failure." + e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            metrics.recordLatency("review.close", System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ac.il.bgu.qa.metrics;
+
+/**
+ * Provides an interface for components that record counters and latencies
+ * for library operations and service calls.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Checks whether this recorder actually records anything.
+     * Callers use this to skip taking timestamps when metrics are disabled.
+     *
+     * @return true if recorded values are kept, otherwise false.
+     */
+    boolean isEnabled();
+
+    /**
+     * Increments the counter with the given name by one.
+     *
+     * @param name The name of the counter.
+     */
+    void increment(String name);
+
+    /**
+     * Records a single latency measurement for the timer with the given name.
+     *
+     * @param name  The name of the timer.
+     * @param nanos The measured latency in nanoseconds.
+     */
+    void recordLatency(String name, long nanos);
+}
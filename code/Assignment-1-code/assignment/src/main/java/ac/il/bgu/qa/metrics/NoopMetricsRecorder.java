@@ -0,0 +1,27 @@
+package ac.il.bgu.qa.metrics;
+
+/**
+ * A metrics recorder that discards everything. Used by default so that
+ * instrumented code pays only for a single {@link #isEnabled()} check.
+ */
+public final class NoopMetricsRecorder implements MetricsRecorder {
+
+    // The shared instance, the recorder has no state.
+    public static final NoopMetricsRecorder INSTANCE = new NoopMetricsRecorder();
+
+    private NoopMetricsRecorder() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void increment(String name) {
+    }
+
+    @Override
+    public void recordLatency(String name, long nanos) {
+    }
+}
@@ -0,0 +1,327 @@
+package ac.il.bgu.qa.partition;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.LibraryOutcome;
+import ac.il.bgu.qa.errors.LibraryOverloadedException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs a {@link Library}'s book operations on a fixed set of single-threaded partitions, each owning a
+ * slice of the ISBN space.
+ * <p>
+ * Every operation on a book is queued to the partition its ISBN hashes to, and partitions run their
+ * operations one at a time in arrival order, so a book's state is only ever changed by one thread and a
+ * hot book is never contended. Callers get a future instead of waiting. Queues are lock-free and bounded;
+ * an operation arriving at a full partition fails with {@link LibraryOverloadedException}.
+ * <p>
+ * A batch borrow spanning several partitions sends each partition its part and, if any book cannot be
+ * borrowed, sends the partitions that succeeded a compensating return. Other callers may briefly see
+ * those books as borrowed; the batch is atomic in outcome, not isolated.
+ */
+public class PartitionedLibrary implements Closeable {
+
+    /**
+     * A single-threaded worker draining its own queue.
+     */
+    private static final class Partition implements Runnable {
+        // Operations waiting to run; many producers, one consumer.
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        // The number of queued operations.
+        private final AtomicInteger depth = new AtomicInteger();
+        // The worker thread.
+        private final Thread thread;
+        // Set while the worker is parked or about to park, so producers know to wake it.
+        private volatile boolean idle;
+        // Cleared on close; the worker drains its queue and exits.
+        private volatile boolean running = true;
+        // Set once the worker has stopped taking operations; whoever queues one after that runs it.
+        private volatile boolean exited;
+
+        Partition(String name) {
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        // Queues an operation, waking the worker if it is idle.
+        boolean offer(Runnable operation, int capacity) {
+            if (depth.incrementAndGet() > capacity) {
+                depth.decrementAndGet();
+                return false;
+            }
+            queue.offer(operation);
+            if (exited) {
+                drain();
+            } else if (idle) {
+                LockSupport.unpark(thread);
+            }
+            return true;
+        }
+
+        // Runs the queued operations on the calling thread until the queue is empty.
+        void drain() {
+            Runnable operation;
+            while ((operation = queue.poll()) != null) {
+                depth.decrementAndGet();
+                operation.run();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable operation = queue.poll();
+                if (operation != null) {
+                    depth.decrementAndGet();
+                    operation.run();
+                    continue;
+                }
+                if (!running) {
+                    // Operations queued before exited is seen are drained here, later ones by their producer.
+                    exited = true;
+                    drain();
+                    return;
+                }
+                idle = true;
+                // Re-check after publishing idle, so an operation queued meanwhile is not missed.
+                if (queue.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            }
+        }
+    }
+
+    // The library executing the operations.
+    private final Library library;
+    // The partitions, indexed by ISBN hash.
+    private final Partition[] partitions;
+    // The most operations a partition queues before rejecting more.
+    private final int queueCapacity;
+    // Set once close has been called.
+    private volatile boolean closed;
+
+    // Statistics.
+    private final AtomicLong compensations = new AtomicLong();
+
+    /**
+     * Constructs a new PartitionedLibrary and starts its partitions.
+     *
+     * @param library        The library executing the operations.
+     * @param partitionCount The number of partitions, typically the number of cores.
+     * @param queueCapacity  The most operations a partition queues before rejecting more.
+     */
+    public PartitionedLibrary(Library library, int partitionCount, int queueCapacity) {
+        if (library == null || partitionCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid partitioning configuration.");
+        }
+        this.library = library;
+        this.queueCapacity = queueCapacity;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition("library-partition-" + i);
+            partitions[i].thread.start();
+        }
+    }
+
+    /**
+     * Borrows a book on the partition owning it.
+     *
+     * @param ISBN   The ISBN of the book to borrow.
+     * @param userId The Id of the borrowing user.
+     * @return A future completing with the outcome, or exceptionally if the partition is overloaded
+     * or the library fails unexpectedly.
+     */
+    public CompletableFuture<LibraryOutcome> borrowBook(String ISBN, String userId) {
+        return submit(ISBN, () -> library.tryBorrowBook(ISBN, userId));
+    }
+
+    /**
+     * Returns a book on the partition owning it.
+     *
+     * @param ISBN The ISBN of the book to return.
+     * @return A future completing with the outcome.
+     */
+    public CompletableFuture<LibraryOutcome> returnBook(String ISBN) {
+        return submit(ISBN, () -> library.tryReturnBook(ISBN));
+    }
+
+    /**
+     * Returns a user's copy of a book on the partition owning it.
+     *
+     * @param ISBN   The ISBN of the book to return.
+     * @param userId The Id of the returning user.
+     * @return A future completing with the outcome.
+     */
+    public CompletableFuture<LibraryOutcome> returnBook(String ISBN, String userId) {
+        return submit(ISBN, () -> library.tryReturnBook(ISBN, userId));
+    }
+
+    /**
+     * Looks up an available book for a user on the partition owning it.
+     *
+     * @param ISBN   The ISBN of the book.
+     * @param userId The Id of the user.
+     * @return A future completing with the book, or exceptionally with the exception the library threw.
+     */
+    public CompletableFuture<Book> getBookByISBN(String ISBN, String userId) {
+        return submit(ISBN, () -> library.getBookByISBN(ISBN, userId));
+    }
+
+    /**
+     * Borrows several books for a user, all or none. Each partition borrows its books; if any fails,
+     * the books already borrowed are returned on their partitions before the future completes.
+     *
+     * @param ISBNs  The ISBNs of the books to borrow; duplicates are ignored.
+     * @param userId The Id of the borrowing user.
+     * @return A future completing with each book's borrow outcome in the given order, null where the borrow
+     * failed with an exception. If any outcome is not SUCCESS, no book of the batch is left borrowed by it.
+     */
+    public CompletableFuture<Map<String, LibraryOutcome>> borrowBooks(Collection<String> ISBNs, String userId) {
+        List<String> books = new ArrayList<>(new LinkedHashSet<>(ISBNs));
+        List<CompletableFuture<LibraryOutcome>> borrows = new ArrayList<>(books.size());
+        for (String ISBN : books) {
+            borrows.add(borrowBook(ISBN, userId));
+        }
+        return CompletableFuture.allOf(borrows.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, failure) -> null)
+                .thenCompose(ignored -> {
+                    Map<String, LibraryOutcome> outcomes = new LinkedHashMap<>();
+                    boolean allBorrowed = true;
+                    for (int i = 0; i < books.size(); i++) {
+                        LibraryOutcome outcome = borrows.get(i).handle((result, failure) -> result).join();
+                        outcomes.put(books.get(i), outcome);
+                        allBorrowed &= outcome == LibraryOutcome.SUCCESS;
+                    }
+                    if (allBorrowed) {
+                        return CompletableFuture.completedFuture(outcomes);
+                    }
+                    List<CompletableFuture<LibraryOutcome>> returns = new ArrayList<>();
+                    for (Map.Entry<String, LibraryOutcome> entry : outcomes.entrySet()) {
+                        if (entry.getValue() == LibraryOutcome.SUCCESS) {
+                            compensations.incrementAndGet();
+                            returns.add(compensate(entry.getKey(), userId));
+                        }
+                    }
+                    return CompletableFuture.allOf(returns.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(done -> outcomes);
+                });
+    }
+
+    /**
+     * Retrieves the number of partitions.
+     *
+     * @return The partition count.
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Retrieves the partition owning a book.
+     *
+     * @param ISBN The ISBN of the book.
+     * @return The partition's index.
+     */
+    public int partitionOf(String ISBN) {
+        if (ISBN == null) {
+            return 0;
+        }
+        // Digit strings hash poorly in the low bits, so spread the high bits down before taking the remainder.
+        int hash = ISBN.hashCode() * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & 0x7fffffff) % partitions.length;
+    }
+
+    /**
+     * Retrieves the number of operations queued on a partition.
+     *
+     * @param partition The partition's index.
+     * @return The queue depth.
+     */
+    public int getQueueDepth(int partition) {
+        return partitions[partition].depth.get();
+    }
+
+    /**
+     * Retrieves the number of compensating returns sent for batch borrows that did not complete.
+     *
+     * @return The compensation count.
+     */
+    public long getCompensationCount() {
+        return compensations.get();
+    }
+
+    /**
+     * Stops accepting operations, lets each partition finish those already queued, and waits for them to exit.
+     * Operations queued while closing, such as the compensating returns of a batch completing meanwhile,
+     * run on the thread queuing them or the calling thread; none is left unrun.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Partition partition : partitions) {
+            partition.running = false;
+            LockSupport.unpark(partition.thread);
+        }
+        boolean interrupted = false;
+        for (Partition partition : partitions) {
+            while (partition.thread.isAlive()) {
+                try {
+                    partition.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Partition partition : partitions) {
+            partition.drain();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns a book borrowed by an incomplete batch; queued even when the partition is full or closed, so it is
+    // never dropped. Once the partition's worker has exited, the return runs on the calling thread.
+    private CompletableFuture<LibraryOutcome> compensate(String ISBN, String userId) {
+        CompletableFuture<LibraryOutcome> future = new CompletableFuture<>();
+        Partition partition = partitions[partitionOf(ISBN)];
+        partition.offer(() -> run(future, () -> library.tryReturnBook(ISBN, userId)), Integer.MAX_VALUE);
+        return future;
+    }
+
+    // Queues an operation on the partition owning the ISBN.
+    private <T> CompletableFuture<T> submit(String ISBN, Supplier<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new RejectedExecutionException("The partitioned library is closed."));
+        } else if (!partitions[partitionOf(ISBN)].offer(() -> run(future, operation), queueCapacity)) {
+            future.completeExceptionally(new LibraryOverloadedException("Partition for ISBN " + ISBN + " is full.", false));
+        }
+        return future;
+    }
+
+    // Runs an operation on its partition's thread and completes its future.
+    private static <T> void run(CompletableFuture<T> future, Supplier<T> operation) {
+        try {
+            future.complete(operation.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
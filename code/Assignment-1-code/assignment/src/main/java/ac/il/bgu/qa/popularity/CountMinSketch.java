@@ -0,0 +1,96 @@
+package ac.il.bgu.qa.popularity;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent count-min sketch estimating how often each key was seen, in constant memory.
+ * <p>
+ * Estimates never undercount; they overcount by at most about {@code e / width} of all counts
+ * with probability {@code 1 - e^-depth}. Updates are lock-free and safe from any number of threads.
+ */
+public class CountMinSketch {
+
+    // One row of counters per hash function, stored row after row.
+    private final AtomicLongArray counters;
+    // The number of counters per row.
+    private final int width;
+    // The number of rows.
+    private final int depth;
+
+    /**
+     * Constructs a new CountMinSketch.
+     *
+     * @param width The number of counters per row; larger values reduce overcounting.
+     * @param depth The number of rows; larger values make large overcounts less likely.
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0 || (long) width * depth > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid sketch dimensions.");
+        }
+        this.counters = new AtomicLongArray(width * depth);
+        this.width = width;
+        this.depth = depth;
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * @param key The key.
+     * @return The key's estimated count, including this occurrence.
+     */
+    public long add(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + Math.floorMod(h1 + row * h2, width);
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates how often a key was seen.
+     *
+     * @param key The key.
+     * @return The estimated count, never less than the true count since the last decay.
+     */
+    public long estimate(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + Math.floorMod(h1 + row * h2, width)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter, so older occurrences weigh less than recent ones.
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >> 1);
+        }
+    }
+
+    /**
+     * Retrieves the memory taken by the counters.
+     *
+     * @return The size of the counters in bytes.
+     */
+    public long getMemoryBytes() {
+        return counters.length() * 8L;
+    }
+
+    // Spreads the string's cached hash code over 64 bits, so hashing costs no pass over the characters.
+    private static long hash(String key) {
+        long hash = key.hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,194 @@
+package ac.il.bgu.qa.popularity;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the most frequent keys of a stream, such as the most borrowed ISBNs, in constant memory.
+ * <p>
+ * Every key is counted in a {@link CountMinSketch}; the keys with the highest estimates are kept as
+ * heavy-hitter candidates. Counts are halved at a fixed interval by a background task, so the ranking
+ * follows recent activity without recording ever paying for it. Recording a key costs a few atomic
+ * increments; only a key entering the heavy hitters, which then evicts the least frequent one, takes a lock.
+ */
+public class PopularityTracker implements Closeable {
+
+    // Approximate counts of all keys.
+    private final CountMinSketch sketch;
+    // The number of heavy hitters kept.
+    private final int capacity;
+
+    // Heavy-hitter candidates and their estimated counts; entries are added and evicted holding this.
+    private final ConcurrentHashMap<String, Long> heavyHitters = new ConcurrentHashMap<>();
+    // The smallest count among the candidates once they are full, 0 before; read without locking.
+    private volatile long threshold;
+    // The scheduler created for this tracker, shut down on close, or null if none was created.
+    private final ScheduledExecutorService ownScheduler;
+    // The periodic decay, or null to never decay.
+    private final ScheduledFuture<?> decayTask;
+
+    /**
+     * Constructs a new PopularityTracker.
+     *
+     * @param capacity            The number of most frequent keys to report.
+     * @param width               The number of counters per sketch row.
+     * @param depth               The number of sketch rows.
+     * @param decayIntervalMillis How often counts are halved, on a daemon thread of the tracker's own, or 0 to never decay.
+     */
+    public PopularityTracker(int capacity, int width, int depth, long decayIntervalMillis) {
+        this(capacity, width, depth, decayIntervalMillis, decayIntervalMillis > 0 ? newDecayScheduler() : null, true);
+    }
+
+    /**
+     * Constructs a new PopularityTracker that decays on a shared scheduler, e.g. one serving both of a
+     * library's trackers. The scheduler is not shut down on close.
+     *
+     * @param capacity            The number of most frequent keys to report.
+     * @param width               The number of counters per sketch row.
+     * @param depth               The number of sketch rows.
+     * @param decayIntervalMillis How often counts are halved, or 0 to never decay.
+     * @param scheduler           Runs the decay.
+     */
+    public PopularityTracker(int capacity, int width, int depth, long decayIntervalMillis, ScheduledExecutorService scheduler) {
+        this(capacity, width, depth, decayIntervalMillis, scheduler, false);
+    }
+
+    // Constructor shared by the public ones; owned tells whether the scheduler is shut down on close.
+    private PopularityTracker(int capacity, int width, int depth, long decayIntervalMillis,
+                              ScheduledExecutorService scheduler, boolean owned) {
+        if (capacity <= 0 || decayIntervalMillis < 0 || (decayIntervalMillis > 0 && scheduler == null)) {
+            throw new IllegalArgumentException("Invalid tracker configuration.");
+        }
+        this.sketch = new CountMinSketch(width, depth);
+        this.capacity = capacity;
+        this.ownScheduler = owned ? scheduler : null;
+        this.decayTask = decayIntervalMillis > 0
+                ? scheduler.scheduleAtFixedRate(this::decay, decayIntervalMillis, decayIntervalMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * @param key The key; null is ignored.
+     */
+    public void record(String key) {
+        if (key == null) {
+            return;
+        }
+        long estimate = sketch.add(key);
+        if (estimate > threshold && heavyHitters.replace(key, estimate) == null) {
+            offer(key, estimate);
+        }
+    }
+
+    /**
+     * Estimates how often a key was recorded, weighted towards recent occurrences.
+     *
+     * @param key The key.
+     * @return The estimated count.
+     */
+    public long estimate(String key) {
+        return sketch.estimate(key);
+    }
+
+    /**
+     * Retrieves the most frequent keys.
+     *
+     * @return The keys and their estimated counts, most frequent first.
+     */
+    public Map<String, Long> getTopK() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(heavyHitters.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    /**
+     * Retrieves the memory taken by the sketch's counters.
+     *
+     * @return The sketch size in bytes.
+     */
+    public long getSketchMemoryBytes() {
+        return sketch.getMemoryBytes();
+    }
+
+    // Adds or updates a heavy-hitter candidate, evicting the least frequent one if full.
+    private synchronized void offer(String key, long estimate) {
+        if (heavyHitters.containsKey(key) || heavyHitters.size() < capacity) {
+            heavyHitters.put(key, estimate);
+        } else {
+            String weakest = null;
+            long weakestCount = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : heavyHitters.entrySet()) {
+                if (entry.getValue() < weakestCount) {
+                    weakest = entry.getKey();
+                    weakestCount = entry.getValue();
+                }
+            }
+            if (estimate <= weakestCount) {
+                return;
+            }
+            heavyHitters.remove(weakest);
+            heavyHitters.put(key, estimate);
+        }
+        updateThreshold();
+    }
+
+    /**
+     * Halves all counts now. Called by the decay task; recording may continue meanwhile.
+     */
+    public void decay() {
+        sketch.decay();
+        synchronized (this) {
+            heavyHitters.replaceAll((key, count) -> count >> 1);
+            updateThreshold();
+        }
+    }
+
+    /**
+     * Stops the decay, and the tracker's own scheduler if it has one. Counting continues to work.
+     */
+    @Override
+    public void close() {
+        if (decayTask != null) {
+            decayTask.cancel(false);
+        }
+        if (ownScheduler != null) {
+            ownScheduler.shutdown();
+        }
+    }
+
+    // Creates the daemon scheduler of a tracker decaying on its own.
+    private static ScheduledExecutorService newDecayScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "popularity-decay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Recomputes the count a key must exceed to become a candidate; called holding the lock.
+    private void updateThreshold() {
+        long min = Long.MAX_VALUE;
+        if (heavyHitters.size() < capacity) {
+            min = 0;
+        } else {
+            for (long count : heavyHitters.values()) {
+                min = Math.min(min, count);
+            }
+        }
+        threshold = min;
+    }
+}
@@ -0,0 +1,89 @@
+package ac.il.bgu.qa.reactive;
+
+/**
+ * The Reactive Streams interfaces, declared with the same shape as {@code java.util.concurrent.Flow}
+ * (Java 9), which this Java 8 build cannot use. Implementations follow the Reactive Streams rules:
+ * signals to a subscriber are serialized, and a publisher never emits more items than were requested.
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * A producer of items, delivered to subscribers as they request them.
+     *
+     * @param <T> The type of the items.
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * Adds a subscriber, which first receives {@link Subscriber#onSubscribe}.
+         *
+         * @param subscriber The subscriber.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called once, before any other signal, with the subscription used to request items.
+         *
+         * @param subscription The subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Receives the next item; called at most as many times as items were requested.
+         *
+         * @param item The item.
+         */
+        void onNext(T item);
+
+        /**
+         * Called when the publisher failed; no further signals follow.
+         *
+         * @param throwable The failure.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the publisher has no further items; no further signals follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and one subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Requests up to n more items.
+         *
+         * @param n The number of items, greater than zero.
+         */
+        void request(long n);
+
+        /**
+         * Asks the publisher to stop sending items.
+         */
+        void cancel();
+    }
+
+    /**
+     * A stage that is both a subscriber and a publisher.
+     *
+     * @param <T> The type of the items received.
+     * @param <R> The type of the items published.
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
@@ -0,0 +1,106 @@
+package ac.il.bgu.qa.reactive;
+
+/**
+ * A request to perform one library operation, as sent to a {@link ReactiveLibrary}.
+ */
+public final class LibraryCommand {
+
+    /**
+     * The library operations that can be requested.
+     */
+    public enum Type {
+        BORROW,
+        RETURN,
+        GET_BOOK,
+        NOTIFY
+    }
+
+    // The operation.
+    private final Type type;
+    // The book the operation is about.
+    private final String ISBN;
+    // The user the operation is for, or null for returns.
+    private final String userId;
+
+    // Constructs a new LibraryCommand.
+    private LibraryCommand(Type type, String ISBN, String userId) {
+        this.type = type;
+        this.ISBN = ISBN;
+        this.userId = userId;
+    }
+
+    /**
+     * Creates a command borrowing a book.
+     *
+     * @param ISBN   The ISBN of the book.
+     * @param userId The Id of the borrowing user.
+     * @return The command.
+     */
+    public static LibraryCommand borrow(String ISBN, String userId) {
+        return new LibraryCommand(Type.BORROW, ISBN, userId);
+    }
+
+    /**
+     * Creates a command returning a book.
+     *
+     * @param ISBN The ISBN of the book.
+     * @return The command.
+     */
+    public static LibraryCommand returnBook(String ISBN) {
+        return new LibraryCommand(Type.RETURN, ISBN, null);
+    }
+
+    /**
+     * Creates a command looking up an available book for a user.
+     *
+     * @param ISBN   The ISBN of the book.
+     * @param userId The Id of the user.
+     * @return The command.
+     */
+    public static LibraryCommand getBook(String ISBN, String userId) {
+        return new LibraryCommand(Type.GET_BOOK, ISBN, userId);
+    }
+
+    /**
+     * Creates a command notifying a user of a book's reviews.
+     *
+     * @param ISBN   The ISBN of the book.
+     * @param userId The Id of the user.
+     * @return The command.
+     */
+    public static LibraryCommand notifyUser(String ISBN, String userId) {
+        return new LibraryCommand(Type.NOTIFY, ISBN, userId);
+    }
+
+    /**
+     * Retrieves the requested operation.
+     *
+     * @return The command's type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the ISBN of the book the operation is about.
+     *
+     * @return The ISBN.
+     */
+    public String getISBN() {
+        return ISBN;
+    }
+
+    /**
+     * Retrieves the Id of the user the operation is for.
+     *
+     * @return The user Id, or null for returns.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[ISBN=" + ISBN + ", userId=" + userId + "]";
+    }
+}
@@ -0,0 +1,65 @@
+package ac.il.bgu.qa.reactive;
+
+import ac.il.bgu.qa.Book;
+
+/**
+ * The outcome of a {@link LibraryCommand}: the book found by a lookup, or the exception the operation threw.
+ */
+public final class LibraryResult {
+
+    // The command this is the result of.
+    private final LibraryCommand command;
+    // The book returned by a GET_BOOK command, otherwise null.
+    private final Book book;
+    // The exception thrown by the operation, or null if it succeeded.
+    private final Throwable error;
+
+    /**
+     * Constructs a new LibraryResult.
+     *
+     * @param command The command this is the result of.
+     * @param book    The book returned by a lookup, or null.
+     * @param error   The exception thrown by the operation, or null if it succeeded.
+     */
+    public LibraryResult(LibraryCommand command, Book book, Throwable error) {
+        this.command = command;
+        this.book = book;
+        this.error = error;
+    }
+
+    /**
+     * Retrieves the command this is the result of.
+     *
+     * @return The command.
+     */
+    public LibraryCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * Retrieves the book returned by a GET_BOOK command.
+     *
+     * @return The book, or null for other commands and failures.
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Retrieves the exception the operation threw.
+     *
+     * @return The exception, or null if the operation succeeded.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Checks whether the operation succeeded.
+     *
+     * @return true if the operation completed without an exception, otherwise false.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
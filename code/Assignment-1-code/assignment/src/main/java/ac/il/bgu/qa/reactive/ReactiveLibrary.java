@@ -0,0 +1,236 @@
+package ac.il.bgu.qa.reactive;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A reactive facade over a {@link Library}: subscribes to a stream of commands and publishes one result
+ * per command, to a single subscriber.
+ * <p>
+ * Backpressure is demand-driven: commands are requested from upstream only as far as the subscriber has
+ * requested results, and never more than a fixed number at a time, so a fast producer cannot queue up
+ * unbounded work. Commands run on the given executor and may complete in any order; results are
+ * published as they complete, each carrying its command. A failed operation is a result, not an error
+ * signal; the stream fails only if upstream fails, in which case results still pending are dropped.
+ */
+public class ReactiveLibrary implements Flow.Processor<LibraryCommand, LibraryResult> {
+
+    // The library executing the commands.
+    private final Library library;
+    // Runs the commands.
+    private final Executor executor;
+    // The largest number of commands requested but not yet published as results.
+    private final int maxInFlight;
+
+    // The upstream subscription and the downstream subscriber, once known.
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super LibraryResult> downstream;
+    // Set once the downstream subscriber's onSubscribe has returned.
+    private volatile boolean downstreamReady;
+
+    // Results not yet published.
+    private final Queue<LibraryResult> results = new ConcurrentLinkedQueue<>();
+    // Results requested by the subscriber and not yet published.
+    private final AtomicLong demand = new AtomicLong();
+    // Commands received from upstream.
+    private final AtomicLong received = new AtomicLong();
+    // Serializes the drain loop; counts the calls it still has to handle.
+    private final AtomicInteger wip = new AtomicInteger();
+
+    // Terminal state signalled by upstream, or a protocol error, and cancellation by the subscriber.
+    private volatile boolean upstreamDone;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    // Owned by the drain loop.
+    private long requested;
+    private long emitted;
+    private boolean terminated;
+
+    /**
+     * Constructs a new ReactiveLibrary.
+     *
+     * @param library     The library executing the commands.
+     * @param executor    Runs the commands; a bounded pool sized for the blocking services behind the library.
+     * @param maxInFlight The largest number of commands requested but not yet published as results.
+     */
+    public ReactiveLibrary(Library library, Executor executor, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid in-flight limit.");
+        }
+        this.library = library;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super LibraryResult> subscriber) {
+        synchronized (this) {
+            if (downstream == null) {
+                downstream = subscriber;
+                subscriber.onSubscribe(new ResultSubscription());
+                downstreamReady = true;
+                drain();
+                return;
+            }
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(new IllegalStateException("ReactiveLibrary supports a single subscriber."));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(LibraryCommand command) {
+        received.incrementAndGet();
+        try {
+            executor.execute(() -> complete(command));
+        } catch (RejectedExecutionException e) {
+            results.offer(new LibraryResult(command, null, e));
+            drain();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * The subscription handed to the downstream subscriber.
+     */
+    private final class ResultSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " results; must be positive.");
+                upstreamDone = true;
+                Flow.Subscription subscription = upstream;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            drain();
+        }
+    }
+
+    // Executes a command on the executor and queues its result.
+    private void complete(LibraryCommand command) {
+        LibraryResult result;
+        try {
+            Book book = null;
+            switch (command.getType()) {
+                case BORROW:
+                    library.borrowBook(command.getISBN(), command.getUserId());
+                    break;
+                case RETURN:
+                    library.returnBook(command.getISBN());
+                    break;
+                case GET_BOOK:
+                    book = library.getBookByISBN(command.getISBN(), command.getUserId());
+                    break;
+                case NOTIFY:
+                    library.notifyUserWithBookReviews(command.getISBN(), command.getUserId());
+                    break;
+            }
+            result = new LibraryResult(command, book, null);
+        } catch (RuntimeException e) {
+            result = new LibraryResult(command, null, e);
+        }
+        results.offer(result);
+        drain();
+    }
+
+    // Publishes queued results as far as demand allows, signals termination, and requests more commands.
+    // Only one thread runs the loop at a time; calls made meanwhile make it loop again.
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super LibraryResult> subscriber = downstream;
+            if (cancelled) {
+                results.clear();
+            } else if (subscriber != null && downstreamReady && !terminated) {
+                if (error != null) {
+                    terminated = true;
+                    results.clear();
+                    subscriber.onError(error);
+                } else {
+                    long wanted = demand.get();
+                    long published = 0;
+                    LibraryResult result;
+                    while (published != wanted && (result = results.poll()) != null) {
+                        subscriber.onNext(result);
+                        published++;
+                    }
+                    emitted += published;
+                    if (published != 0 && wanted != Long.MAX_VALUE) {
+                        demand.addAndGet(-published);
+                    }
+
+                    if (upstreamDone) {
+                        if (emitted == received.get()) {
+                            terminated = true;
+                            subscriber.onComplete();
+                        }
+                    } else {
+                        Flow.Subscription subscription = upstream;
+                        long allowed = Math.min(maxInFlight, demand.get());
+                        long outstanding = requested - emitted;
+                        if (subscription != null && allowed > outstanding) {
+                            requested += allowed - outstanding;
+                            subscription.request(allowed - outstanding);
+                        }
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,267 @@
+package ac.il.bgu.qa.replication;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A database service made of a primary and a set of read replicas kept up to date by an external,
+ * asynchronous replication process.
+ * <p>
+ * Used directly, this service sends every call to the primary, so the checks a library makes before writing
+ * are never stale. Pure lookups go through {@link #replicaReads()}, which spreads them over the replicas in
+ * turn. A key written through either view is read from the primary for a configurable window afterwards,
+ * so a session that has just borrowed, returned or added something reads its own write even while the
+ * replicas lag. A replica that fails a lookup is skipped and the lookup is answered by the primary.
+ * <p>
+ * Typical use: {@code new Library(replicated, reviewService)} followed by
+ * {@code library.setLookupService(replicated.replicaReads())}.
+ */
+public class ReplicatedDatabaseService implements DatabaseService {
+
+    // Number of writes between sweeps of expired read-your-writes entries.
+    private static final int SWEEP_INTERVAL = 1024;
+
+    // The service receiving all writes.
+    private final DatabaseService primary;
+    // The services answering pure lookups.
+    private final List<DatabaseService> replicas;
+    // How long, in nanoseconds, a written key is read from the primary.
+    private final long readYourWritesNanos;
+    // Source of monotonic time, in nanoseconds.
+    private final LongSupplier clock;
+
+    // Until when each recently written ISBN and user Id must be read from the primary, by key.
+    private final ConcurrentHashMap<String, Long> recentBooks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> recentUsers = new ConcurrentHashMap<>();
+
+    // Picks the next replica.
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // Counts writes, to trigger sweeps.
+    private final AtomicInteger writes = new AtomicInteger();
+
+    // The lookup view handed to the library.
+    private final DatabaseService replicaReads = new ReplicaReads();
+
+    // Statistics.
+    private final LongAdder replicaLookups = new LongAdder();
+    private final LongAdder primaryLookups = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+
+    /**
+     * Constructs a new ReplicatedDatabaseService.
+     *
+     * @param primary              The service receiving all writes.
+     * @param replicas             The services answering pure lookups; may be empty.
+     * @param readYourWritesMillis How long a written key is read from the primary, in milliseconds;
+     *                             should exceed the replication lag.
+     */
+    public ReplicatedDatabaseService(DatabaseService primary, List<? extends DatabaseService> replicas, long readYourWritesMillis) {
+        this(primary, replicas, readYourWritesMillis, System::nanoTime);
+    }
+
+    // Constructs a new ReplicatedDatabaseService reading time from the given clock.
+    ReplicatedDatabaseService(DatabaseService primary, List<? extends DatabaseService> replicas, long readYourWritesMillis, LongSupplier clock) {
+        if (readYourWritesMillis < 0) {
+            throw new IllegalArgumentException("Invalid read-your-writes window.");
+        }
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        this.clock = clock;
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        primary.addBook(ISBN, book);
+        markWritten(recentBooks, ISBN);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        primary.registerUser(id, user);
+        markWritten(recentUsers, id);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return primary.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return primary.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        primary.borrowBook(ISBN, userId);
+        markWritten(recentBooks, ISBN);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        primary.returnBook(ISBN);
+        markWritten(recentBooks, ISBN);
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        primary.returnBook(ISBN, userId);
+        markWritten(recentBooks, ISBN);
+    }
+
+    /**
+     * Checks on the primary whether a user holds a copy of a book, since the answer decides a write.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The unique identifier for the user.
+     * @return true if the user holds a copy of the book, otherwise false.
+     */
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return primary.holdsCopy(ISBN, userId);
+    }
+
+    /**
+     * Retrieves the view that answers lookups from the replicas. Writes made through the view go to the
+     * primary, exactly as writes made through this service.
+     *
+     * @return The replica lookup view.
+     */
+    public DatabaseService replicaReads() {
+        return replicaReads;
+    }
+
+    /**
+     * Retrieves the number of lookups answered by a replica.
+     *
+     * @return The number of replica lookups.
+     */
+    public long getReplicaLookupCount() {
+        return replicaLookups.sum();
+    }
+
+    /**
+     * Retrieves the number of lookups through the replica view answered by the primary, because the key was
+     * recently written, no replica is configured, or the replica failed.
+     *
+     * @return The number of primary lookups.
+     */
+    public long getPrimaryLookupCount() {
+        return primaryLookups.sum();
+    }
+
+    /**
+     * Retrieves the number of replica lookups that failed and were answered by the primary.
+     *
+     * @return The number of failovers.
+     */
+    public long getFailoverCount() {
+        return failovers.sum();
+    }
+
+    /**
+     * The lookup view: reads from the replicas, writes to the primary.
+     */
+    private final class ReplicaReads implements DatabaseService {
+
+        @Override
+        public void addBook(String ISBN, Book book) {
+            ReplicatedDatabaseService.this.addBook(ISBN, book);
+        }
+
+        @Override
+        public void registerUser(String id, User user) {
+            ReplicatedDatabaseService.this.registerUser(id, user);
+        }
+
+        @Override
+        public Book getBookByISBN(String ISBN) {
+            DatabaseService replica = replicaFor(recentBooks, ISBN);
+            if (replica != null) {
+                try {
+                    Book book = replica.getBookByISBN(ISBN);
+                    replicaLookups.increment();
+                    return book;
+                } catch (RuntimeException e) {
+                    failovers.increment();
+                }
+            }
+            primaryLookups.increment();
+            return primary.getBookByISBN(ISBN);
+        }
+
+        @Override
+        public User getUserById(String userId) {
+            DatabaseService replica = replicaFor(recentUsers, userId);
+            if (replica != null) {
+                try {
+                    User user = replica.getUserById(userId);
+                    replicaLookups.increment();
+                    return user;
+                } catch (RuntimeException e) {
+                    failovers.increment();
+                }
+            }
+            primaryLookups.increment();
+            return primary.getUserById(userId);
+        }
+
+        @Override
+        public void borrowBook(String ISBN, String userId) {
+            ReplicatedDatabaseService.this.borrowBook(ISBN, userId);
+        }
+
+        @Override
+        public void returnBook(String ISBN) {
+            ReplicatedDatabaseService.this.returnBook(ISBN);
+        }
+
+        @Override
+        public void returnBook(String ISBN, String userId) {
+            ReplicatedDatabaseService.this.returnBook(ISBN, userId);
+        }
+
+        @Override
+        public boolean holdsCopy(String ISBN, String userId) {
+            return ReplicatedDatabaseService.this.holdsCopy(ISBN, userId);
+        }
+    }
+
+    // Picks the replica for a lookup, or returns null if the key must be read from the primary.
+    private DatabaseService replicaFor(ConcurrentHashMap<String, Long> recent, String key) {
+        if (replicas.isEmpty() || key == null) {
+            return null;
+        }
+        Long deadline = recent.get(key);
+        if (deadline != null) {
+            if (clock.getAsLong() - deadline < 0) {
+                return null;
+            }
+            recent.remove(key, deadline);
+        }
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    // Records that a key was written, and now and then drops entries whose window has passed.
+    private void markWritten(ConcurrentHashMap<String, Long> recent, String key) {
+        if (key == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        recent.put(key, now + readYourWritesNanos);
+        if (writes.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            recentBooks.values().removeIf(deadline -> now - deadline >= 0);
+            recentUsers.values().removeIf(deadline -> now - deadline >= 0);
+        }
+    }
+}
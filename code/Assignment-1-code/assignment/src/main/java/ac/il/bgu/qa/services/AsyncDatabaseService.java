@@ -0,0 +1,65 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provides a non-blocking interface for services managing the database of books and users.
+ * The counterpart of {@link DatabaseService}: every method starts the operation and returns at once,
+ * and the future completes with the result, or exceptionally with the exception the operation threw.
+ */
+public interface AsyncDatabaseService {
+
+    /**
+     * Adds a book to the database.
+     *
+     * @param ISBN The International Standard Book Number identifying the book.
+     * @param book The book to be added.
+     * @return A future completing when the book was added.
+     */
+    CompletableFuture<Void> addBook(String ISBN, Book book);
+
+    /**
+     * Registers a user with the database.
+     *
+     * @param id   The unique identifier for the user.
+     * @param user The user to be registered.
+     * @return A future completing when the user was registered.
+     */
+    CompletableFuture<Void> registerUser(String id, User user);
+
+    /**
+     * Fetches a book from the database using its ISBN.
+     *
+     * @param ISBN The International Standard Book Number.
+     * @return A future completing with the book, or with null if the book does not exist in the database.
+     */
+    CompletableFuture<Book> getBookByISBN(String ISBN);
+
+    /**
+     * Fetches a user from the database using their ID.
+     *
+     * @param userId The unique identifier for the user.
+     * @return A future completing with the user, or with null if the user is not registered in the database.
+     */
+    CompletableFuture<User> getUserById(String userId);
+
+    /**
+     * Borrows a book identified by its ISBN for a user identified by their userId.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be borrowed.
+     * @param userId The unique identifier for the user borrowing the book.
+     * @return A future completing when the borrowing was recorded.
+     */
+    CompletableFuture<Void> borrowBook(String ISBN, String userId);
+
+    /**
+     * Marks a book identified by its ISBN as returned in the database.
+     *
+     * @param ISBN The International Standard Book Number of the book to be returned.
+     * @return A future completing when the return was recorded.
+     */
+    CompletableFuture<Void> returnBook(String ISBN);
+}
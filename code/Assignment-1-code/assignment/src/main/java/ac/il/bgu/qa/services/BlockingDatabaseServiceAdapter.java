@@ -0,0 +1,132 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Makes a blocking database service usable as an {@link AsyncDatabaseService} by running every call
+ * on a bounded executor. When the executor is saturated, the returned future fails at once with a
+ * {@link RejectedExecutionException} instead of queueing without limit.
+ */
+public class BlockingDatabaseServiceAdapter implements AsyncDatabaseService, Closeable {
+
+    // The blocking service being adapted.
+    private final DatabaseService delegate;
+    // Runs the blocking calls.
+    private final Executor executor;
+    // The executor created by this adapter, shut down on close, or null if the executor was given.
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * Constructs a new BlockingDatabaseServiceAdapter running calls on a pool of its own.
+     *
+     * @param delegate      The blocking service being adapted.
+     * @param threads       The number of calls run at once.
+     * @param queueCapacity The number of calls waiting for a thread before further calls are rejected.
+     */
+    public BlockingDatabaseServiceAdapter(DatabaseService delegate, int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "database-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        this.delegate = delegate;
+        this.executor = pool;
+        this.ownedExecutor = pool;
+    }
+
+    /**
+     * Constructs a new BlockingDatabaseServiceAdapter running calls on a shared executor.
+     *
+     * @param delegate The blocking service being adapted.
+     * @param executor Runs the blocking calls; should be bounded.
+     */
+    public BlockingDatabaseServiceAdapter(DatabaseService delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    @Override
+    public CompletableFuture<Void> addBook(String ISBN, Book book) {
+        return run(() -> {
+            delegate.addBook(ISBN, book);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> registerUser(String id, User user) {
+        return run(() -> {
+            delegate.registerUser(id, user);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Book> getBookByISBN(String ISBN) {
+        return run(() -> delegate.getBookByISBN(ISBN));
+    }
+
+    @Override
+    public CompletableFuture<User> getUserById(String userId) {
+        return run(() -> delegate.getUserById(userId));
+    }
+
+    @Override
+    public CompletableFuture<Void> borrowBook(String ISBN, String userId) {
+        return run(() -> {
+            delegate.borrowBook(ISBN, userId);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> returnBook(String ISBN) {
+        return run(() -> {
+            delegate.returnBook(ISBN);
+            return null;
+        });
+    }
+
+    /**
+     * Shuts down the executor if this adapter created it. Calls already started still complete.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    // Runs a blocking call on the executor, failing the future if the executor rejects it.
+    private <T> CompletableFuture<T> run(Supplier<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
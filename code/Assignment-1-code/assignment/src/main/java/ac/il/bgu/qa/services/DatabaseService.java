@@ -56,4 +56,30 @@ public interface DatabaseService {
      * @param ISBN The International Standard Book Number of the book to be returned.
      */
     void returnBook(String ISBN);
+
+    /**
+     * Marks the copy of a book held by a user as returned in the database.
+     * Services that track which copy each user holds should override this, and throw a
+     * {@link ac.il.bgu.qa.errors.BookNotBorrowedException} if the user holds no copy; by default the
+     * book is returned as by {@link #returnBook(String)}.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be returned.
+     * @param userId The unique identifier for the user returning the book.
+     */
+    default void returnBook(String ISBN, String userId) {
+        returnBook(ISBN);
+    }
+
+    /**
+     * Checks whether a user holds a borrowed copy of a book.
+     * Services that track which copy each user holds should override this; by default the
+     * holder is not known and every user is taken to hold a copy.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The unique identifier for the user.
+     * @return true if the user holds a copy of the book, otherwise false.
+     */
+    default boolean holdsCopy(String ISBN, String userId) {
+        return true;
+    }
 }
@@ -0,0 +1,253 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.metrics.LatencyHistogram;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A review service decorator that cuts the latency tail by hedging: when the primary service has not
+ * answered within a percentile of the latencies observed so far, the same request is sent to a second
+ * service and whichever answers first wins. The losing request is cancelled and its service closed.
+ * <p>
+ * Hedges are limited to a fraction of all requests, so a slow backend does not receive much more load
+ * than usual. No request is hedged before enough latencies have been observed to pick a delay.
+ */
+public class HedgingReviewService implements ReviewService {
+
+    // Number of observed latencies needed before requests are hedged.
+    static final int MIN_SAMPLES = 20;
+
+    // The service asked first.
+    private final ReviewService primary;
+    // The service asked when the primary is slow.
+    private final ReviewService secondary;
+    // Runs both requests, so the caller can wait for either.
+    private final ExecutorService executor;
+    // The percentile of observed latency after which a request is hedged, between 0 and 100.
+    private final double hedgePercentile;
+    // The largest share of requests that may be hedged.
+    private final double hedgeBudget;
+
+    // Latencies of completed requests, in nanoseconds.
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    // Statistics.
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Constructs a new HedgingReviewService.
+     *
+     * @param primary         The service asked first.
+     * @param secondary       The service asked when the primary is slow; a separate connection or replica.
+     * @param executor        Runs the requests; should allow at least two threads per concurrent caller.
+     * @param hedgePercentile The percentile of observed latency after which a request is hedged, e.g. 95.
+     * @param hedgeBudget     The largest share of requests that may be hedged, e.g. 0.05.
+     */
+    public HedgingReviewService(ReviewService primary, ReviewService secondary, ExecutorService executor,
+                                double hedgePercentile, double hedgeBudget) {
+        if (primary == null || secondary == null || executor == null || hedgePercentile <= 0 || hedgePercentile > 100
+                || hedgeBudget < 0 || hedgeBudget > 1) {
+            throw new IllegalArgumentException("Invalid hedging configuration.");
+        }
+        this.primary = primary;
+        this.secondary = secondary;
+        this.executor = executor;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeBudget = hedgeBudget;
+    }
+
+    @Override
+    public List<String> getReviewsForBook(String ISBN) {
+        requests.incrementAndGet();
+        Attempt first = new Attempt(primary, ISBN);
+        Attempt second = null;
+        try {
+            // Give the primary until the hedge delay to answer on its own.
+            long delay = getHedgeDelayNanos();
+            if (delay < 0) {
+                return await(first.result);
+            }
+            try {
+                return first.result.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Too slow, hedge if the budget allows.
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ReviewException("Interrupted while fetching reviews.");
+            }
+            if (!tryTakeHedge()) {
+                return await(first.result);
+            }
+            Attempt hedge = new Attempt(secondary, ISBN);
+            second = hedge;
+
+            // Take the first answer; fail only if both requests fail.
+            CompletableFuture<List<String>> winner = new CompletableFuture<>();
+            AtomicInteger failures = new AtomicInteger();
+            for (Attempt attempt : new Attempt[] { first, hedge }) {
+                attempt.result.whenComplete((reviews, error) -> {
+                    if (error == null) {
+                        if (winner.complete(reviews) && attempt == hedge) {
+                            hedgeWins.incrementAndGet();
+                        }
+                    } else if (failures.incrementAndGet() == 2) {
+                        winner.completeExceptionally(error);
+                    }
+                });
+            }
+            return await(winner);
+        } finally {
+            // Whatever is still running lost.
+            first.abandon();
+            if (second != null) {
+                second.abandon();
+            }
+        }
+    }
+
+    /**
+     * Closes both services.
+     */
+    @Override
+    public void close() {
+        try {
+            primary.close();
+        } finally {
+            secondary.close();
+        }
+    }
+
+    /**
+     * Retrieves how long a request currently waits for the primary before it is hedged.
+     *
+     * @return The delay in nanoseconds, or -1 while too few latencies were observed to hedge.
+     */
+    public long getHedgeDelayNanos() {
+        return latencies.getCount() < MIN_SAMPLES ? -1 : latencies.getValueAtPercentile(hedgePercentile);
+    }
+
+    /**
+     * Retrieves the latencies of completed requests.
+     *
+     * @return The latency histogram, in nanoseconds.
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Retrieves the number of requests made.
+     *
+     * @return The request count.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Retrieves the number of requests sent to the secondary service.
+     *
+     * @return The hedge count.
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Retrieves the number of hedged requests answered by the secondary service first.
+     *
+     * @return The count of hedges that won.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    // Reserves a hedge if that keeps hedges within the budget.
+    private boolean tryTakeHedge() {
+        while (true) {
+            long taken = hedges.get();
+            if (taken + 1 > hedgeBudget * requests.get()) {
+                return false;
+            }
+            if (hedges.compareAndSet(taken, taken + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Waits for a request, rethrowing its failure.
+    private static List<String> await(CompletableFuture<List<String>> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReviewException("Interrupted while fetching reviews.");
+        }
+    }
+
+    // Turns the failure of a request into the exception thrown to the caller.
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new ReviewException("Review request failed: " + cause);
+    }
+
+    /**
+     * A request running on the executor against one service.
+     */
+    private final class Attempt {
+        final ReviewService service;
+        final CompletableFuture<List<String>> result = new CompletableFuture<>();
+        final Future<?> task;
+
+        Attempt(ReviewService service, String ISBN) {
+            this.service = service;
+            Future<?> submitted;
+            try {
+                submitted = executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        List<String> reviews = service.getReviewsForBook(ISBN);
+                        latencies.record(System.nanoTime() - start);
+                        result.complete(reviews);
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(new ReviewException("Review request rejected."));
+                submitted = null;
+            }
+            this.task = submitted;
+        }
+
+        // Cancels the request and closes its service if it is still running.
+        void abandon() {
+            if (result.isDone()) {
+                return;
+            }
+            result.cancel(false);
+            if (task != null) {
+                task.cancel(true);
+            }
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A database service that keeps books, users and borrowing records in memory.
+ * Safe for concurrent use; intended for benchmarks, tests and local stand-ins.
+ */
+public class InMemoryDatabaseService implements DatabaseService {
+
+    // Books by ISBN.
+    private final ConcurrentHashMap<String, Book> books = new ConcurrentHashMap<>();
+    // Users by Id.
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+    // The Id of the user holding each borrowed copy, by copy number starting at 1, by ISBN.
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, String>> holders = new ConcurrentHashMap<>();
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        books.put(ISBN, book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        users.put(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return books.get(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * Records that a user holds a copy of a book, assigning them the lowest-numbered copy not held by anyone.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be borrowed.
+     * @param userId The unique identifier for the user borrowing the book.
+     */
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        ConcurrentHashMap<Integer, String> copies = holders.computeIfAbsent(ISBN, key -> new ConcurrentHashMap<>());
+        int copy = 1;
+        while (copies.putIfAbsent(copy, userId) != null) {
+            copy++;
+        }
+    }
+
+    /**
+     * Marks one borrowed copy of a book as returned, whoever holds it.
+     *
+     * @param ISBN The International Standard Book Number of the book to be returned.
+     */
+    @Override
+    public void returnBook(String ISBN) {
+        ConcurrentHashMap<Integer, String> copies = holders.get(ISBN);
+        if (copies != null) {
+            for (Map.Entry<Integer, String> entry : copies.entrySet()) {
+                if (copies.remove(entry.getKey(), entry.getValue())) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the copy of a book held by a user as returned. Removing the holder is atomic, so of two
+     * concurrent returns of the same copy only one succeeds.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be returned.
+     * @param userId The unique identifier for the user returning the book.
+     * @throws BookNotBorrowedException If the user holds no copy of the book.
+     */
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        ConcurrentHashMap<Integer, String> copies = holders.get(ISBN);
+        if (copies != null) {
+            for (Map.Entry<Integer, String> entry : copies.entrySet()) {
+                if (entry.getValue().equals(userId) && copies.remove(entry.getKey(), userId)) {
+                    return;
+                }
+            }
+        }
+        throw new BookNotBorrowedException("Book wasn't borrowed!", false);
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        ConcurrentHashMap<Integer, String> copies = holders.get(ISBN);
+        return copies != null && copies.containsValue(userId);
+    }
+
+    /**
+     * Removes a book and its borrowing record from the database.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     */
+    public void removeBook(String ISBN) {
+        books.remove(ISBN);
+        holders.remove(ISBN);
+    }
+
+    /**
+     * Retrieves a user currently holding a book, the holder of the lowest-numbered borrowed copy.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The Id of the borrowing user, or null if the book is not borrowed.
+     */
+    public String getBorrowerId(String ISBN) {
+        Map<Integer, String> copies = getHolders(ISBN);
+        return copies.isEmpty() ? null : copies.values().iterator().next();
+    }
+
+    /**
+     * Retrieves which user holds each borrowed copy of a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return A snapshot of the holders' Ids by copy number, in copy order; empty if no copy is borrowed.
+     */
+    public Map<Integer, String> getHolders(String ISBN) {
+        ConcurrentHashMap<Integer, String> copies = holders.get(ISBN);
+        return copies == null ? Collections.emptyMap() : Collections.unmodifiableMap(new TreeMap<>(copies));
+    }
+
+    /**
+     * Retrieves the number of books in the database.
+     *
+     * @return The number of books.
+     */
+    public int getBookCount() {
+        return books.size();
+    }
+
+    /**
+     * Retrieves the number of registered users.
+     *
+     * @return The number of users.
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+
+    /**
+     * Removes all books, users and borrowing records.
+     */
+    public void clear() {
+        books.clear();
+        users.clear();
+        holders.clear();
+    }
+}
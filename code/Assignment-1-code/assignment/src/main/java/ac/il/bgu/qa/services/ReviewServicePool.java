@@ -0,0 +1,212 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewServiceUnavailableException;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of review service connections, so callers can reuse connections instead of
+ * opening and closing one per request.
+ * Idle connections are reused most-recently-released first, checked for health before being
+ * leased, and closed once they stay idle longer than the configured limit.
+ */
+public class ReviewServicePool {
+
+    /**
+     * An idle connection and the time it was released.
+     */
+    private static final class IdleEntry {
+        final ReviewService service;
+        final long releasedAt;
+
+        IdleEntry(ReviewService service, long releasedAt) {
+            this.service = service;
+            this.releasedAt = releasedAt;
+        }
+    }
+
+    // Opens new connections.
+    private final Supplier<ReviewService> factory;
+    // Decides whether an idle connection can still be used.
+    private final Predicate<ReviewService> healthCheck;
+    // How long a connection may stay idle before it is closed, in nanoseconds.
+    private final long maxIdleNanos;
+    // How long a lease waits for a free connection, in nanoseconds.
+    private final long leaseTimeoutNanos;
+
+    // One permit per connection that may be leased, idle or not yet opened.
+    private final Semaphore permits;
+    // Idle connections, most recently released first.
+    private final ConcurrentLinkedDeque<IdleEntry> idle = new ConcurrentLinkedDeque<>();
+
+    // Statistics.
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+
+    // Set once the pool is closed.
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs a new ReviewServicePool.
+     *
+     * @param factory            Opens a new review service connection.
+     * @param maxSize            The largest number of connections open at the same time.
+     * @param healthCheck        Returns true if an idle connection can still be used.
+     * @param maxIdleMillis      How long a connection may stay idle before it is closed.
+     * @param leaseTimeoutMillis How long a lease waits for a free connection.
+     */
+    public ReviewServicePool(Supplier<ReviewService> factory, int maxSize, Predicate<ReviewService> healthCheck,
+                             long maxIdleMillis, long leaseTimeoutMillis) {
+        if (factory == null || healthCheck == null || maxSize <= 0 || maxIdleMillis < 0 || leaseTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid pool configuration.");
+        }
+        this.factory = factory;
+        this.healthCheck = healthCheck;
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+        this.leaseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMillis);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Leases a connection, reusing a healthy idle one if possible and opening a new one otherwise.
+     * The connection must be handed back with {@link #release} or {@link #invalidate}.
+     *
+     * @return A review service connection.
+     * @throws ReviewServiceUnavailableException If no connection is free within the lease timeout,
+     *                                           the pool is closed, or a new connection cannot be opened.
+     */
+    public ReviewService lease() {
+        if (shutdown) {
+            throw new ReviewServiceUnavailableException("Review service pool is closed!");
+        }
+        try {
+            if (!permits.tryAcquire(leaseTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ReviewServiceUnavailableException("Review service unavailable!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReviewServiceUnavailableException("Review service unavailable!");
+        }
+
+        try {
+            // Reuse the most recently released connection that is still fresh and healthy.
+            long now = System.nanoTime();
+            IdleEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (now - entry.releasedAt <= maxIdleNanos && healthCheck.test(entry.service)) {
+                    return entry.service;
+                }
+                closeQuietly(entry.service);
+            }
+
+            ReviewService service = factory.get();
+            if (service == null) {
+                throw new ReviewServiceUnavailableException("Review service unavailable!");
+            }
+            created.incrementAndGet();
+            return service;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a leased connection to the pool so it can be reused.
+     *
+     * @param service The connection obtained from {@link #lease()}.
+     */
+    public void release(ReviewService service) {
+        if (shutdown) {
+            closeQuietly(service);
+        } else {
+            idle.offerFirst(new IdleEntry(service, System.nanoTime()));
+            evictIdle();
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes a leased connection that failed instead of returning it to the pool.
+     *
+     * @param service The connection obtained from {@link #lease()}.
+     */
+    public void invalidate(ReviewService service) {
+        closeQuietly(service);
+        permits.release();
+    }
+
+    /**
+     * Closes idle connections that stayed idle longer than the configured limit.
+     * Runs on every release; can also be called periodically.
+     *
+     * @return The number of connections closed.
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        IdleEntry oldest;
+        // The deque is ordered by release time, so stale entries are at its tail.
+        while ((oldest = idle.peekLast()) != null && now - oldest.releasedAt > maxIdleNanos) {
+            if (idle.removeLastOccurrence(oldest)) {
+                closeQuietly(oldest.service);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Closes all idle connections and rejects further leases.
+     * Connections that are still leased are closed when they are released.
+     */
+    public void close() {
+        shutdown = true;
+        IdleEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            closeQuietly(entry.service);
+        }
+    }
+
+    /**
+     * Retrieves the number of idle connections.
+     *
+     * @return The number of connections waiting to be reused.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Retrieves the number of connections opened by the pool so far.
+     *
+     * @return The number of created connections.
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * Retrieves the number of connections closed by the pool so far.
+     *
+     * @return The number of closed connections.
+     */
+    public long getClosedCount() {
+        return closed.get();
+    }
+
+    // Closes a connection, ignoring failures since it is discarded anyway.
+    private void closeQuietly(ReviewService service) {
+        closed.incrementAndGet();
+        try {
+            service.close();
+        } catch (RuntimeException e) {
+            System.err.println("Closing review service failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ac.il.bgu.qa.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to named nodes by consistent hashing.
+ * Every node is placed on the ring at several pseudo-random points (virtual nodes), and a key belongs to the
+ * first node found clockwise from its own hash, so adding or removing a node only moves the keys
+ * between it and its neighbours. Instances are immutable; changes return a new ring.
+ */
+public final class ConsistentHashRing<T> {
+
+    // Ring positions and the node owning each.
+    private final NavigableMap<Long, String> ring;
+    // The nodes by name.
+    private final Map<String, T> nodes;
+    // Number of ring positions per node.
+    private final int virtualNodes;
+
+    /**
+     * Constructs a new ConsistentHashRing.
+     *
+     * @param nodes        The nodes by name; names must be unique and stable across processes.
+     * @param virtualNodes The number of ring positions per node; more positions spread keys more evenly.
+     */
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Invalid ring configuration.");
+        }
+        this.virtualNodes = virtualNodes;
+        this.nodes = Collections.unmodifiableMap(new TreeMap<>(nodes));
+        TreeMap<Long, String> positions = new TreeMap<>();
+        for (String name : this.nodes.keySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                positions.put(hash(name + "#" + i), name);
+            }
+        }
+        this.ring = positions;
+    }
+
+    /**
+     * Finds the name of the node owning a key.
+     *
+     * @param key The key.
+     * @return The owner's name.
+     */
+    public String ownerOf(String key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * Finds the node owning a key.
+     *
+     * @param key The key.
+     * @return The owning node.
+     */
+    public T nodeFor(String key) {
+        return nodes.get(ownerOf(key));
+    }
+
+    /**
+     * Retrieves all nodes.
+     *
+     * @return The nodes by name.
+     */
+    public Map<String, T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Creates a ring with one node added or replaced.
+     *
+     * @param name The name of the node.
+     * @param node The node.
+     * @return The new ring.
+     */
+    public ConsistentHashRing<T> with(String name, T node) {
+        Map<String, T> changed = new TreeMap<>(nodes);
+        changed.put(name, node);
+        return new ConsistentHashRing<>(changed, virtualNodes);
+    }
+
+    /**
+     * Creates a ring with one node removed.
+     *
+     * @param name The name of the node.
+     * @return The new ring.
+     */
+    public ConsistentHashRing<T> without(String name) {
+        Map<String, T> changed = new TreeMap<>(nodes);
+        changed.remove(name);
+        return new ConsistentHashRing<>(changed, virtualNodes);
+    }
+
+    /**
+     * Hashes a key to a ring position with 64-bit FNV-1a followed by a final avalanche mix,
+     * so the result is the same in every process.
+     *
+     * @param key The key.
+     * @return The ring position.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,346 @@
+package ac.il.bgu.qa.sharding;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+/**
+ * A database service that partitions books and users across independent database services (shards).
+ * <p>
+ * Books are routed by consistent hashing of their ISBN and users by their Id, so every key lives on exactly
+ * one shard and adding or removing a shard moves only the keys it gains or loses. Multi-key lookups are
+ * split by shard and run on all shards at once (scatter-gather) when an executor is given.
+ * <p>
+ * Shards can be added and removed while the service is in use. The service remembers every key written
+ * through it, together with the holder of every borrowed copy, so it can copy the moved records to their
+ * new shard; operations wait while a rebalance is copying. Copies left behind on the old shard are never
+ * read again, since {@link DatabaseService} has no way of deleting them.
+ */
+public class ShardedDatabaseService implements DatabaseService {
+
+    // The shards and the ring routing keys to them, replaced on every rebalance.
+    private volatile ConsistentHashRing<DatabaseService> ring;
+    // Runs scatter-gather lookups on all shards at once, or null to query shards one after another.
+    private final ExecutorService executor;
+
+    // Held shared by operations and exclusively while a rebalance copies records.
+    private final ReentrantReadWriteLock rebalanceLock = new ReentrantReadWriteLock();
+
+    // Every ISBN and user Id written through this service.
+    private final Set<String> isbns = ConcurrentHashMap.newKeySet();
+    private final Set<String> userIds = ConcurrentHashMap.newKeySet();
+    // The Ids of the users holding the borrowed copies of each book, by ISBN; a user appears once per copy held.
+    // Lists are never changed in place, only replaced.
+    private final ConcurrentHashMap<String, List<String>> holders = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new ShardedDatabaseService.
+     *
+     * @param shards       The initial shards by name; names must be unique and stable across processes.
+     * @param virtualNodes The number of ring positions per shard.
+     * @param executor     Runs scatter-gather lookups in parallel, or null to query shards sequentially.
+     */
+    public ShardedDatabaseService(Map<String, ? extends DatabaseService> shards, int virtualNodes, ExecutorService executor) {
+        this.ring = new ConsistentHashRing<>(new HashMap<String, DatabaseService>(shards), virtualNodes);
+        this.executor = executor;
+    }
+
+    /**
+     * Constructs a new ShardedDatabaseService that queries shards sequentially.
+     *
+     * @param shards       The initial shards by name.
+     * @param virtualNodes The number of ring positions per shard.
+     */
+    public ShardedDatabaseService(Map<String, ? extends DatabaseService> shards, int virtualNodes) {
+        this(shards, virtualNodes, null);
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        rebalanceLock.readLock().lock();
+        try {
+            ring.nodeFor(ISBN).addBook(ISBN, book);
+            isbns.add(ISBN);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        rebalanceLock.readLock().lock();
+        try {
+            ring.nodeFor(id).registerUser(id, user);
+            userIds.add(id);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        rebalanceLock.readLock().lock();
+        try {
+            return ring.nodeFor(ISBN).getBookByISBN(ISBN);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        rebalanceLock.readLock().lock();
+        try {
+            return ring.nodeFor(userId).getUserById(userId);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        rebalanceLock.readLock().lock();
+        try {
+            ring.nodeFor(ISBN).borrowBook(ISBN, userId);
+            holders.compute(ISBN, (key, held) -> {
+                List<String> updated = held == null ? new ArrayList<>() : new ArrayList<>(held);
+                updated.add(userId);
+                return updated;
+            });
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        rebalanceLock.readLock().lock();
+        try {
+            ring.nodeFor(ISBN).returnBook(ISBN);
+            releaseCopy(ISBN, null);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        rebalanceLock.readLock().lock();
+        try {
+            ring.nodeFor(ISBN).returnBook(ISBN, userId);
+            releaseCopy(ISBN, userId);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        rebalanceLock.readLock().lock();
+        try {
+            return ring.nodeFor(ISBN).holdsCopy(ISBN, userId);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Fetches several books at once, querying every shard involved in a single pass.
+     *
+     * @param ISBNs The ISBNs of the books.
+     * @return The books found, by ISBN; missing books are left out.
+     */
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        return scatterGather(ISBNs, DatabaseService::getBookByISBN);
+    }
+
+    /**
+     * Fetches several users at once, querying every shard involved in a single pass.
+     *
+     * @param userIds The Ids of the users.
+     * @return The users found, by Id; missing users are left out.
+     */
+    public Map<String, User> getUsersById(Collection<String> userIds) {
+        return scatterGather(userIds, DatabaseService::getUserById);
+    }
+
+    /**
+     * Adds a shard and moves the keys it now owns onto it.
+     * If a shard of the same name exists it is replaced, and all of its keys are copied to the new one.
+     *
+     * @param name  The name of the shard.
+     * @param shard The shard.
+     */
+    public void addShard(String name, DatabaseService shard) {
+        rebalanceLock.writeLock().lock();
+        try {
+            rebalance(ring.with(name, shard));
+        } finally {
+            rebalanceLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a shard after moving all of its keys to the remaining shards.
+     *
+     * @param name The name of the shard.
+     * @throws IllegalArgumentException if the shard does not exist or is the last one.
+     */
+    public void removeShard(String name) {
+        rebalanceLock.writeLock().lock();
+        try {
+            if (!ring.getNodes().containsKey(name) || ring.getNodes().size() == 1) {
+                throw new IllegalArgumentException("Cannot remove shard " + name + ".");
+            }
+            rebalance(ring.without(name));
+        } finally {
+            rebalanceLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the shards.
+     *
+     * @return The shards by name.
+     */
+    public Map<String, DatabaseService> getShards() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Finds the name of the shard that owns a key, ISBN or user Id.
+     *
+     * @param key The key.
+     * @return The name of the owning shard.
+     */
+    public String shardOf(String key) {
+        return ring.ownerOf(key);
+    }
+
+    // Copies every record whose owner changes to its new shard, then switches to the new ring.
+    // Must be called with the write lock held.
+    private void rebalance(ConsistentHashRing<DatabaseService> target) {
+        ConsistentHashRing<DatabaseService> current = ring;
+        for (String ISBN : isbns) {
+            DatabaseService from = current.nodeFor(ISBN);
+            DatabaseService to = target.nodeFor(ISBN);
+            if (from == to) {
+                continue;
+            }
+            Book book = from.getBookByISBN(ISBN);
+            if (book != null) {
+                to.addBook(ISBN, book);
+            }
+            // Write the borrow state explicitly, clearing any stale records left by an earlier move.
+            int copies = book != null ? book.getCopies() : 1;
+            for (int i = 0; i < copies; i++) {
+                to.returnBook(ISBN);
+            }
+            List<String> held = holders.get(ISBN);
+            if (held != null) {
+                for (String holder : held) {
+                    to.borrowBook(ISBN, holder);
+                }
+            }
+        }
+        for (String id : userIds) {
+            DatabaseService from = current.nodeFor(id);
+            DatabaseService to = target.nodeFor(id);
+            if (from == to) {
+                continue;
+            }
+            User user = from.getUserById(id);
+            if (user != null) {
+                to.registerUser(id, user);
+            }
+        }
+        ring = target;
+    }
+
+    // Forgets one borrowed copy of a book: the given user's, or any one if the user is null.
+    private void releaseCopy(String ISBN, String userId) {
+        holders.computeIfPresent(ISBN, (key, held) -> {
+            List<String> updated = new ArrayList<>(held);
+            if (userId == null) {
+                updated.remove(0);
+            } else {
+                updated.remove(userId);
+            }
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    // Groups keys by shard and looks them up shard by shard, in parallel when an executor is set.
+    private <V> Map<String, V> scatterGather(Collection<String> keys, BiFunction<DatabaseService, String, V> lookup) {
+        rebalanceLock.readLock().lock();
+        try {
+            ConsistentHashRing<DatabaseService> current = ring;
+            Map<String, List<String>> keysByShard = new HashMap<>();
+            for (String key : keys) {
+                keysByShard.computeIfAbsent(current.ownerOf(key), shard -> new ArrayList<>()).add(key);
+            }
+
+            List<Callable<Map<String, V>>> tasks = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : keysByShard.entrySet()) {
+                DatabaseService shard = current.getNodes().get(entry.getKey());
+                tasks.add(() -> {
+                    Map<String, V> found = new HashMap<>();
+                    for (String key : entry.getValue()) {
+                        V value = lookup.apply(shard, key);
+                        if (value != null) {
+                            found.put(key, value);
+                        }
+                    }
+                    return found;
+                });
+            }
+
+            Map<String, V> result = new HashMap<>();
+            if (executor == null || tasks.size() == 1) {
+                for (Callable<Map<String, V>> task : tasks) {
+                    result.putAll(call(task));
+                }
+            } else {
+                for (Future<Map<String, V>> future : executor.invokeAll(tasks)) {
+                    result.putAll(future.get());
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Shard lookup failed.", e.getCause());
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    // Runs a lookup task on the calling thread.
+    private static <V> V call(Callable<V> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Shard lookup failed.", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ac.il.bgu.qa.storage;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+/**
+ * A database service decorator that stores books with their titles and authors deduplicated
+ * through a {@link StringInternPool}.
+ * <p>
+ * A book whose title or author is not already the pooled instance is stored as a copy that uses the
+ * pooled strings; later changes to the given object are not seen by the store, so use the book returned
+ * by {@link #getBookByISBN(String)} instead. All other calls are passed through unchanged.
+ */
+public class InterningDatabaseService implements DatabaseService {
+
+    // The database service storing the books.
+    private final DatabaseService delegate;
+
+    // The pool titles and authors are deduplicated through.
+    private final StringInternPool pool;
+
+    // Constructor for InterningDatabaseService, wraps the given service
+    public InterningDatabaseService(DatabaseService delegate, StringInternPool pool) {
+        this.delegate = delegate;
+        this.pool = pool;
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        String title = pool.intern(book.getTitle());
+        String author = pool.intern(book.getAuthor());
+        if (title != book.getTitle() || author != book.getAuthor()) {
+            Book interned = new Book(book.getISBN(), title, author, book.getCopies());
+            for (int i = book.getAvailableCopies(); i < book.getCopies(); i++) {
+                interned.borrow();
+            }
+            book = interned;
+        }
+        delegate.addBook(ISBN, book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        delegate.registerUser(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return delegate.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        delegate.borrowBook(ISBN, userId);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        delegate.returnBook(ISBN);
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        delegate.returnBook(ISBN, userId);
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return delegate.holdsCopy(ISBN, userId);
+    }
+
+    /**
+     * Retrieves the pool, e.g. to read its deduplication statistics.
+     *
+     * @return The intern pool.
+     */
+    public StringInternPool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,54 @@
+package ac.il.bgu.qa.storage;
+
+/**
+ * Converts ISBN-13 strings to and from compact numeric keys.
+ * Hyphens are ignored, so "978-0-306-40615-7" and "9780306406157" map to the same key.
+ */
+public final class IsbnKeys {
+
+    // Marks a string that is not an ISBN-13.
+    public static final long INVALID = -1L;
+
+    private IsbnKeys() {
+    }
+
+    /**
+     * Packs the 13 digits of an ISBN into a long.
+     *
+     * @param ISBN The ISBN, with or without hyphens.
+     * @return The packed key, or {@link #INVALID} if the ISBN does not consist of exactly 13 digits and hyphens.
+     */
+    public static long pack(String ISBN) {
+        if (ISBN == null) {
+            return INVALID;
+        }
+        long key = 0;
+        int digits = 0;
+        for (int i = 0; i < ISBN.length(); i++) {
+            char c = ISBN.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > 13) {
+                return INVALID;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return digits == 13 ? key : INVALID;
+    }
+
+    /**
+     * Unpacks a key into its 13 digits, without hyphens.
+     *
+     * @param key A key produced by {@link #pack(String)}.
+     * @return The ISBN digits.
+     */
+    public static String unpack(long key) {
+        char[] digits = new char[13];
+        for (int i = 12; i >= 0; i--) {
+            digits[i] = (char) ('0' + key % 10);
+            key /= 10;
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,67 @@
+package ac.il.bgu.qa.storage;
+
+import ac.il.bgu.qa.Book;
+
+/**
+ * A flyweight view of a book record held by an {@link OffHeapBookStore}.
+ * Fields are decoded from off-heap memory on every access, and borrowing or returning the book
+ * updates the stored record atomically.
+ */
+public class OffHeapBook extends Book {
+
+    // The store holding the record.
+    private final OffHeapBookStore store;
+    // The address of the record within the store.
+    private final long address;
+
+    /**
+     * Constructs a new OffHeapBook view. Views are created by {@link OffHeapBookStore#get(String)}.
+     *
+     * @param store   The store holding the record.
+     * @param address The address of the record.
+     */
+    OffHeapBook(OffHeapBookStore store, long address) {
+        super(null, null, null);
+        this.store = store;
+        this.address = address;
+    }
+
+    @Override
+    public String getISBN() {
+        return store.readIsbn(address);
+    }
+
+    @Override
+    public String getTitle() {
+        return store.readTitle(address);
+    }
+
+    @Override
+    public String getAuthor() {
+        return store.readAuthor(address);
+    }
+
+    @Override
+    public boolean isBorrowed() {
+        return store.isBorrowed(address);
+    }
+
+    @Override
+    public int getAvailableCopies() {
+        return isBorrowed() ? 0 : 1;
+    }
+
+    @Override
+    public void borrow() {
+        if (!store.compareAndSetBorrowed(address, false, true)) {
+            throw new IllegalStateException("Book is already borrowed!");
+        }
+    }
+
+    @Override
+    public void returnBook() {
+        if (!store.compareAndSetBorrowed(address, true, false)) {
+            throw new IllegalStateException("ac.il.bgu.qa.Book wasn't borrowed!");
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package ac.il.bgu.qa.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stores book records outside the Java heap, so a large catalog adds almost nothing for the
+ * garbage collector to trace.
+ * <p>
+ * Records are appended to large direct-memory slabs, and an open-addressing index, also in direct memory,
+ * maps the packed ISBN of each book to its record. A record holds a flags byte (bit 0: borrowed), the
+ * ISBN as given, then the UTF-8 title and author, each prefixed with its length.
+ * Books are read through {@link OffHeapBook} views that decode fields on access.
+ * <p>
+ * Replacing a book appends a new record; the space of the old one is only reclaimed when the store
+ * is discarded. Direct memory is released by the garbage collector once the store is unreachable.
+ */
+public class OffHeapBookStore {
+
+    // Bit of the flags byte marking a borrowed book.
+    private static final int BORROWED = 1;
+    // Bytes per index slot: the packed ISBN plus one (0 marks an empty slot) and the record address.
+    private static final int SLOT_BYTES = 16;
+    // Largest number of index slots, so the index fits a single buffer (1 GiB, up to 2^25 books).
+    private static final int MAX_SLOTS = 1 << 26;
+
+    // Size of every record slab, in bytes.
+    private final int slabSize;
+    // The record slabs; a record address is the slab number in the high 32 bits and the offset in the low.
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    // Where the next record is written in the last slab.
+    private int writeOffset;
+
+    // The index and its size.
+    private ByteBuffer index;
+    private int slots;
+    private int size;
+
+    // Guards the slabs and the index: lookups share it, inserts are exclusive.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guard borrowed-flag updates, striped by record.
+    private final Object[] flagLocks = new Object[64];
+
+    /**
+     * Constructs a new OffHeapBookStore.
+     *
+     * @param slabSize     The size of each record slab, in bytes; also the largest possible record.
+     * @param initialBooks The number of books the index is sized for before it first grows.
+     */
+    public OffHeapBookStore(int slabSize, int initialBooks) {
+        if (slabSize < 1024 || initialBooks <= 0 || initialBooks > MAX_SLOTS / 2) {
+            throw new IllegalArgumentException("Invalid store configuration.");
+        }
+        this.slabSize = slabSize;
+        this.slots = Integer.highestOneBit(Math.max(16, initialBooks * 2 - 1)) << 1;
+        this.index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        for (int i = 0; i < flagLocks.length; i++) {
+            flagLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Stores a book, replacing any book with the same ISBN digits.
+     *
+     * @param ISBN     The ISBN-13 of the book, with or without hyphens.
+     * @param title    The title of the book.
+     * @param author   The author of the book.
+     * @param borrowed Whether the book is borrowed.
+     * @return The address of the new record.
+     */
+    public long put(String ISBN, String title, String author, boolean borrowed) {
+        long key = IsbnKeys.pack(ISBN);
+        if (key == IsbnKeys.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        byte[] isbnBytes = ISBN.getBytes(StandardCharsets.US_ASCII);
+        byte[] titleBytes = bytesOf(title);
+        byte[] authorBytes = bytesOf(author);
+        if (isbnBytes.length > 255) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        int recordSize = 1 + 1 + isbnBytes.length + encodedLength(titleBytes) + encodedLength(authorBytes);
+        if (recordSize > slabSize) {
+            throw new IllegalArgumentException("Book record too large.");
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (slabs.isEmpty() || writeOffset + recordSize > slabSize) {
+                slabs.add(ByteBuffer.allocateDirect(slabSize));
+                writeOffset = 0;
+            }
+            int slab = slabs.size() - 1;
+            ByteBuffer buffer = slabs.get(slab).duplicate();
+            buffer.position(writeOffset);
+            buffer.put((byte) (borrowed ? BORROWED : 0));
+            buffer.put((byte) isbnBytes.length).put(isbnBytes);
+            putString(buffer, titleBytes);
+            putString(buffer, authorBytes);
+            long address = ((long) slab << 32) | writeOffset;
+            writeOffset += recordSize;
+
+            if (insert(key, address)) {
+                size++;
+                if (size * 2 > slots) {
+                    grow();
+                }
+            }
+            return address;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up a book.
+     *
+     * @param ISBN The ISBN-13 of the book, with or without hyphens.
+     * @return A view of the stored book, or null if no book with these ISBN digits is stored.
+     */
+    public OffHeapBook get(String ISBN) {
+        long key = IsbnKeys.pack(ISBN);
+        if (key == IsbnKeys.INVALID) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int slot = find(key);
+            return slot < 0 ? null : new OffHeapBook(this, index.getLong(slot * SLOT_BYTES + 8));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of stored books.
+     *
+     * @return The number of books.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the direct memory reserved for records and the index.
+     *
+     * @return The reserved size, in bytes.
+     */
+    public long getReservedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) slabs.size() * slabSize + (long) slots * SLOT_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Record accessors used by OffHeapBook
+
+    String readIsbn(long address) {
+        ByteBuffer record = record(address, 1);
+        byte[] bytes = new byte[record.get() & 0xFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    String readTitle(long address) {
+        ByteBuffer record = record(address, 1);
+        record.position(record.position() + 1 + (record.get(record.position()) & 0xFF));
+        return readString(record);
+    }
+
+    String readAuthor(long address) {
+        ByteBuffer record = record(address, 1);
+        record.position(record.position() + 1 + (record.get(record.position()) & 0xFF));
+        record.position(record.position() + 4 + Math.max(0, record.getInt(record.position())));
+        return readString(record);
+    }
+
+    boolean isBorrowed(long address) {
+        synchronized (flagLock(address)) {
+            return (slab(address).get(offset(address)) & BORROWED) != 0;
+        }
+    }
+
+    /**
+     * Sets the borrowed flag of a record if it currently has the expected value.
+     *
+     * @param address  The address of the record.
+     * @param expected The expected current value.
+     * @param borrowed The new value.
+     * @return true if the flag was updated, false if it did not have the expected value.
+     */
+    boolean compareAndSetBorrowed(long address, boolean expected, boolean borrowed) {
+        synchronized (flagLock(address)) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            byte flags = slab.get(offset);
+            if (((flags & BORROWED) != 0) != expected) {
+                return false;
+            }
+            slab.put(offset, (byte) (borrowed ? flags | BORROWED : flags & ~BORROWED));
+            return true;
+        }
+    }
+
+    // Index internals, called with the lock held
+
+    // Stores a key's address, returning true if the key is new.
+    private boolean insert(long key, long address) {
+        int slot = (int) (mix(key) >>> (64 - Integer.numberOfTrailingZeros(slots)));
+        while (true) {
+            long stored = index.getLong(slot * SLOT_BYTES);
+            if (stored == 0 || stored == key + 1) {
+                index.putLong(slot * SLOT_BYTES, key + 1);
+                index.putLong(slot * SLOT_BYTES + 8, address);
+                return stored == 0;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    // Finds the slot of a key, or -1 if it is not stored.
+    private int find(long key) {
+        int slot = (int) (mix(key) >>> (64 - Integer.numberOfTrailingZeros(slots)));
+        while (true) {
+            long stored = index.getLong(slot * SLOT_BYTES);
+            if (stored == 0) {
+                return -1;
+            }
+            if (stored == key + 1) {
+                return slot;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    // Doubles the index and rehashes every key into it.
+    private void grow() {
+        if (slots >= MAX_SLOTS) {
+            throw new IllegalStateException("Off-heap book index is full!");
+        }
+        ByteBuffer old = index;
+        int oldSlots = slots;
+        slots = oldSlots * 2;
+        index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long stored = old.getLong(slot * SLOT_BYTES);
+            if (stored != 0) {
+                insert(stored - 1, old.getLong(slot * SLOT_BYTES + 8));
+            }
+        }
+    }
+
+    // Spreads the bits of a key (Fibonacci hashing).
+    private static long mix(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    // Record internals
+
+    // Returns a buffer positioned at the given offset within a record.
+    private ByteBuffer record(long address, int offsetInRecord) {
+        ByteBuffer record = slab(address).duplicate();
+        record.position(offset(address) + offsetInRecord);
+        return record;
+    }
+
+    private ByteBuffer slab(long address) {
+        lock.readLock().lock();
+        try {
+            return slabs.get((int) (address >>> 32));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private Object flagLock(long address) {
+        return flagLocks[(int) ((address ^ (address >>> 32)) * 31) & (flagLocks.length - 1)];
+    }
+
+    // Reads a length-prefixed UTF-8 string, where -1 stands for null.
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Writes a length-prefixed UTF-8 string, where -1 stands for null.
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    // Retrieves the encoded size of a length-prefixed string.
+    private static int encodedLength(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    // Encodes a string as UTF-8, keeping null as null.
+    private static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package ac.il.bgu.qa.storage;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A database service that keeps its books in an {@link OffHeapBookStore}.
+ * Users, which carry their notification services, and the records of who borrowed which book stay on the heap.
+ * Books and borrow records are keyed by their ISBN digits, so hyphenated and plain forms of an ISBN refer
+ * to the same book.
+ */
+public class OffHeapDatabaseService implements DatabaseService {
+
+    // The off-heap book records.
+    private final OffHeapBookStore books;
+    // Users by Id.
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+    // The Id of the user currently holding each borrowed book, by packed ISBN key.
+    private final ConcurrentHashMap<Long, String> borrowers = new ConcurrentHashMap<>();
+
+    // Constructor for OffHeapDatabaseService, stores books in the given store
+    public OffHeapDatabaseService(OffHeapBookStore books) {
+        this.books = books;
+    }
+
+    /**
+     * Copies a book into off-heap memory. Later changes to the given object are not seen by the store;
+     * use the book returned by {@link #getBookByISBN(String)} instead. Records hold a single copy.
+     *
+     * @param ISBN The International Standard Book Number identifying the book.
+     * @param book The book to be added.
+     * @throws IllegalArgumentException If the book has more than one copy.
+     */
+    @Override
+    public void addBook(String ISBN, Book book) {
+        if (book.getCopies() != 1) {
+            throw new IllegalArgumentException("Off-heap records hold a single copy.");
+        }
+        books.put(ISBN, book.getTitle(), book.getAuthor(), book.isBorrowed());
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        users.put(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return books.get(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return users.get(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long key = IsbnKeys.pack(ISBN);
+        if (key == IsbnKeys.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        borrowers.put(key, userId);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        borrowers.remove(IsbnKeys.pack(ISBN));
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return userId != null && userId.equals(getBorrowerId(ISBN));
+    }
+
+    /**
+     * Retrieves the user currently holding a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The Id of the borrowing user, or null if the book is not borrowed.
+     */
+    public String getBorrowerId(String ISBN) {
+        long key = IsbnKeys.pack(ISBN);
+        return key == IsbnKeys.INVALID ? null : borrowers.get(key);
+    }
+}
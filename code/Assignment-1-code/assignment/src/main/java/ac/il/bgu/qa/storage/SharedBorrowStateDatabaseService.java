@@ -0,0 +1,128 @@
+package ac.il.bgu.qa.storage;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+import ac.il.bgu.qa.services.DatabaseService;
+
+/**
+ * A database service decorator that decides whether books are borrowed through a {@link SharedBorrowTable},
+ * so library processes sharing the table never lend the same book twice.
+ * <p>
+ * Books read through the decorator have their borrowed state brought in line with the table. Borrowing or
+ * returning is first claimed in the table; if another process got there first, the call fails with
+ * {@link BookAlreadyBorrowedException} or {@link BookNotBorrowedException}, which the library reports as
+ * the matching outcome. Claimed changes are then written to the underlying service, which stays the record
+ * of who holds each book. If that write fails, the claim is given back before the failure is rethrown; if
+ * another process changed the flag meanwhile, its change stands. After a
+ * crash between the two steps, the table is ahead and is the one to trust.
+ * Books hold a single copy.
+ */
+public class SharedBorrowStateDatabaseService implements DatabaseService {
+
+    // The database service decorated.
+    private final DatabaseService delegate;
+    // The borrowed flags shared with other processes.
+    private final SharedBorrowTable table;
+
+    /**
+     * Constructs a new SharedBorrowStateDatabaseService.
+     *
+     * @param delegate The database service decorated.
+     * @param table    The borrowed flags shared with other processes.
+     */
+    public SharedBorrowStateDatabaseService(DatabaseService delegate, SharedBorrowTable table) {
+        this.delegate = delegate;
+        this.table = table;
+    }
+
+    /**
+     * Adds a book to the underlying service. The shared flag is left as other processes set it.
+     *
+     * @param ISBN The International Standard Book Number identifying the book.
+     * @param book The book to be added.
+     * @throws IllegalArgumentException If the book has more than one copy.
+     */
+    @Override
+    public void addBook(String ISBN, Book book) {
+        if (book.getCopies() != 1) {
+            throw new IllegalArgumentException("Shared borrow state holds a single copy per book.");
+        }
+        delegate.addBook(ISBN, book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        delegate.registerUser(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        Book book = delegate.getBookByISBN(ISBN);
+        if (book == null || IsbnKeys.pack(ISBN) == IsbnKeys.INVALID) {
+            return book;
+        }
+        boolean borrowed = table.isBorrowed(ISBN);
+        try {
+            if (borrowed && !book.isBorrowed()) {
+                book.borrow();
+            } else if (!borrowed && book.isBorrowed()) {
+                book.returnBook();
+            }
+        } catch (IllegalStateException e) {
+            // A local caller changed the book meanwhile; the table decides when that caller claims it.
+        }
+        return book;
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        if (!table.tryBorrow(ISBN)) {
+            throw new BookAlreadyBorrowedException("Book was already borrowed!", false);
+        }
+        try {
+            delegate.borrowBook(ISBN, userId);
+        } catch (RuntimeException e) {
+            // Give the claim back, so the book is not left borrowed everywhere with no holder recorded.
+            table.tryReturn(ISBN);
+            throw e;
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        if (!table.tryReturn(ISBN)) {
+            throw new BookNotBorrowedException("Book wasn't borrowed!", false);
+        }
+        try {
+            delegate.returnBook(ISBN);
+        } catch (RuntimeException e) {
+            table.tryBorrow(ISBN);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return delegate.holdsCopy(ISBN, userId);
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        if (!table.tryReturn(ISBN)) {
+            throw new BookNotBorrowedException("Book wasn't borrowed!", false);
+        }
+        try {
+            delegate.returnBook(ISBN, userId);
+        } catch (RuntimeException e) {
+            table.tryBorrow(ISBN);
+            throw e;
+        }
+    }
+}
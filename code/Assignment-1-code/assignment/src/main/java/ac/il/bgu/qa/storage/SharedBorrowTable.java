@@ -0,0 +1,263 @@
+package ac.il.bgu.qa.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the borrowed flag of every book in a memory-mapped file, so several library processes on one host
+ * see each other's borrows and returns without asking the database.
+ * <p>
+ * The file holds a small header followed by a fixed-size open-addressing table, split into stripes. A book's
+ * packed ISBN picks its stripe, and the book lives in one of that stripe's slots; a slot holds the key plus
+ * one (0 marks an empty slot) and the borrowed flag. Borrowing and returning are compare-and-set on the flag,
+ * made while holding the stripe: an in-process lock, then an OS lock on the stripe's byte range, which other
+ * processes honor. Reading a flag takes no lock. The table does not grow; a full stripe rejects new books.
+ * <p>
+ * Crash consistency:
+ * <ul>
+ *   <li>Every change is a single aligned 8-byte store made while holding its stripe, and a slot is claimed by
+ *   writing its flag before its key. A process dying mid-operation leaves either the old or the new value,
+ *   never a half-claimed slot, and the OS releases its locks, so no stripe stays locked.</li>
+ *   <li>The mapped pages belong to the OS, so changes made by a process that crashes are kept and seen by the
+ *   others. Only a host crash can lose changes not yet forced to disk; {@link #force()} does so, and
+ *   {@link #close()} forces before unmapping.</li>
+ *   <li>A flag records that a book is borrowed, not which process borrowed it: flags set by a process that
+ *   later crashes stay set until the book is returned.</li>
+ * </ul>
+ * Open one table per file in each process and share it between threads: the OS locks are held per process,
+ * so two tables on the same file in one process would collide. An interrupt arriving while a thread waits for
+ * a stripe closes the file, as for any interruptible channel.
+ */
+public class SharedBorrowTable implements Closeable {
+
+    // Identifies the file format: "LIBBRWT" and the format version.
+    private static final long MAGIC = 0x4C494242525754L;
+    private static final int VERSION = 1;
+    // Header layout: magic, version, stripe count, slots per stripe.
+    private static final int HEADER_BYTES = 64;
+    private static final int VERSION_OFFSET = 8;
+    private static final int STRIPES_OFFSET = 12;
+    private static final int SLOTS_OFFSET = 16;
+    // Bytes per slot: the key plus one, then the flag.
+    private static final int SLOT_BYTES = 16;
+    // Flag values.
+    private static final long AVAILABLE = 0;
+    private static final long BORROWED = 1;
+
+    // The file and its mapping.
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // The table's geometry, as stored in the header.
+    private final int stripes;
+    private final int slotsPerStripe;
+    // Serialize this process's threads on a stripe before they take its OS lock; striped by stripe number.
+    private final ReentrantLock[] locks = new ReentrantLock[64];
+
+    /**
+     * Opens a shared table, creating the file if no process has yet.
+     *
+     * @param file           The shared file.
+     * @param stripes        The number of stripes, when creating the file.
+     * @param slotsPerStripe The number of books each stripe can hold, when creating the file.
+     * @throws IOException If the file cannot be opened or mapped, or is not a borrow table.
+     */
+    public SharedBorrowTable(Path file, int stripes, int slotsPerStripe) throws IOException {
+        if (!isValidGeometry(stripes, slotsPerStripe)) {
+            throw new IllegalArgumentException("Invalid table geometry.");
+        }
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // Processes opening the file together agree on one header.
+            try (FileLock ignored = channel.lock(0, HEADER_BYTES, false)) {
+                if (channel.size() < HEADER_BYTES) {
+                    MappedByteBuffer created = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                            HEADER_BYTES + (long) stripes * slotsPerStripe * SLOT_BYTES);
+                    created.putInt(VERSION_OFFSET, VERSION);
+                    created.putInt(STRIPES_OFFSET, stripes);
+                    created.putInt(SLOTS_OFFSET, slotsPerStripe);
+                    // The magic goes last, so a header with it is complete.
+                    created.putLong(0, MAGIC);
+                    created.force();
+                }
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                if (header.getLong(0) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+                    throw new IOException("Not a borrow table: " + file);
+                }
+                this.stripes = header.getInt(STRIPES_OFFSET);
+                this.slotsPerStripe = header.getInt(SLOTS_OFFSET);
+                if (!isValidGeometry(this.stripes, this.slotsPerStripe)) {
+                    throw new IOException("Invalid borrow table geometry in " + file);
+                }
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) this.stripes * this.slotsPerStripe * SLOT_BYTES);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Marks a book borrowed, unless it already is.
+     *
+     * @param ISBN The ISBN-13 of the book, with or without hyphens.
+     * @return true if this call borrowed the book, false if it was already borrowed.
+     * @throws IllegalArgumentException If the ISBN is not an ISBN-13.
+     * @throws IllegalStateException    If the book is new to the table and its stripe is full.
+     */
+    public boolean tryBorrow(String ISBN) {
+        return compareAndSet(ISBN, AVAILABLE, BORROWED);
+    }
+
+    /**
+     * Marks a book available, unless it already is.
+     *
+     * @param ISBN The ISBN-13 of the book, with or without hyphens.
+     * @return true if this call returned the book, false if it was not borrowed.
+     * @throws IllegalArgumentException If the ISBN is not an ISBN-13.
+     */
+    public boolean tryReturn(String ISBN) {
+        return compareAndSet(ISBN, BORROWED, AVAILABLE);
+    }
+
+    /**
+     * Checks whether a book is borrowed, without locking. A change racing with the check may or may not be seen.
+     *
+     * @param ISBN The ISBN-13 of the book, with or without hyphens.
+     * @return true if the book is borrowed, otherwise false.
+     * @throws IllegalArgumentException If the ISBN is not an ISBN-13.
+     */
+    public boolean isBorrowed(String ISBN) {
+        long key = keyOf(ISBN);
+        int slot = find(key, stripeOf(key));
+        return slot >= 0 && buffer.getLong(slot + 8) == BORROWED;
+    }
+
+    /**
+     * Retrieves the number of books the table can hold.
+     *
+     * @return The capacity.
+     */
+    public long getCapacity() {
+        return (long) stripes * slotsPerStripe;
+    }
+
+    /**
+     * Writes changes to the file, so they survive a host crash.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Forces changes to the file and closes it. The mapping is released once the table is unreachable.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    // Sets a book's flag to update if it is expect, creating its slot if needed, while holding its stripe.
+    private boolean compareAndSet(String ISBN, long expect, long update) {
+        long key = keyOf(ISBN);
+        int stripe = stripeOf(key);
+        ReentrantLock lock = locks[stripe % locks.length];
+        lock.lock();
+        // A pending interrupt would close the channel for every thread; keep it for after the OS lock.
+        boolean interrupted = Thread.interrupted();
+        try (FileLock ignored = channel.lock(stripeOffset(stripe), (long) slotsPerStripe * SLOT_BYTES, false)) {
+            int slot = find(key, stripe);
+            if (slot < 0) {
+                if (expect != AVAILABLE) {
+                    return false;
+                }
+                slot = -slot - 1;
+                if (slot >= buffer.capacity()) {
+                    throw new IllegalStateException("Shared borrow table stripe " + stripe + " is full.");
+                }
+                buffer.putLong(slot + 8, update);
+                buffer.putLong(slot, key + 1);
+                return true;
+            }
+            if (buffer.getLong(slot + 8) != expect) {
+                return false;
+            }
+            buffer.putLong(slot + 8, update);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Finds a book's slot in its stripe: its offset if present, otherwise minus one minus the offset of the
+    // first empty slot, or of the end of the file if the stripe is full.
+    private int find(long key, int stripe) {
+        long base = stripeOffset(stripe);
+        int start = (int) ((mix(key) >>> 32) % slotsPerStripe);
+        for (int i = 0; i < slotsPerStripe; i++) {
+            // The geometry was checked to fit the mapping, so every offset in it fits an int.
+            int slot = (int) (base + (long) ((start + i) % slotsPerStripe) * SLOT_BYTES);
+            long stored = buffer.getLong(slot);
+            if (stored == key + 1) {
+                return slot;
+            }
+            if (stored == 0) {
+                return -slot - 1;
+            }
+        }
+        return -buffer.capacity() - 1;
+    }
+
+    // The offset of a stripe's first slot.
+    private long stripeOffset(int stripe) {
+        return HEADER_BYTES + (long) stripe * slotsPerStripe * SLOT_BYTES;
+    }
+
+    // Checks that a geometry has slots and that the whole table fits one mapping.
+    private static boolean isValidGeometry(int stripes, int slotsPerStripe) {
+        return stripes > 0 && slotsPerStripe > 0
+                && (long) stripes * slotsPerStripe * SLOT_BYTES <= Integer.MAX_VALUE - HEADER_BYTES;
+    }
+
+    // Maps a key to its stripe.
+    private int stripeOf(long key) {
+        return (int) ((mix(key) & 0x7fffffffL) % stripes);
+    }
+
+    // Packs an ISBN, rejecting anything that is not an ISBN-13.
+    private static long keyOf(String ISBN) {
+        long key = IsbnKeys.pack(ISBN);
+        if (key == IsbnKeys.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        return key;
+    }
+
+    // Spreads the bits of a key (the finalizer of MurmurHash3).
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
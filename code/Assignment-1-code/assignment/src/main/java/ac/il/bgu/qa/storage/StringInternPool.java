@@ -0,0 +1,112 @@
+package ac.il.bgu.qa.storage;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent pool that maps equal strings to one canonical instance, so repeated titles and author
+ * names are kept in memory once.
+ * Entries are weakly referenced: once no book uses a string any more, the garbage collector can reclaim
+ * it and its pool entry. Keys are spread over independently locked segments.
+ */
+public class StringInternPool {
+
+    // Estimated heap cost of a String besides its characters: object header, fields and array header.
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    // The segments, a power of two in number.
+    private final WeakHashMap<String, WeakReference<String>>[] segments;
+
+    // Statistics.
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * Constructs a new StringInternPool.
+     *
+     * @param concurrency The expected number of threads interning at the same time.
+     */
+    @SuppressWarnings("unchecked")
+    public StringInternPool(int concurrency) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(concurrency, 1 << 10)) * 2 - 1);
+        segments = new WeakHashMap[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new WeakHashMap<>();
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a string, making the given string canonical if it is new.
+     *
+     * @param value The string to intern.
+     * @return A string equal to the given one, shared with every other caller interning an equal string.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        lookups.increment();
+        int hash = value.hashCode();
+        WeakHashMap<String, WeakReference<String>> segment = segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+        synchronized (segment) {
+            WeakReference<String> reference = segment.get(value);
+            String canonical = reference == null ? null : reference.get();
+            if (canonical != null) {
+                if (canonical != value) {
+                    hits.increment();
+                    // Approximation: UTF-16 characters; compact strings on newer JVMs save less.
+                    savedBytes.add(STRING_OVERHEAD_BYTES + 2L * value.length());
+                }
+                return canonical;
+            }
+            segment.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+    /**
+     * Retrieves the number of distinct strings currently in the pool.
+     * Strings that were reclaimed may still be counted until their segment is next used.
+     *
+     * @return The number of pooled strings.
+     */
+    public int size() {
+        int size = 0;
+        for (WeakHashMap<String, WeakReference<String>> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Retrieves the number of strings passed to {@link #intern(String)}.
+     *
+     * @return The number of lookups.
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Retrieves the number of interned strings that were duplicates of a pooled instance.
+     *
+     * @return The number of deduplicated strings.
+     */
+    public long getDeduplicatedCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Retrieves an estimate of the heap saved by deduplication, assuming each duplicate would otherwise
+     * have been kept alive.
+     *
+     * @return The estimated saving, in bytes.
+     */
+    public long getEstimatedSavedBytes() {
+        return savedBytes.sum();
+    }
+}
@@ -0,0 +1,112 @@
+package ac.il.bgu.qa.tracing;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * A span exporter that appends every ended span to a file as one JSON object per line,
+ * using OpenTelemetry's field names.
+ */
+public class FileSpanExporter implements SpanExporter, Closeable {
+
+    // The file being written.
+    private final BufferedWriter writer;
+
+    /**
+     * Constructs a new FileSpanExporter, appending to the given file.
+     *
+     * @param file The file to write spans to; created if missing.
+     * @throws IOException If the file cannot be opened.
+     */
+    public FileSpanExporter(Path file) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void export(Span span) {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"traceId\":\"").append(span.getTraceId())
+                .append("\",\"spanId\":\"").append(span.getSpanId()).append('"');
+        if (span.getParentSpanId() != null) {
+            line.append(",\"parentSpanId\":\"").append(span.getParentSpanId()).append('"');
+        }
+        line.append(",\"name\":");
+        appendString(line, span.getName());
+        line.append(",\"startTimeUnixNano\":").append(span.getStartEpochNanos())
+                .append(",\"endTimeUnixNano\":").append(span.getEndEpochNanos())
+                .append(",\"status\":\"").append(span.getStatus()).append('"');
+        if (span.getStatusMessage() != null) {
+            line.append(",\"statusMessage\":");
+            appendString(line, span.getStatusMessage());
+        }
+        line.append(",\"attributes\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> attribute : span.getAttributes().entrySet()) {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+            appendString(line, attribute.getKey());
+            line.append(':');
+            appendString(line, attribute.getValue());
+        }
+        line.append("}}");
+
+        synchronized (writer) {
+            try {
+                writer.write(line.toString());
+                writer.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes any buffered spans to the file.
+     *
+     * @throws IOException If writing fails.
+     */
+    public void flush() throws IOException {
+        synchronized (writer) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+    // Appends a value as a quoted JSON string.
+    private static void appendString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,35 @@
+package ac.il.bgu.qa.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A span exporter that keeps ended spans in memory, for tests and in-process inspection.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+    // Ended spans, in the order they ended.
+    private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void export(Span span) {
+        spans.add(span);
+    }
+
+    /**
+     * Retrieves the spans ended so far.
+     *
+     * @return The ended spans, in the order they ended.
+     */
+    public List<Span> getFinishedSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * Discards all kept spans.
+     */
+    public void reset() {
+        spans.clear();
+    }
+}
@@ -0,0 +1,157 @@
+package ac.il.bgu.qa.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents a timed stage of a request, following the OpenTelemetry span model.
+ * A span is started by a {@link Tracer}, becomes the parent of spans started after it on the same thread,
+ * and must be ended on that thread. Spans of unsampled requests are not recording and are never exported.
+ */
+public class Span {
+
+    /**
+     * The outcome of a span.
+     */
+    public enum Status {
+        UNSET, OK, ERROR
+    }
+
+    // The tracer that started this span.
+    private final Tracer tracer;
+    // Whether this span collects data and is exported when ended.
+    private final boolean recording;
+    // The span that was current when this span started, restored when it ends.
+    private final Span parent;
+    // Identifiers: 32 hex characters for the trace, 16 for spans.
+    private final String traceId;
+    private final String spanId;
+    // The name of the stage, e.g. "db.getBookByISBN".
+    private final String name;
+    // Start time since the epoch, in nanoseconds.
+    private final long startEpochNanos;
+    // Start time by the monotonic clock, used for the duration.
+    private final long startNanoTime;
+    // End time since the epoch, in nanoseconds, or 0 while the span is running.
+    private long endEpochNanos;
+    // Attributes describing the stage.
+    private Map<String, String> attributes;
+    // The outcome of the stage.
+    private Status status = Status.UNSET;
+    private String statusMessage;
+
+    /**
+     * Constructs a new Span. Spans are created through {@link Tracer#startSpan(String)}.
+     */
+    Span(Tracer tracer, boolean recording, Span parent, String traceId, String spanId, String name,
+         long startEpochNanos, long startNanoTime) {
+        this.tracer = tracer;
+        this.recording = recording;
+        this.parent = parent;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.name = name;
+        this.startEpochNanos = startEpochNanos;
+        this.startNanoTime = startNanoTime;
+    }
+
+    /**
+     * Sets an attribute describing the stage. Ignored if the span is not recording.
+     *
+     * @param key   The attribute name.
+     * @param value The attribute value.
+     * @return This span.
+     */
+    public Span setAttribute(String key, String value) {
+        if (recording) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Marks the span as failed with the given exception. Ignored if the span is not recording.
+     *
+     * @param exception The exception the stage failed with.
+     */
+    public void recordException(Throwable exception) {
+        if (recording) {
+            setAttribute("exception.type", exception.getClass().getName());
+            status = Status.ERROR;
+            statusMessage = exception.getMessage();
+        }
+    }
+
+    /**
+     * Ends the span, restores its parent as the current span and exports it if it is recording.
+     * Must be called on the thread that started the span, exactly once.
+     */
+    public void end() {
+        if (recording) {
+            endEpochNanos = startEpochNanos + (System.nanoTime() - startNanoTime);
+            if (status == Status.UNSET) {
+                status = Status.OK;
+            }
+        }
+        tracer.spanEnded(this);
+    }
+
+    // Getter methods
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Retrieves the Id of the parent span.
+     *
+     * @return The parent's span Id, or null for the root span of a trace.
+     */
+    public String getParentSpanId() {
+        return parent == null ? null : parent.spanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public long getEndEpochNanos() {
+        return endEpochNanos;
+    }
+
+    public long getDurationNanos() {
+        return endEpochNanos - startEpochNanos;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(attributes);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+}
@@ -0,0 +1,14 @@
+package ac.il.bgu.qa.tracing;
+
+/**
+ * Provides an interface for components that receive ended spans, e.g. to store or write them.
+ */
+public interface SpanExporter {
+
+    /**
+     * Receives a span that has ended. Called on the thread that ended the span.
+     *
+     * @param span The ended span.
+     */
+    void export(Span span);
+}
@@ -0,0 +1,155 @@
+package ac.il.bgu.qa.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts spans, keeps track of the current span of each thread and hands ended spans to an exporter.
+ * Sampling is decided once per trace, when its root span starts; all spans of an unsampled trace
+ * share a single non-recording span, so unsampled requests allocate nothing.
+ */
+public class Tracer {
+
+    // A tracer that never records, used by default.
+    public static final Tracer NOOP = new Tracer();
+
+    // Whether this tracer records anything at all.
+    private final boolean enabled;
+    // Fraction of traces that are recorded, between 0 and 1.
+    private final double sampleRatio;
+    // Receives every ended recording span.
+    private final SpanExporter exporter;
+    // Anchors converting monotonic time to time since the epoch.
+    private final long anchorEpochNanos;
+    private final long anchorNanoTime;
+    // The span returned for every stage of an unsampled trace.
+    private final Span nonRecordingSpan;
+    // The current span and unsampled nesting depth of each thread.
+    private final ThreadLocal<Context> context = ThreadLocal.withInitial(Context::new);
+
+    /**
+     * The tracing state of a single thread.
+     */
+    private static final class Context {
+        // The innermost recording span that has not ended yet.
+        Span current;
+        // How many non-recording spans are open, when inside an unsampled trace.
+        int unsampledDepth;
+    }
+
+    // Constructor for the no-op tracer
+    private Tracer() {
+        this.enabled = false;
+        this.sampleRatio = 0;
+        this.exporter = null;
+        this.anchorEpochNanos = 0;
+        this.anchorNanoTime = 0;
+        this.nonRecordingSpan = new Span(this, false, null, null, null, null, 0, 0);
+    }
+
+    /**
+     * Constructs a new Tracer.
+     *
+     * @param sampleRatio The fraction of traces to record, between 0 and 1.
+     * @param exporter    Receives every ended recording span.
+     */
+    public Tracer(double sampleRatio, SpanExporter exporter) {
+        if (sampleRatio < 0 || sampleRatio > 1) {
+            throw new IllegalArgumentException("Invalid sample ratio.");
+        }
+        if (exporter == null) {
+            throw new IllegalArgumentException("Invalid exporter.");
+        }
+        this.enabled = true;
+        this.sampleRatio = sampleRatio;
+        this.exporter = exporter;
+        this.anchorEpochNanos = System.currentTimeMillis() * 1_000_000L;
+        this.anchorNanoTime = System.nanoTime();
+        this.nonRecordingSpan = new Span(this, false, null, null, null, null, 0, 0);
+    }
+
+    /**
+     * Starts a span as a child of the calling thread's current span, or as the root of a new trace,
+     * and makes it the current span.
+     *
+     * @param name The name of the stage.
+     * @return The started span, which must be ended on the calling thread.
+     */
+    public Span startSpan(String name) {
+        if (!enabled) {
+            return nonRecordingSpan;
+        }
+        Context threadContext = context.get();
+        if (threadContext.unsampledDepth > 0) {
+            threadContext.unsampledDepth++;
+            return nonRecordingSpan;
+        }
+
+        Span parent = threadContext.current;
+        if (parent == null && !shouldSample()) {
+            threadContext.unsampledDepth = 1;
+            return nonRecordingSpan;
+        }
+
+        long now = System.nanoTime();
+        String traceId = parent == null ? randomHex(2) : parent.getTraceId();
+        Span span = new Span(this, true, parent, traceId, randomHex(1), name,
+                anchorEpochNanos + (now - anchorNanoTime), now);
+        threadContext.current = span;
+        return span;
+    }
+
+    /**
+     * Retrieves the calling thread's current recording span.
+     *
+     * @return The current span, or null if the thread is not inside a sampled trace.
+     */
+    public Span currentSpan() {
+        return enabled ? context.get().current : null;
+    }
+
+    /**
+     * Restores the parent of an ended span as the current span and exports the span if it is recording.
+     *
+     * @param span The span that ended.
+     */
+    void spanEnded(Span span) {
+        if (!enabled) {
+            return;
+        }
+        Context threadContext = context.get();
+        if (!span.isRecording()) {
+            if (threadContext.unsampledDepth > 0) {
+                threadContext.unsampledDepth--;
+            }
+            return;
+        }
+
+        if (threadContext.current == span) {
+            threadContext.current = span.getParent();
+        }
+        try {
+            exporter.export(span);
+        } catch (RuntimeException e) {
+            // A failing exporter must not fail the traced request.
+            System.err.println("Span export failed: " + e.getMessage());
+        }
+    }
+
+    // Decides whether a new trace is recorded.
+    private boolean shouldSample() {
+        return sampleRatio >= 1 || (sampleRatio > 0 && ThreadLocalRandom.current().nextDouble() < sampleRatio);
+    }
+
+    // Builds a random identifier of the given number of 64-bit words, as lowercase hex.
+    private static String randomHex(int words) {
+        StringBuilder id = new StringBuilder(words * 16);
+        for (int i = 0; i < words; i++) {
+            String word = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            for (int pad = word.length(); pad < 16; pad++) {
+                id.append('0');
+            }
+            id.append(word);
+        }
+        return id.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package ac.il.bgu.qa.tracing;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.function.Supplier;
+
+/**
+ * A database service decorator that wraps every call to the underlying database service
+ * in a child span named {@code db.<method>}.
+ */
+public class TracingDatabaseService implements DatabaseService {
+
+    // The database service being traced.
+    private final DatabaseService delegate;
+
+    // Starts the spans.
+    private final Tracer tracer;
+
+    // Constructor for TracingDatabaseService, wraps the given service
+    public TracingDatabaseService(DatabaseService delegate, Tracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        trace("addBook", "isbn", ISBN, () -> {
+            delegate.addBook(ISBN, book);
+            return null;
+        });
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        trace("registerUser", "user.id", id, () -> {
+            delegate.registerUser(id, user);
+            return null;
+        });
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return trace("getBookByISBN", "isbn", ISBN, () -> delegate.getBookByISBN(ISBN));
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return trace("getUserById", "user.id", userId, () -> delegate.getUserById(userId));
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        trace("borrowBook", "isbn", ISBN, () -> {
+            delegate.borrowBook(ISBN, userId);
+            return null;
+        });
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        trace("returnBook", "isbn", ISBN, () -> {
+            delegate.returnBook(ISBN);
+            return null;
+        });
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        trace("returnBook", "isbn", ISBN, () -> {
+            delegate.returnBook(ISBN, userId);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        return trace("holdsCopy", "isbn", ISBN, () -> delegate.holdsCopy(ISBN, userId));
+    }
+
+    /**
+     * Runs a call against the delegate inside a span.
+     *
+     * @param method   The name of the database method being called.
+     * @param keyName  The name of the attribute holding the call's key.
+     * @param keyValue The key the call is made for.
+     * @param call     The call to run.
+     * @return The call's result.
+     */
+    private <T> T trace(String method, String keyName, String keyValue, Supplier<T> call) {
+        Span span = tracer.startSpan("db." + method).setAttribute(keyName, keyValue);
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
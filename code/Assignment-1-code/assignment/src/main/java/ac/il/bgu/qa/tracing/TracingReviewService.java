@@ -0,0 +1,52 @@
+package ac.il.bgu.qa.tracing;
+
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.List;
+
+/**
+ * A review service decorator that wraps every call to the underlying review service
+ * in a child span named {@code review.<method>}.
+ */
+public class TracingReviewService implements ReviewService {
+
+    // The review service being traced.
+    private final ReviewService delegate;
+
+    // Starts the spans.
+    private final Tracer tracer;
+
+    // Constructor for TracingReviewService, wraps the given service
+    public TracingReviewService(ReviewService delegate, Tracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public List<String> getReviewsForBook(String ISBN) {
+        Span span = tracer.startSpan("review.getReviewsForBook").setAttribute("isbn", ISBN);
+        try {
+            List<String> reviews = delegate.getReviewsForBook(ISBN);
+            span.setAttribute("review.count", String.valueOf(reviews == null ? 0 : reviews.size()));
+            return reviews;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public void close() {
+        Span span = tracer.startSpan("review.close");
+        try {
+            delegate.close();
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ac.il.bgu.qa.warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ISBNs and user Ids worth loading before an instance takes traffic, e.g. the most borrowed books.
+ * <p>
+ * Persisted as a text file with one entry per line: {@code book <ISBN>} or {@code user <Id>}.
+ * Blank lines and lines starting with {@code #} are ignored.
+ */
+public class HotList {
+
+    // The hot ISBNs and user Ids, in the order they should be loaded.
+    private final List<String> ISBNs;
+    private final List<String> userIds;
+
+    /**
+     * Constructs a new HotList.
+     *
+     * @param ISBNs   The hot ISBNs, most important first.
+     * @param userIds The hot user Ids, most important first.
+     */
+    public HotList(Collection<String> ISBNs, Collection<String> userIds) {
+        this.ISBNs = Collections.unmodifiableList(new ArrayList<>(ISBNs));
+        this.userIds = Collections.unmodifiableList(new ArrayList<>(userIds));
+    }
+
+    /**
+     * Reads a hot list from a file.
+     *
+     * @param file The file.
+     * @return The hot list.
+     * @throws IOException If the file cannot be read or holds an unknown kind of entry.
+     */
+    public static HotList load(Path file) throws IOException {
+        List<String> ISBNs = new ArrayList<>();
+        List<String> userIds = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String entry = line.trim();
+            if (entry.isEmpty() || entry.startsWith("#")) {
+                continue;
+            }
+            if (entry.startsWith("book ")) {
+                ISBNs.add(entry.substring(5).trim());
+            } else if (entry.startsWith("user ")) {
+                userIds.add(entry.substring(5).trim());
+            } else {
+                throw new IOException("Invalid hot list entry: " + entry);
+            }
+        }
+        return new HotList(ISBNs, userIds);
+    }
+
+    /**
+     * Writes the hot list to a file, replacing it atomically so readers never see a partial list.
+     *
+     * @param file The file.
+     * @throws IOException If writing fails.
+     */
+    public void save(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (String ISBN : ISBNs) {
+                writer.write("book " + ISBN);
+                writer.newLine();
+            }
+            for (String userId : userIds) {
+                writer.write("user " + userId);
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Retrieves the hot ISBNs.
+     *
+     * @return The ISBNs, most important first.
+     */
+    public List<String> getISBNs() {
+        return ISBNs;
+    }
+
+    /**
+     * Retrieves the hot user Ids.
+     *
+     * @return The user Ids, most important first.
+     */
+    public List<String> getUserIds() {
+        return userIds;
+    }
+}
@@ -0,0 +1,184 @@
+package ac.il.bgu.qa.warmup;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loads the books, users and reviews of a {@link HotList} before an instance takes traffic, so the
+ * first requests hit warm caches. The services given should be the caching decorators the library
+ * uses, e.g. a CachingDatabaseService and a CachingReviewService, since prefetching fills their caches.
+ * <p>
+ * Prefetches run in parallel on the given executor, paced to at most the configured number of requests
+ * per second so warming up does not overload the backends. A failed prefetch is counted and skipped.
+ * The warm-up is ready once every prefetch has finished, successfully or not.
+ */
+public class LibraryWarmUp {
+
+    // Services whose caches are filled.
+    private final DatabaseService databaseService;
+    private final ReviewService reviewService;
+    // Runs the prefetches.
+    private final Executor executor;
+    // The time between two requests, in nanoseconds.
+    private final long intervalNanos;
+
+    // The earliest time the next request may start.
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    // Completes when every prefetch has finished, null until started.
+    private CompletableFuture<Void> done;
+
+    // Statistics.
+    private final AtomicLong prefetched = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Constructs a new LibraryWarmUp.
+     *
+     * @param databaseService      The database service whose books and users are prefetched.
+     * @param reviewService        The review service whose reviews are prefetched, or null to skip reviews.
+     * @param executor             Runs the prefetches; its size bounds how many run at once.
+     * @param maxRequestsPerSecond The largest number of requests started per second.
+     */
+    public LibraryWarmUp(DatabaseService databaseService, ReviewService reviewService, Executor executor,
+                         int maxRequestsPerSecond) {
+        if (databaseService == null || executor == null || maxRequestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid warm-up configuration.");
+        }
+        this.databaseService = databaseService;
+        this.reviewService = reviewService;
+        this.executor = executor;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond;
+    }
+
+    /**
+     * Starts prefetching the entries of a hot list. Only the first call starts a warm-up;
+     * later calls return the same future.
+     *
+     * @param hotList The entries to prefetch.
+     * @return A future completing once every prefetch has finished.
+     */
+    public synchronized CompletableFuture<Void> start(HotList hotList) {
+        if (done != null) {
+            return done;
+        }
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (String ISBN : hotList.getISBNs()) {
+            tasks.add(prefetch(() -> {
+                Book book = databaseService.getBookByISBN(ISBN);
+                if (book != null && reviewService != null) {
+                    pace();
+                    try {
+                        reviewService.getReviewsForBook(ISBN);
+                    } finally {
+                        reviewService.close();
+                    }
+                }
+            }));
+        }
+        for (String userId : hotList.getUserIds()) {
+            tasks.add(prefetch(() -> databaseService.getUserById(userId)));
+        }
+        done = CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+        return done;
+    }
+
+    /**
+     * Checks whether the warm-up has finished.
+     *
+     * @return true once every prefetch has finished, false before or if the warm-up was never started.
+     */
+    public synchronized boolean isReady() {
+        return done != null && done.isDone();
+    }
+
+    /**
+     * Waits for the warm-up to finish.
+     *
+     * @param timeout The longest time to wait.
+     * @param unit    The unit of the timeout.
+     * @return true if the warm-up finished, false if it was not started or the timeout passed first.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            future = done;
+        }
+        if (future == null) {
+            return false;
+        }
+        try {
+            future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // Prefetch failures are counted, not propagated; finished is ready.
+            return true;
+        }
+    }
+
+    /**
+     * Retrieves the number of entries prefetched successfully.
+     *
+     * @return The prefetched count.
+     */
+    public long getPrefetchedCount() {
+        return prefetched.get();
+    }
+
+    /**
+     * Retrieves the number of entries whose prefetch failed.
+     *
+     * @return The failure count.
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    // Runs one prefetch on the executor once its rate slot comes, counting its outcome.
+    private CompletableFuture<Void> prefetch(Runnable load) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    pace();
+                    load.run();
+                    prefetched.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    result.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failures.incrementAndGet();
+            result.complete(null);
+        }
+        return result;
+    }
+
+    // Waits until the next request may start, reserving its slot.
+    private void pace() {
+        long now = System.nanoTime();
+        long previous = nextSlot.getAndAccumulate(now, (slot, time) -> Math.max(slot, time) + intervalNanos);
+        long start = Math.max(previous, now);
+        long remaining;
+        while ((remaining = start - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
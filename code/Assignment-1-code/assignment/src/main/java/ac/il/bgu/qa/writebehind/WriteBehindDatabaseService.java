@@ -0,0 +1,515 @@
+package ac.il.bgu.qa.writebehind;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.errors.UserNotRegisteredException;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A database service decorator that makes borrowing and returning cost only an in-memory update,
+ * writing the changes to the underlying service later in batches.
+ * <p>
+ * Books read or added through the decorator are kept, and the same instance is handed out on every
+ * lookup, so the borrow state the library sets on it is visible at once. Borrow and return records are
+ * queued per ISBN; a return that follows a borrow by the same user cancels it before it is written.
+ * Queued changes are flushed by a background thread at least every {@code maxStalenessMillis}, or sooner
+ * once {@code maxBatchSize} changes are queued.
+ * <p>
+ * A change the underlying service rejects for good, because the book or user is unknown, the book is
+ * already borrowed or not borrowed, or the arguments are invalid, is dropped, together with the book kept for it, and
+ * reported through {@link #getRejectedChanges()}. Any other failure is taken as transient: the change stays
+ * at the head of its book's queue and is retried on the next flush, up to {@code maxAttempts} times
+ * before it is dropped and reported in the same way.
+ * <p>
+ * On close, the queue is flushed and whatever could not be written is saved to a spill file, which is
+ * read back and replayed by the next decorator created with the same file. Adding books and registering
+ * users are written through at once. All writes must go through this decorator.
+ */
+public class WriteBehindDatabaseService implements DatabaseService, Closeable {
+
+    // The number of write attempts per change used by the shorter constructor.
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    // The number of dropped changes kept for reporting; older ones are forgotten.
+    private static final int MAX_REJECTED_KEPT = 1024;
+
+    /**
+     * A queued borrow or return record.
+     */
+    private static final class Change {
+        final boolean borrow;
+        // The borrowing or returning user, null for a return by an unknown user.
+        final String userId;
+        // The failed attempts to write the change; only touched while flushing.
+        int attempts;
+        // Set while the change is being written; only touched inside compute on its key.
+        boolean inFlight;
+
+        Change(boolean borrow, String userId) {
+            this.borrow = borrow;
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * A borrow or return the underlying service would not accept, dropped from the queue.
+     */
+    public static final class RejectedChange {
+        // The book the change was about.
+        private final String ISBN;
+        // Whether it was a borrow or a return.
+        private final boolean borrow;
+        // The borrowing or returning user, or null if unknown.
+        private final String userId;
+        // The exception of the last attempt.
+        private final RuntimeException error;
+
+        RejectedChange(String ISBN, boolean borrow, String userId, RuntimeException error) {
+            this.ISBN = ISBN;
+            this.borrow = borrow;
+            this.userId = userId;
+            this.error = error;
+        }
+
+        /**
+         * Retrieves the ISBN of the book the change was about.
+         *
+         * @return The ISBN.
+         */
+        public String getISBN() {
+            return ISBN;
+        }
+
+        /**
+         * Checks whether the change was a borrow.
+         *
+         * @return true for a borrow, false for a return.
+         */
+        public boolean isBorrow() {
+            return borrow;
+        }
+
+        /**
+         * Retrieves the Id of the borrowing or returning user.
+         *
+         * @return The user Id, or null for a return by an unknown user.
+         */
+        public String getUserId() {
+            return userId;
+        }
+
+        /**
+         * Retrieves the exception the underlying service threw on the last attempt.
+         *
+         * @return The exception.
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
+    // The database service written to.
+    private final DatabaseService delegate;
+    // Flushing starts early once this many changes are queued.
+    private final int maxBatchSize;
+    // The attempts a change gets against transient failures before it is dropped.
+    private final int maxAttempts;
+    // Where unwritten changes are saved on close.
+    private final Path spillFile;
+
+    // Books handed out, by ISBN; their borrow state is ahead of the underlying service.
+    private final ConcurrentHashMap<String, Book> books = new ConcurrentHashMap<>();
+    // Queued changes by ISBN, oldest first; each deque is only touched inside compute on its key.
+    private final ConcurrentHashMap<String, ArrayDeque<Change>> pending = new ConcurrentHashMap<>();
+    // The number of queued changes.
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // Runs the periodic and early flushes, one at a time.
+    private final ScheduledExecutorService flusher;
+    // Set while an early flush is scheduled.
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // Statistics.
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    // The most recently dropped changes, oldest first.
+    private final ConcurrentLinkedQueue<RejectedChange> rejectedChanges = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs a new WriteBehindDatabaseService, replaying changes left in the spill file by a previous instance.
+     *
+     * @param delegate          The database service written to.
+     * @param maxStalenessMillis The longest time a change stays queued while the underlying service accepts writes.
+     * @param maxBatchSize      The number of queued changes that triggers an early flush.
+     * @param spillFile         Where unwritten changes are saved on close.
+     * @throws IOException If the spill file exists but cannot be read.
+     */
+    public WriteBehindDatabaseService(DatabaseService delegate, long maxStalenessMillis, int maxBatchSize,
+                                      Path spillFile) throws IOException {
+        this(delegate, maxStalenessMillis, maxBatchSize, spillFile, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Constructs a new WriteBehindDatabaseService, replaying changes left in the spill file by a previous instance.
+     *
+     * @param delegate          The database service written to.
+     * @param maxStalenessMillis The longest time a change stays queued while the underlying service accepts writes.
+     * @param maxBatchSize      The number of queued changes that triggers an early flush.
+     * @param spillFile         Where unwritten changes are saved on close.
+     * @param maxAttempts       The attempts a change gets against transient failures before it is dropped.
+     * @throws IOException If the spill file exists but cannot be read.
+     */
+    public WriteBehindDatabaseService(DatabaseService delegate, long maxStalenessMillis, int maxBatchSize,
+                                      Path spillFile, int maxAttempts) throws IOException {
+        if (delegate == null || maxStalenessMillis <= 0 || maxBatchSize <= 0 || spillFile == null || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Invalid write-behind configuration.");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.spillFile = spillFile;
+        loadSpill();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, maxStalenessMillis, maxStalenessMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        delegate.addBook(ISBN, book);
+        books.put(ISBN, book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        delegate.registerUser(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        Book book = books.get(ISBN);
+        if (book != null) {
+            return book;
+        }
+        book = delegate.getBookByISBN(ISBN);
+        if (book == null) {
+            return null;
+        }
+        Book existing = books.putIfAbsent(ISBN, book);
+        return existing != null ? existing : book;
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        enqueue(ISBN, new Change(true, userId));
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        enqueue(ISBN, new Change(false, null));
+    }
+
+    @Override
+    public void returnBook(String ISBN, String userId) {
+        enqueue(ISBN, new Change(false, userId));
+    }
+
+    /**
+     * Checks whether a user holds a copy of a book, counting the user's queued borrows and returns
+     * on top of what the underlying service holds.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The unique identifier for the user.
+     * @return true if the user holds a copy of the book, otherwise false.
+     */
+    @Override
+    public boolean holdsCopy(String ISBN, String userId) {
+        int held = delegate.holdsCopy(ISBN, userId) ? 1 : 0;
+        int[] queued = new int[1];
+        pending.computeIfPresent(ISBN, (key, changes) -> {
+            for (Change change : changes) {
+                if (change.userId != null && change.userId.equals(userId)) {
+                    queued[0] += change.borrow ? 1 : -1;
+                }
+            }
+            return changes;
+        });
+        return held + queued[0] > 0;
+    }
+
+    /**
+     * Writes every queued change to the underlying service. Each change stays queued, and counted by
+     * {@link #holdsCopy(String, String)}, until it is written. Changes failing transiently stay queued,
+     * ahead of their book's later changes; changes rejected for good, or out of attempts, are dropped.
+     *
+     * @return The number of changes written.
+     */
+    public synchronized int flush() {
+        int written = 0;
+        for (String ISBN : new ArrayList<>(pending.keySet())) {
+            Change change;
+            while ((change = startWrite(ISBN)) != null) {
+                try {
+                    write(ISBN, change);
+                    finishWrite(ISBN);
+                    written++;
+                } catch (RuntimeException e) {
+                    failedWrites.incrementAndGet();
+                    if (!isPermanent(e) && ++change.attempts < maxAttempts) {
+                        abortWrite(ISBN);
+                        break;
+                    }
+                    finishWrite(ISBN);
+                    reject(ISBN, change, e);
+                }
+            }
+        }
+        flushed.addAndGet(written);
+        if (pendingCount.get() == 0) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                // The replayed changes are written; a stale spill file is retried on the next flush.
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Stops the background flushes, flushes the queue and saves whatever could not be written to the spill file.
+     *
+     * @throws IOException If the spill file cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdown();
+        flush();
+        if (pendingCount.get() > 0) {
+            writeSpill();
+        }
+    }
+
+    /**
+     * Retrieves the number of queued changes.
+     *
+     * @return The pending count.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Retrieves the number of changes written to the underlying service.
+     *
+     * @return The flushed count.
+     */
+    public long getFlushedCount() {
+        return flushed.get();
+    }
+
+    /**
+     * Retrieves the number of borrow and return pairs cancelled out before being written.
+     *
+     * @return The merged count.
+     */
+    public long getMergedCount() {
+        return merged.get();
+    }
+
+    /**
+     * Retrieves the number of write attempts that the underlying service failed.
+     *
+     * @return The failed write count.
+     */
+    public long getFailedWriteCount() {
+        return failedWrites.get();
+    }
+
+    /**
+     * Retrieves the number of changes dropped because the underlying service would not accept them.
+     *
+     * @return The rejected count.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Retrieves the most recently dropped changes, up to the last 1024.
+     *
+     * @return A snapshot of the dropped changes, oldest first.
+     */
+    public List<RejectedChange> getRejectedChanges() {
+        return new ArrayList<>(rejectedChanges);
+    }
+
+    // Queues a change, cancelling it against the last queued borrow if it returns that borrow
+    // and the borrow is not already being written.
+    private void enqueue(String ISBN, Change change) {
+        pending.compute(ISBN, (key, changes) -> {
+            if (changes == null) {
+                changes = new ArrayDeque<>();
+            }
+            Change last = changes.peekLast();
+            if (!change.borrow && last != null && last.borrow && !last.inFlight
+                    && (change.userId == null || change.userId.equals(last.userId))) {
+                changes.removeLast();
+                pendingCount.decrementAndGet();
+                merged.incrementAndGet();
+                return changes.isEmpty() ? null : changes;
+            }
+            changes.addLast(change);
+            pendingCount.incrementAndGet();
+            return changes;
+        });
+        if (pendingCount.get() >= maxBatchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    // Tells whether a write failure will recur however often the change is retried.
+    private static boolean isPermanent(RuntimeException e) {
+        return e instanceof BookAlreadyBorrowedException || e instanceof BookNotBorrowedException
+                || e instanceof BookNotFoundException || e instanceof UserNotRegisteredException
+                || e instanceof IllegalArgumentException;
+    }
+
+    // Drops a change the underlying service will not accept; the book kept for it no longer matches the service.
+    private void reject(String ISBN, Change change, RuntimeException e) {
+        rejected.incrementAndGet();
+        books.remove(ISBN);
+        rejectedChanges.offer(new RejectedChange(ISBN, change.borrow, change.userId, e));
+        while (rejectedChanges.size() > MAX_REJECTED_KEPT) {
+            rejectedChanges.poll();
+        }
+    }
+
+    // Marks the oldest queued change of a book as being written and returns it, or null if none is queued.
+    private Change startWrite(String ISBN) {
+        Change[] head = new Change[1];
+        pending.computeIfPresent(ISBN, (key, changes) -> {
+            head[0] = changes.peekFirst();
+            head[0].inFlight = true;
+            return changes;
+        });
+        return head[0];
+    }
+
+    // Removes the change being written, once written or dropped, from the head of its book's queue.
+    private void finishWrite(String ISBN) {
+        pending.computeIfPresent(ISBN, (key, changes) -> {
+            changes.removeFirst();
+            pendingCount.decrementAndGet();
+            return changes.isEmpty() ? null : changes;
+        });
+    }
+
+    // Leaves the change being written at the head of its book's queue, to be retried on the next flush.
+    private void abortWrite(String ISBN) {
+        pending.computeIfPresent(ISBN, (key, changes) -> {
+            changes.peekFirst().inFlight = false;
+            return changes;
+        });
+    }
+
+    // Applies one change to the underlying service.
+    private void write(String ISBN, Change change) {
+        if (change.borrow) {
+            delegate.borrowBook(ISBN, change.userId);
+        } else if (change.userId == null) {
+            delegate.returnBook(ISBN);
+        } else {
+            delegate.returnBook(ISBN, change.userId);
+        }
+    }
+
+    // Flushes from the background thread, which must survive failures.
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            failedWrites.incrementAndGet();
+        }
+    }
+
+    // Saves the queued changes, one per line, replacing the spill file only once they are on disk.
+    private void writeSpill() throws IOException {
+        Path temporary = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            for (Map.Entry<String, ArrayDeque<Change>> entry : pending.entrySet()) {
+                for (Change change : entry.getValue()) {
+                    writer.write((change.borrow ? "borrow " : "return ") + entry.getKey() + " "
+                            + (change.userId == null ? "-" : change.userId));
+                    writer.newLine();
+                }
+            }
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Queues the changes saved by a previous instance; the file is deleted once they are written.
+    private void loadSpill() throws IOException {
+        if (!Files.exists(spillFile)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            if (fields.length != 3 || !(fields[0].equals("borrow") || fields[0].equals("return"))) {
+                throw new IOException("Invalid spill record: " + line);
+            }
+            pending.computeIfAbsent(fields[1], key -> new ArrayDeque<>())
+                    .addLast(new Change(fields[0].equals("borrow"), fields[2].equals("-") ? null : fields[2]));
+            pendingCount.incrementAndGet();
+        }
+    }
+}
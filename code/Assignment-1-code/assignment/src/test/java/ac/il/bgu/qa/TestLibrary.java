@@ -1,5 +1,6 @@
 package ac.il.bgu.qa;
 import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.metrics.InMemoryMetricsRecorder;
 import ac.il.bgu.qa.services.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -723,5 +724,256 @@ public class TestLibrary {
 
 // *********************************************************End of getBookByISBN Tests***************************************************************
 
+// *********************************************************Start of metrics Tests***************************************************************
 
-}
\ No newline at end of file
+    /**
+     * Verifies that a successful operation is counted as a success and timed
+     * when a metrics recorder is configured.
+     */
+    @Test
+    void givenMetricsRecorder_WhenReturnBookSucceeds_ThenSuccessCountedAndTimed() {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        library.setMetrics(metrics);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(book.isBorrowed()).thenReturn(true);
+
+        library.returnBook(ValidISBN);
+
+        assertEquals(1, metrics.getCount("library.returnBook.success"));
+        assertEquals(1, metrics.getHistogram("library.returnBook").getCount());
+    }
+
+    /**
+     * Verifies that a failed operation is counted by the type of the exception it failed with.
+     */
+    @Test
+    void givenMetricsRecorder_WhenBorrowBookNotFound_ThenFailureCountedByExceptionType() {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        library.setMetrics(metrics);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(null);
+
+        assertThrows(BookNotFoundException.class, () -> library.borrowBook(ValidISBN, ValidID));
+
+        assertEquals(1, metrics.getCount("library.borrowBook.failure.BookNotFoundException"));
+        assertEquals(0, metrics.getCount("library.borrowBook.success"));
+    }
+
+    /**
+     * Verifies that every failed notification attempt is counted as a retry.
+     */
+    @Test
+    void givenMetricsRecorder_WhenNotificationKeepsFailing_ThenRetriesCounted() {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        library.setMetrics(metrics);
+        when(databaseService.getBookByISBN(anyString())).thenReturn(book);
+        when(databaseService.getUserById(anyString())).thenReturn(user);
+        reviews.add("Good review");
+        when(reviewService.getReviewsForBook(anyString())).thenReturn(reviews);
+        doThrow(new NotificationException("Notification exception")).when(user).sendNotification(anyString());
+
+        assertThrows(NotificationException.class, () -> library.notifyUserWithBookReviews(ValidISBN, ValidID));
+
+        assertEquals(5, metrics.getCount("library.notification.retries"));
+        assertEquals(1, metrics.getCount("library.notifyUserWithBookReviews.failure.NotificationException"));
+    }
+
+// *********************************************************End of metrics Tests***************************************************************
+
+// *********************************************************Start of exception-free API Tests***************************************************************
+
+    /**
+     * Verifies that tryBorrowBook reports a missing book as an outcome and writes nothing.
+     */
+    @Test
+    void givenBookNotFound_WhenTryBorrowBook_ThenBookNotFoundOutcome() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(null);
+
+        assertEquals(LibraryOutcome.BOOK_NOT_FOUND, library.tryBorrowBook(ValidISBN, ValidID));
+
+        verify(databaseService, never()).borrowBook(anyString(), anyString());
+    }
+
+    /**
+     * Verifies that tryBorrowBook borrows an available book for a registered user exactly like borrowBook.
+     */
+    @Test
+    void givenAvailableBookAndRegisteredUser_WhenTryBorrowBook_ThenSuccessOutcome() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+        when(book.isBorrowed()).thenReturn(false);
+
+        assertEquals(LibraryOutcome.SUCCESS, library.tryBorrowBook(ValidISBN, ValidID));
+
+        verify(book, times(1)).borrow();
+        verify(databaseService, times(1)).borrowBook(ValidISBN, ValidID);
+    }
+
+    /**
+     * Verifies that tryReturnBook reports a book that is not borrowed, counted under the same
+     * failure name as the exception the throwing API raises.
+     */
+    @Test
+    void givenBookNotBorrowed_WhenTryReturnBook_ThenBookNotBorrowedOutcomeCounted() {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        library.setMetrics(metrics);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(book.isBorrowed()).thenReturn(false);
+
+        assertEquals(LibraryOutcome.BOOK_NOT_BORROWED, library.tryReturnBook(ValidISBN));
+
+        verify(databaseService, never()).returnBook(anyString());
+        assertEquals(1, metrics.getCount("library.returnBook.failure.BookNotBorrowedException"));
+    }
+
+    /**
+     * Verifies that with stackless exceptions enabled, the throwing API raises the same exception
+     * type and message without a stack trace.
+     */
+    @Test
+    void givenStacklessExceptions_WhenBorrowBookNotFound_ThenExceptionHasNoStackTrace() {
+        library.setStacklessExceptions(true);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(null);
+
+        BookNotFoundException exception = assertThrows(BookNotFoundException.class, () -> library.borrowBook(ValidISBN, ValidID));
+
+        assertEquals("Book not found!", exception.getMessage());
+        assertEquals(0, exception.getStackTrace().length);
+    }
+
+    /**
+     * Verifies that by default the throwing API raises an ordinary exception, with a stack trace,
+     * suppression enabled and a cause that can still be set.
+     */
+    @Test
+    void givenDefaultExceptions_WhenBorrowBookNotFound_ThenExceptionFullyWritable() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(null);
+
+        BookNotFoundException exception = assertThrows(BookNotFoundException.class, () -> library.borrowBook(ValidISBN, ValidID));
+        IllegalStateException cause = new IllegalStateException();
+        exception.initCause(cause);
+        exception.addSuppressed(new IllegalStateException());
+
+        assertTrue(exception.getStackTrace().length > 0);
+        assertSame(cause, exception.getCause());
+        assertEquals(1, exception.getSuppressed().length);
+    }
+
+// *********************************************************End of exception-free API Tests***************************************************************
+
+// *********************************************************Start of multi-copy Tests***************************************************************
+
+    /**
+     * Verifies that a copy of a partly borrowed book can be returned by the user holding it,
+     * and that the database is told who returned it.
+     */
+    @Test
+    void givenPartlyBorrowedBook_WhenReturnBookByUser_ThenCopyReturned() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(book.isBorrowed()).thenReturn(false);
+        when(book.hasBorrowedCopies()).thenReturn(true);
+        when(databaseService.holdsCopy(ValidISBN, ValidID)).thenReturn(true);
+
+        library.returnBook(ValidISBN, ValidID);
+
+        verify(book, times(1)).returnBook();
+        verify(databaseService, times(1)).returnBook(ValidISBN, ValidID);
+        verify(databaseService, never()).returnBook(ValidISBN);
+    }
+
+    /**
+     * Verifies that a user holding no copy of a partly borrowed book cannot return one,
+     * and that neither the book nor the database is changed.
+     */
+    @Test
+    void givenUserHoldingNoCopy_WhenReturnBookByUser_ThenThrowBookNotBorrowedException() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(book.isBorrowed()).thenReturn(false);
+        when(book.hasBorrowedCopies()).thenReturn(true);
+        when(databaseService.holdsCopy(ValidISBN, ValidID)).thenReturn(false);
+
+        assertThrows(BookNotBorrowedException.class, () -> library.returnBook(ValidISBN, ValidID));
+
+        verify(book, never()).returnBook();
+        verify(databaseService, never()).returnBook(anyString(), anyString());
+    }
+
+    /**
+     * Verifies that losing the race for the last copy is reported as an already borrowed book
+     * and nothing is written to the database.
+     */
+    @Test
+    void givenLastCopyTakenConcurrently_WhenBorrowBook_ThenThrowBookAlreadyBorrowedException() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+        when(book.isBorrowed()).thenReturn(false);
+        doThrow(new IllegalStateException("Book is already borrowed!")).when(book).borrow();
+
+        assertThrows(BookAlreadyBorrowedException.class, () -> library.borrowBook(ValidISBN, ValidID));
+
+        verify(databaseService, never()).borrowBook(anyString(), anyString());
+    }
+
+    /**
+     * Verifies that a borrowing the database rejects or fails to record gives the copy back,
+     * whether it is reported as an outcome or thrown.
+     */
+    @Test
+    void givenFailingBorrowWrite_WhenBorrowBook_ThenCopyGivenBack() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+        when(book.isBorrowed()).thenReturn(false);
+        doThrow(new BookAlreadyBorrowedException("Book was already borrowed!"))
+                .doThrow(new IllegalStateException("Database down"))
+                .when(databaseService).borrowBook(ValidISBN, ValidID);
+
+        assertEquals(LibraryOutcome.BOOK_ALREADY_BORROWED, library.tryBorrowBook(ValidISBN, ValidID));
+        assertThrows(IllegalStateException.class, () -> library.borrowBook(ValidISBN, ValidID));
+
+        verify(book, times(2)).borrow();
+        verify(book, times(2)).returnBook();
+    }
+
+    /**
+     * Verifies that a return the database rejects or fails to record takes the copy back,
+     * whether it is reported as an outcome or thrown.
+     */
+    @Test
+    void givenFailingReturnWrite_WhenReturnBook_ThenCopyTakenBack() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(book.isBorrowed()).thenReturn(true);
+        when(databaseService.holdsCopy(ValidISBN, ValidID)).thenReturn(true);
+        doThrow(new BookNotBorrowedException("Book wasn't borrowed!"))
+                .when(databaseService).returnBook(ValidISBN, ValidID);
+        doThrow(new IllegalStateException("Database down")).when(databaseService).returnBook(ValidISBN);
+
+        assertEquals(LibraryOutcome.BOOK_NOT_BORROWED, library.tryReturnBook(ValidISBN, ValidID));
+        assertThrows(IllegalStateException.class, () -> library.returnBook(ValidISBN));
+
+        verify(book, times(2)).returnBook();
+        verify(book, times(2)).borrow();
+    }
+
+    /**
+     * Verifies that returning with an invalid user Id is rejected before the database is queried.
+     */
+    @Test
+    void givenInvalidUserId_WhenReturnBookByUser_ThenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> library.returnBook(ValidISBN, "123"));
+
+        verify(databaseService, never()).getBookByISBN(anyString());
+    }
+
+    /**
+     * Verifies that a book with some copies already borrowed cannot be added.
+     */
+    @Test
+    void givenBookWithBorrowedCopies_WhenAddBook_ThenThrowIllegalArgumentException() {
+        Book copies = new Book(ValidISBN, ValidTitle, ValidAuthor, 3);
+        copies.borrow();
+
+        assertThrows(IllegalArgumentException.class, () -> library.addBook(copies));
+        verify(databaseService, never()).addBook(anyString(), any());
+    }
+
+// *********************************************************End of multi-copy Tests***************************************************************
+}
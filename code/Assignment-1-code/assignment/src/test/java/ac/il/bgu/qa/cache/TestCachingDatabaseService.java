@@ -0,0 +1,153 @@
+package ac.il.bgu.qa.cache;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCachingDatabaseService {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private CachingDatabaseService cachingService;
+    private Library library;
+    private Book book;
+    private User user;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        cachingService = new CachingDatabaseService(databaseService, 100, 100);
+        library = new Library(cachingService, reviewService);
+        book = new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie");
+        user = new User("Yali", ValidID, notificationService);
+    }
+
+    /**
+     * Verifies that repeated lookups of the same book and user reach the database only once.
+     */
+    @Test
+    void givenCachedRecords_WhenBorrowAndReturnRepeatedly_ThenDatabaseReadOnce() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+
+        for (int i = 0; i < 3; i++) {
+            library.borrowBook(ValidISBN, ValidID);
+            library.returnBook(ValidISBN);
+        }
+
+        verify(databaseService, times(1)).getBookByISBN(ValidISBN);
+        verify(databaseService, times(1)).getUserById(ValidID);
+        verify(databaseService, times(3)).borrowBook(ValidISBN, ValidID);
+        verify(databaseService, times(3)).returnBook(ValidISBN);
+    }
+
+    /**
+     * Verifies that added books and registered users are written through, and that the cache then
+     * holds the instances the database returns rather than the ones that were added.
+     */
+    @Test
+    void givenAddedBookAndUser_WhenLookedUp_ThenDatabaseCopiesCached() {
+        library.addBook(book);
+        library.registerUser(user);
+        Book storedBook = new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie");
+        User storedUser = new User("Yali", ValidID, notificationService);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(storedBook);
+        when(databaseService.getUserById(ValidID)).thenReturn(storedUser);
+
+        for (int i = 0; i < 2; i++) {
+            assertSame(storedBook, cachingService.getBookByISBN(ValidISBN));
+            assertSame(storedUser, cachingService.getUserById(ValidID));
+        }
+        verify(databaseService, times(1)).addBook(ValidISBN, book);
+        verify(databaseService, times(1)).registerUser(ValidID, user);
+        // The existence checks made before adding, then one load each.
+        verify(databaseService, times(2)).getBookByISBN(ValidISBN);
+        verify(databaseService, times(2)).getUserById(ValidID);
+    }
+
+    /**
+     * Verifies that the borrow state seen through the cache follows borrowing and returning.
+     */
+    @Test
+    void givenCachedBook_WhenBorrowed_ThenLookupSeesBorrowedState() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+
+        library.borrowBook(ValidISBN, ValidID);
+        assertTrue(cachingService.getBookByISBN(ValidISBN).isBorrowed());
+        library.returnBook(ValidISBN);
+        assertFalse(cachingService.getBookByISBN(ValidISBN).isBorrowed());
+    }
+
+    /**
+     * Verifies that a failed database write drops the cached book so the next lookup reloads it.
+     */
+    @Test
+    void givenFailingBorrowWrite_WhenBorrowBook_ThenBookInvalidated() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+        doThrow(new IllegalStateException("write failed")).when(databaseService).borrowBook(ValidISBN, ValidID);
+
+        assertThrows(IllegalStateException.class, () -> library.borrowBook(ValidISBN, ValidID));
+        cachingService.getBookByISBN(ValidISBN);
+
+        verify(databaseService, times(2)).getBookByISBN(ValidISBN);
+    }
+
+    /**
+     * Verifies that a load racing with an invalidation does not cache the value it loaded.
+     */
+    @Test
+    void givenInvalidationDuringLoad_WhenGetBookByISBN_ThenLoadedBookNotCached() {
+        when(databaseService.getBookByISBN(ValidISBN)).thenAnswer(invocation -> {
+            cachingService.invalidateBook(ValidISBN);
+            return book;
+        });
+
+        assertSame(book, cachingService.getBookByISBN(ValidISBN));
+
+        assertEquals(0, cachingService.getBookCache().size());
+    }
+
+    /**
+     * Verifies that absent books are not cached.
+     */
+    @Test
+    void givenMissingBook_WhenGetBookByISBNTwice_ThenDatabaseReadTwice() {
+        assertNull(cachingService.getBookByISBN(ValidISBN));
+        assertNull(cachingService.getBookByISBN(ValidISBN));
+        verify(databaseService, times(2)).getBookByISBN(ValidISBN);
+    }
+
+    /**
+     * Verifies that the cache stays within its capacity by evicting the least recently used entry.
+     */
+    @Test
+    void givenFullCache_WhenPut_ThenLeastRecentlyUsedEvicted() {
+        LruCache<String, String> cache = new LruCache<>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,228 @@
+package ac.il.bgu.qa.codec;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.events.LibraryEvent;
+import ac.il.bgu.qa.services.NotificationService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.*;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.*;
+import java.nio.ByteBuffer;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCodecs {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+// *********************************************************Start of BookCodec Tests***************************************************************
+
+    /**
+     * Verifies that books round-trip through the codec with every ISBN form, including ones
+     * that cannot be packed.
+     *
+     * @param ISBN the ISBN of the encoded book
+     */
+    @ParameterizedTest
+    @ValueSource(strings = { "3790792363427", "0000000000000", "978-0-306-40615-7", "not an isbn", "" })
+    void givenBook_WhenEncodedAndDecoded_ThenFieldsRoundTrip(String ISBN) {
+        Book book = new Book(ISBN, "Les Mis\u00e9rables", "Victor Hugo");
+        Book decoded = BookCodec.decode(ByteBuffer.wrap(BookCodec.encode(book)));
+
+        assertEquals(ISBN, decoded.getISBN());
+        assertEquals("Les Mis\u00e9rables", decoded.getTitle());
+        assertEquals("Victor Hugo", decoded.getAuthor());
+        assertFalse(decoded.isBorrowed());
+    }
+
+    /**
+     * Verifies that a plain 13-digit ISBN is packed, making the record smaller than its text form.
+     */
+    @Test
+    void givenPlainIsbn_WhenEncoded_ThenPackedIntoEightBytes() {
+        Book book = new Book(ValidISBN, "T", "A");
+        assertEquals(2 + 8 + 2 + 2, BookCodec.encodedSize(book));
+        assertEquals(BookCodec.encodedSize(book), BookCodec.encode(book).length);
+    }
+
+    /**
+     * Verifies that the borrowed flag and null fields survive a round trip.
+     */
+    @Test
+    void givenBorrowedBookWithNullFields_WhenEncodedAndDecoded_ThenStatePreserved() {
+        Book book = new Book(null, null, "Victor Hugo");
+        book.borrow();
+        Book decoded = BookCodec.decode(ByteBuffer.wrap(BookCodec.encode(book)));
+
+        assertNull(decoded.getISBN());
+        assertNull(decoded.getTitle());
+        assertEquals("Victor Hugo", decoded.getAuthor());
+        assertTrue(decoded.isBorrowed());
+    }
+
+    /**
+     * Verifies that consecutive records in one buffer can be viewed without decoding,
+     * and that borrowing a view updates the encoded record.
+     */
+    @Test
+    void givenRecordsInBuffer_WhenViewed_ThenFieldsReadInPlace() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        BookCodec.encode(new Book(ValidISBN, "First", "Dale Carnegie"), buffer);
+        BookCodec.encode(new Book("978-0-306-40615-7", "Second", "Victor Hugo"), buffer);
+        buffer.flip();
+
+        Book first = BookCodec.view(buffer);
+        Book second = BookCodec.view(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(ValidISBN, first.getISBN());
+        assertEquals("Second", second.getTitle());
+        assertEquals("Victor Hugo", second.getAuthor());
+
+        first.borrow();
+        buffer.rewind();
+        assertTrue(BookCodec.decode(buffer).isBorrowed());
+        assertFalse(BookCodec.decode(buffer).isBorrowed());
+    }
+
+    /**
+     * Verifies that records of an unknown version are rejected.
+     */
+    @Test
+    void givenUnknownVersion_WhenDecoded_ThenThrowIllegalArgumentException() {
+        byte[] encoded = BookCodec.encode(new Book(ValidISBN, "Title", "Author"));
+        encoded[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> BookCodec.decode(ByteBuffer.wrap(encoded)));
+    }
+
+    /**
+     * Verifies that long strings, whose lengths take several varint bytes, round-trip.
+     */
+    @Test
+    void givenLongTitle_WhenEncodedAndDecoded_ThenRoundTrip() {
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            title.append((char) ('a' + i % 26));
+        }
+        Book decoded = BookCodec.decode(ByteBuffer.wrap(BookCodec.encode(new Book(ValidISBN, title.toString(), "A"))));
+        assertEquals(title.toString(), decoded.getTitle());
+    }
+
+    /**
+     * Verifies that a large batch of books can be written back to back into one buffer and read back in order.
+     */
+    @Test
+    void givenManyBooks_WhenEncodedIntoOneBuffer_ThenAllDecodedInOrder() {
+        ByteBuffer buffer = ByteBuffer.allocate(100_000 * 40);
+        for (int i = 0; i < 100_000; i++) {
+            BookCodec.encode(new Book(String.format("978%010d", i), "Title " + i, "Author"), buffer);
+        }
+        buffer.flip();
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals("Title " + i, BookCodec.decode(buffer).getTitle());
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    /**
+     * Verifies that the copy count and available copies of a multi-copy book round-trip,
+     * and that borrowing through a view updates the encoded count.
+     */
+    @Test
+    void givenMultiCopyBook_WhenEncodedAndViewed_ThenCopiesPreserved() {
+        Book book = new Book(ValidISBN, "Title", "Author", 3);
+        book.borrow();
+        ByteBuffer buffer = ByteBuffer.wrap(BookCodec.encode(book));
+
+        Book decoded = BookCodec.decode(buffer.duplicate());
+        assertEquals(3, decoded.getCopies());
+        assertEquals(2, decoded.getAvailableCopies());
+        assertFalse(decoded.isBorrowed());
+
+        Book view = BookCodec.view(buffer.duplicate());
+        assertEquals(ValidISBN, view.getISBN());
+        view.borrow();
+        view.borrow();
+        assertTrue(view.isBorrowed());
+        assertThrows(IllegalStateException.class, view::borrow);
+        assertTrue(BookCodec.decode(buffer.duplicate()).isBorrowed());
+        view.returnBook();
+        assertEquals(1, BookCodec.decode(buffer.duplicate()).getAvailableCopies());
+    }
+
+    /**
+     * Verifies that single-copy records written by version 1 of the codec are still read.
+     */
+    @Test
+    void givenVersionOneRecord_WhenDecoded_ThenSingleCopyBook() {
+        Book book = new Book(ValidISBN, "Title", "Author");
+        book.borrow();
+        byte[] encoded = BookCodec.encode(book);
+        encoded[0] = 1;
+
+        Book decoded = BookCodec.decode(ByteBuffer.wrap(encoded));
+        assertEquals(1, decoded.getCopies());
+        assertTrue(decoded.isBorrowed());
+    }
+
+// *********************************************************End of BookCodec Tests***************************************************************
+
+// *********************************************************Start of UserCodec Tests***************************************************************
+
+    /**
+     * Verifies that users round-trip with packed and unpacked Ids, and get their notification service back.
+     *
+     * @param id the Id of the encoded user
+     */
+    @ParameterizedTest
+    @ValueSource(strings = { "617865027123", "000000000001", "user-42" })
+    void givenUser_WhenEncodedAndDecoded_ThenFieldsRoundTrip(String id) {
+        User user = new User("Yali", id, notificationService);
+        User decoded = UserCodec.decode(ByteBuffer.wrap(UserCodec.encode(user)),
+                userId -> userId.equals(id) ? notificationService : null);
+
+        assertEquals(id, decoded.getId());
+        assertEquals("Yali", decoded.getName());
+        assertSame(notificationService, decoded.getNotificationService());
+    }
+
+    /**
+     * Verifies that a 12-digit Id is packed into eight bytes.
+     */
+    @Test
+    void givenNumericId_WhenEncoded_ThenPacked() {
+        assertEquals(2 + 8 + 2, UserCodec.encode(new User("Y", ValidID, notificationService)).length);
+    }
+
+// *********************************************************End of UserCodec Tests***************************************************************
+
+// *********************************************************Start of LibraryEventCodec Tests***************************************************************
+
+    /**
+     * Verifies that events round-trip with their sequence number and with absent fields kept null.
+     */
+    @Test
+    void givenEvent_WhenEncodedAndDecoded_ThenFieldsRoundTrip() {
+        LibraryEvent event = new LibraryEvent(42, LibraryEvent.Type.BOOK_ADDED, 1700000000000L, ValidISBN, "Les Mis\u00e9rables", "Victor Hugo", null, null);
+        LibraryEvent decoded = LibraryEventCodec.decode(ByteBuffer.wrap(LibraryEventCodec.encode(event)));
+
+        assertEquals(42, decoded.getSequence());
+        assertEquals(LibraryEvent.Type.BOOK_ADDED, decoded.getType());
+        assertEquals(1700000000000L, decoded.getTimestampMillis());
+        assertEquals(ValidISBN, decoded.getISBN());
+        assertEquals("Les Mis\u00e9rables", decoded.getTitle());
+        assertEquals("Victor Hugo", decoded.getAuthor());
+        assertNull(decoded.getUserId());
+        assertNull(decoded.getUserName());
+    }
+
+// *********************************************************End of LibraryEventCodec Tests***************************************************************
+}
@@ -0,0 +1,159 @@
+package ac.il.bgu.qa.events;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestEvents {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private EventRingBuffer ring;
+    private List<LibraryEvent> received;
+    private Library library;
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        ring = new EventRingBuffer(1024);
+        received = new CopyOnWriteArrayList<>();
+        library = new Library(new InMemoryDatabaseService(), reviewService);
+        library.setEventPublisher(ring);
+    }
+
+    /**
+     * Verifies that every state change of the library reaches a consumer, in order and with its fields.
+     */
+    @Test
+    void givenLibraryWithRing_WhenStateChanges_ThenEventsDeliveredInOrder() throws IOException {
+        EventConsumer consumer = ring.newConsumer((event, endOfBatch) -> received.add(event), "test-consumer");
+        consumer.start();
+
+        library.addBook(new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie"));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+        library.borrowBook(ValidISBN, ValidID);
+        library.returnBook(ValidISBN);
+        consumer.close();
+
+        List<LibraryEvent.Type> types = new ArrayList<>();
+        for (LibraryEvent event : received) {
+            types.add(event.getType());
+        }
+        assertEquals(Arrays.asList(LibraryEvent.Type.BOOK_ADDED, LibraryEvent.Type.USER_REGISTERED,
+                LibraryEvent.Type.BOOK_BORROWED, LibraryEvent.Type.BOOK_RETURNED), types);
+        assertEquals("Dale Carnegie", received.get(0).getAuthor());
+        assertEquals(ValidID, received.get(2).getUserId());
+        assertEquals(3, received.get(3).getSequence());
+        assertEquals(0, consumer.getMissedCount());
+    }
+
+    /**
+     * Verifies that a failed operation publishes nothing.
+     */
+    @Test
+    void givenMissingBook_WhenBorrowBook_ThenNoEventPublished() {
+        library.registerUser(new User("Yali", ValidID, notificationService));
+
+        assertThrows(BookNotFoundException.class, () -> library.borrowBook(ValidISBN, ValidID));
+
+        assertEquals(1, ring.getPublishedCount());
+    }
+
+    /**
+     * Verifies that a stalled consumer does not hold up publishing, and that it skips the overwritten
+     * events and reports them once it resumes.
+     */
+    @Test
+    void givenStalledConsumer_WhenBufferWrapsAround_ThenPublishingContinuesAndGapReported() throws Exception {
+        ring = new EventRingBuffer(8);
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        long[] reportedGap = new long[1];
+        EventConsumer consumer = ring.newConsumer(new EventSink() {
+            @Override
+            public void onEvent(LibraryEvent event, boolean endOfBatch) {
+                received.add(event);
+                stalled.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onOverrun(long missedEvents) {
+                reportedGap[0] += missedEvents;
+            }
+        }, "stalled-consumer");
+        consumer.start();
+
+        ring.publish(LibraryEvent.bookReturned(ValidISBN));
+        stalled.await();
+        for (int i = 1; i < 100; i++) {
+            ring.publish(LibraryEvent.bookReturned(ValidISBN));
+        }
+        resume.countDown();
+        consumer.close();
+
+        assertEquals(100, consumer.getConsumedCount() + consumer.getMissedCount());
+        assertTrue(consumer.getMissedCount() >= 100 - 1 - 8);
+        assertEquals(consumer.getMissedCount(), reportedGap[0]);
+        assertEquals(99, received.get(received.size() - 1).getSequence());
+    }
+
+    /**
+     * Verifies that the file sink writes JSON lines, rotates by size, keeps only the newest files,
+     * and continues the numbering after a restart.
+     */
+    @Test
+    void givenSmallFileLimit_WhenManyEventsWritten_ThenFilesRotated() throws IOException {
+        RotatingFileEventSink sink = new RotatingFileEventSink(tempDir, "events", 300, 2);
+        for (int i = 0; i < 20; i++) {
+            LibraryEvent event = LibraryEvent.bookBorrowed(ValidISBN, ValidID);
+            ring.publish(event);
+            sink.onEvent(event, true);
+        }
+        sink.close();
+
+        List<Path> files = sink.getFiles();
+        assertEquals(2, files.size());
+        List<String> lines = Files.readAllLines(files.get(1), StandardCharsets.UTF_8);
+        assertTrue(lines.get(lines.size() - 1).startsWith("{\"sequence\":19,"));
+        assertTrue(lines.get(0).contains("\"type\":\"BOOK_BORROWED\",\"isbn\":\"" + ValidISBN + "\",\"userId\":\"" + ValidID + "\""));
+        for (Path file : files) {
+            assertTrue(Files.size(file) <= 300);
+        }
+
+        RotatingFileEventSink reopened = new RotatingFileEventSink(tempDir, "events", 300, 2);
+        reopened.close();
+        assertFalse(reopened.getFiles().contains(files.get(0)));
+        assertTrue(reopened.getFiles().contains(files.get(1)));
+    }
+}
@@ -0,0 +1,187 @@
+package ac.il.bgu.qa.eventsourcing;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestEventSourcedDatabaseService {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Opens the service over the log in the temporary directory.
+     *
+     * @param snapshot the snapshot file, or null
+     * @param threads  the number of partitions replayed at once
+     * @return the opened service
+     */
+    private EventSourcedDatabaseService open(Path snapshot, int threads) throws IOException {
+        PartitionedEventLog log = new PartitionedEventLog(tempDir.resolve("log"), 8);
+        return EventSourcedDatabaseService.open(log, snapshot, id -> notificationService, threads);
+    }
+
+    /**
+     * Verifies that the state written through the library is rebuilt from the log after a restart,
+     * with users getting their notification service back.
+     */
+    @Test
+    void givenLibraryWrites_WhenReopened_ThenStateRebuiltFromLog() throws IOException {
+        try (EventSourcedDatabaseService service = open(null, 4)) {
+            Library library = new Library(service, reviewService);
+            library.addBook(new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie"));
+            library.addBook(new Book("9780306406157", "How to Stop Worrying and Start Living", "Dale Carnegie"));
+            library.registerUser(new User("Yali", ValidID, notificationService));
+            library.borrowBook(ValidISBN, ValidID);
+            library.borrowBook("9780306406157", ValidID);
+            library.returnBook("9780306406157");
+        }
+
+        try (EventSourcedDatabaseService service = open(null, 4)) {
+            assertEquals(6, service.getReplayedCount());
+            assertTrue(service.getBookByISBN(ValidISBN).isBorrowed());
+            assertEquals(ValidID, service.getBorrowerId(ValidISBN));
+            assertFalse(service.getBookByISBN("9780306406157").isBorrowed());
+            assertNull(service.getBorrowerId("9780306406157"));
+            assertEquals("Yali", service.getUserById(ValidID).getName());
+            assertSame(notificationService, service.getUserById(ValidID).getNotificationService());
+        }
+    }
+
+    /**
+     * Verifies that reopening from a snapshot replays only the events logged after it.
+     */
+    @Test
+    void givenSnapshot_WhenReopened_ThenOnlyLaterEventsReplayed() throws IOException {
+        Path snapshot = tempDir.resolve("state.snapshot");
+        try (EventSourcedDatabaseService service = open(null, 1)) {
+            service.addBook(ValidISBN, new Book(ValidISBN, "Title", "Author"));
+            service.registerUser(ValidID, new User("Yali", ValidID, notificationService));
+            service.borrowBook(ValidISBN, ValidID);
+            service.snapshot(snapshot);
+            service.returnBook(ValidISBN);
+        }
+
+        try (EventSourcedDatabaseService service = open(snapshot, 1)) {
+            assertEquals(1, service.getReplayedCount());
+            assertFalse(service.getBookByISBN(ValidISBN).isBorrowed());
+            assertEquals("Yali", service.getUserById(ValidID).getName());
+        }
+    }
+
+    /**
+     * Verifies that a multi-copy book, whose copy count the log cannot carry, is rejected rather than
+     * logged and replayed as a single copy.
+     */
+    @Test
+    void givenMultiCopyBook_WhenAddedAndReopened_ThenRejectedAndNotReplayed() throws IOException {
+        try (EventSourcedDatabaseService service = open(null, 1)) {
+            assertThrows(IllegalArgumentException.class, () -> service.addBook(ValidISBN, new Book(ValidISBN, "Title", "Author", 3)));
+            assertNull(service.getBookByISBN(ValidISBN));
+        }
+
+        try (EventSourcedDatabaseService service = open(null, 1)) {
+            assertEquals(0, service.getReplayedCount());
+            assertNull(service.getBookByISBN(ValidISBN));
+        }
+    }
+
+    /**
+     * Verifies that the replay tool runs end to end over a log and writes a snapshot that a later open starts from.
+     */
+    @Test
+    void givenLog_WhenReplayToolRun_ThenSnapshotWritten() throws IOException {
+        Path snapshot = tempDir.resolve("tool.snapshot");
+        try (EventSourcedDatabaseService service = open(null, 1)) {
+            service.addBook(ValidISBN, new Book(ValidISBN, "Title", "Author"));
+            service.registerUser(ValidID, new User("Yali", ValidID, notificationService));
+            service.borrowBook(ValidISBN, ValidID);
+        }
+
+        EventLogReplay.main(new String[] { tempDir.resolve("log").toString(), "8", "2", snapshot.toString() });
+
+        assertTrue(Files.exists(snapshot));
+        try (EventSourcedDatabaseService service = open(snapshot, 1)) {
+            assertEquals(0, service.getReplayedCount());
+            assertTrue(service.getBookByISBN(ValidISBN).isBorrowed());
+        }
+    }
+
+    /**
+     * Verifies that a record torn by a crash is cut off, and that numbering continues after the
+     * last intact record.
+     */
+    @Test
+    void givenTornRecord_WhenReopened_ThenTailDiscardedAndAppendingContinues() throws IOException {
+        try (EventSourcedDatabaseService service = open(null, 2)) {
+            service.addBook(ValidISBN, new Book(ValidISBN, "Title", "Author"));
+        }
+        try (Stream<Path> files = Files.list(tempDir.resolve("log"))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.write(file, new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+            }
+        }
+
+        try (EventSourcedDatabaseService service = open(null, 2)) {
+            assertEquals(1, service.getReplayedCount());
+            service.borrowBook(ValidISBN, ValidID);
+        }
+        try (EventSourcedDatabaseService service = open(null, 2)) {
+            assertEquals(2, service.getReplayedCount());
+            assertEquals(ValidID, service.getBorrowerId(ValidISBN));
+        }
+    }
+
+    /**
+     * Verifies that replaying the partitions in parallel rebuilds exactly the state of a sequential replay.
+     */
+    @Test
+    void givenManyEvents_WhenReplayedInParallel_ThenSameStateAsSequential() throws IOException {
+        try (EventSourcedDatabaseService service = open(null, 1)) {
+            for (int i = 0; i < 2000; i++) {
+                String ISBN = String.format("978%010d", i);
+                service.addBook(ISBN, new Book(ISBN, "Title " + i, "Author"));
+                if (i % 3 == 0) {
+                    service.borrowBook(ISBN, ValidID);
+                }
+                if (i % 6 == 0) {
+                    service.returnBook(ISBN);
+                }
+            }
+        }
+
+        try (EventSourcedDatabaseService sequential = open(null, 1);
+             EventSourcedDatabaseService parallel = open(null, 8)) {
+            assertEquals(sequential.getReplayedCount(), parallel.getReplayedCount());
+            for (int i = 0; i < 2000; i++) {
+                String ISBN = String.format("978%010d", i);
+                assertEquals(sequential.getBorrowerId(ISBN), parallel.getBorrowerId(ISBN));
+                assertEquals(i % 3 == 0 && i % 6 != 0, parallel.getBookByISBN(ISBN).isBorrowed());
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ac.il.bgu.qa.filter;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.LibraryOutcome;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.metrics.InMemoryMetricsRecorder;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBloomFilter {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private BloomFilter isbnFilter;
+    private BloomFilter userIdFilter;
+    private Library library;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        isbnFilter = new BloomFilter(1000, 0.01);
+        userIdFilter = new BloomFilter(1000, 0.01);
+        library = new Library(databaseService, reviewService);
+        library.setMembershipFilters(isbnFilter, userIdFilter);
+    }
+
+    /**
+     * Verifies that every added key is found and that the false-positive rate stays near the configured one.
+     */
+    @Test
+    void givenAddedKeys_WhenQueried_ThenNoFalseNegativesAndFewFalsePositives() {
+        for (int i = 0; i < 1000; i++) {
+            isbnFilter.add(String.format("978%010d", i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(isbnFilter.mightContain(String.format("978%010d", i)));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (isbnFilter.mightContain(String.format("978%010d", i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertTrue(isbnFilter.getEstimatedFalsePositiveRate() < 0.03);
+        assertEquals(1000, isbnFilter.getInsertionCount());
+        assertEquals(isbnFilter.getBitCount() / 8, isbnFilter.getMemoryBytes());
+    }
+
+    /**
+     * Verifies that invalid configurations are rejected.
+     */
+    @Test
+    void givenInvalidConfiguration_WhenConstructed_ThenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+
+    /**
+     * Verifies that books and users unknown to the filters are reported missing without a database lookup,
+     * and that the saved lookups are counted.
+     */
+    @Test
+    void givenUnknownKeys_WhenBorrowAndGetBook_ThenDatabaseNotQueried() {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        library.setMetrics(metrics);
+
+        assertEquals(LibraryOutcome.BOOK_NOT_FOUND, library.tryBorrowBook(ValidISBN, ValidID));
+        assertThrows(BookNotFoundException.class, () -> library.getBookByISBN(ValidISBN, ValidID));
+        assertEquals(LibraryOutcome.BOOK_NOT_FOUND, library.tryReturnBook(ValidISBN));
+
+        isbnFilter.add(ValidISBN);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(new Book(ValidISBN, "Title", "Author"));
+        assertEquals(LibraryOutcome.USER_NOT_REGISTERED, library.tryBorrowBook(ValidISBN, ValidID));
+
+        verify(databaseService, times(1)).getBookByISBN(ValidISBN);
+        verify(databaseService, never()).getUserById(anyString());
+        assertEquals(3, metrics.getCount("library.filter.isbn.negative"));
+        assertEquals(1, metrics.getCount("library.filter.userId.negative"));
+    }
+
+    /**
+     * Verifies that books and users added through the library are added to the filters,
+     * skipping the existence checks the filters rule out.
+     */
+    @Test
+    void givenAddedBookAndUser_WhenBorrowBook_ThenFiltersKeptInSync() {
+        Book book = new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie");
+        User user = new User("Yali", ValidID, notificationService);
+
+        library.addBook(book);
+        library.registerUser(user);
+        verify(databaseService, never()).getBookByISBN(anyString());
+        verify(databaseService, never()).getUserById(anyString());
+        assertTrue(isbnFilter.mightContain(ValidISBN));
+        assertTrue(userIdFilter.mightContain(ValidID));
+
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+        library.borrowBook(ValidISBN, ValidID);
+
+        verify(databaseService, times(1)).borrowBook(ValidISBN, ValidID);
+        assertThrows(IllegalArgumentException.class, () -> library.addBook(new Book(ValidISBN, "Other", "Author")));
+    }
+}
@@ -0,0 +1,139 @@
+package ac.il.bgu.qa.limit;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.LibraryOverloadedException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAdaptiveConcurrencyLimiter {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    // Fake clock, advanced by the tests
+    private AtomicLong now;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        now = new AtomicLong();
+        limiter = new AdaptiveConcurrencyLimiter(10, 2, 20, 1_000, 0.5, now::get);
+    }
+
+    /**
+     * Verifies that fast operations at high utilisation raise the limit and slow operations halve it.
+     */
+    @Test
+    void givenFastThenSlowOperations_WhenReleased_ThenLimitIncreasesThenDecreases() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            permits.add(limiter.tryAcquire(Priority.CRITICAL));
+        }
+        now.addAndGet(500);
+        for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+            permit.release();
+        }
+        assertEquals(12, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        AdaptiveConcurrencyLimiter.Permit slow = limiter.tryAcquire(Priority.CRITICAL);
+        now.addAndGet(5_000);
+        slow.release();
+        slow.release();
+        assertEquals(6, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * Verifies that lower priorities are rejected once their share of the limit is in use,
+     * while critical operations may use the whole limit.
+     */
+    @Test
+    void givenBusyLimiter_WhenAcquire_ThenLowerPrioritiesRejectedFirst() {
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(limiter.tryAcquire(Priority.CRITICAL));
+        }
+        assertNull(limiter.tryAcquire(Priority.OPTIONAL));
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(limiter.tryAcquire(Priority.STANDARD));
+        }
+        assertNull(limiter.tryAcquire(Priority.STANDARD));
+        assertNotNull(limiter.tryAcquire(Priority.CRITICAL));
+        assertNull(limiter.tryAcquire(Priority.CRITICAL));
+
+        assertEquals(10, limiter.getAdmittedCount());
+        assertEquals(3, limiter.getRejectedCount());
+    }
+
+    /**
+     * Verifies that an overloaded library skips the optional notification in getBookByISBN,
+     * rejects borrowing once the limit is reached, and releases the permits it takes.
+     */
+    @Test
+    void givenOverloadedLibrary_WhenGetBookAndBorrow_ThenWorkShed() {
+        Library library = new Library(databaseService, reviewService);
+        library.setConcurrencyLimiter(limiter);
+        Book book = new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie");
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(new User("Yali", ValidID, notificationService));
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(Priority.CRITICAL);
+        }
+        assertSame(book, library.getBookByISBN(ValidISBN, ValidID));
+        verify(reviewService, never()).getReviewsForBook(anyString());
+        assertEquals(5, limiter.getInFlight());
+
+        while (limiter.tryAcquire(Priority.CRITICAL) != null) {
+            // Fill the remaining limit.
+        }
+        assertThrows(LibraryOverloadedException.class, () -> library.borrowBook(ValidISBN, ValidID));
+        verify(databaseService, never()).borrowBook(anyString(), anyString());
+        assertEquals(limiter.getLimit(), limiter.getInFlight());
+    }
+
+    /**
+     * Verifies that getBookByISBN releases its permit before the optional notification, so slow reviews
+     * hold and shrink the limit only through the notification's own permit.
+     */
+    @Test
+    void givenSlowReviews_WhenGetBookByISBN_ThenLookupPermitReleasedBeforeNotification() {
+        Library library = new Library(databaseService, reviewService);
+        library.setConcurrencyLimiter(limiter);
+        Book book = new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie");
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(new User("Yali", ValidID, notificationService));
+        AtomicInteger inFlightDuringReviews = new AtomicInteger();
+        when(reviewService.getReviewsForBook(ValidISBN)).thenAnswer(invocation -> {
+            inFlightDuringReviews.set(limiter.getInFlight());
+            now.addAndGet(5_000);
+            return Collections.singletonList("Great book");
+        });
+
+        assertSame(book, library.getBookByISBN(ValidISBN, ValidID));
+
+        assertEquals(1, inFlightDuringReviews.get());
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
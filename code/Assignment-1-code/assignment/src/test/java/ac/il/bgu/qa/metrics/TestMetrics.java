@@ -0,0 +1,122 @@
+package ac.il.bgu.qa.metrics;
+
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.errors.ReviewException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMetrics {
+
+    private InMemoryMetricsRecorder metrics;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        metrics = new InMemoryMetricsRecorder();
+    }
+
+// *********************************************************Start of LatencyHistogram Tests***************************************************************
+
+    /**
+     * Verifies that an empty histogram reports zero for every statistic.
+     */
+    @Test
+    void givenEmptyHistogram_WhenQueried_ThenReturnZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    /**
+     * Verifies that small values are counted exactly and percentiles pick the right rank.
+     */
+    @Test
+    void givenSmallValues_WhenGetValueAtPercentile_ThenReturnExactValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMean(), 0.001);
+    }
+
+    /**
+     * Verifies that large values are reported within the histogram's relative precision.
+     */
+    @Test
+    void givenLargeValue_WhenGetValueAtPercentile_ThenWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_234_567);
+        histogram.record(7_654_321);
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(Math.abs(median - 1_234_567) <= 1_234_567 / 60, "median was " + median);
+        assertEquals(7_654_321, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Verifies that every bucket's upper bound maps back to the same bucket.
+     */
+    @Test
+    void givenBucketUpperBounds_WhenBucketIndex_ThenSameBucket() {
+        for (int i = 0; i < LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_VALUE); i++) {
+            assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.highestEquivalentValue(i)));
+            assertEquals(i + 1, LatencyHistogram.bucketIndex(LatencyHistogram.highestEquivalentValue(i) + 1));
+        }
+    }
+
+    /**
+     * Verifies that merging histograms adds their counts together.
+     */
+    @Test
+    void givenTwoHistograms_WhenAdd_ThenCountsMerged() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.recordCount(1000, 3);
+        first.add(second);
+        assertEquals(4, first.getCount());
+        assertEquals(1000, first.getMax());
+    }
+
+// *********************************************************End of LatencyHistogram Tests***************************************************************
+
+// *********************************************************Start of Metered services Tests***************************************************************
+
+    /**
+     * Verifies that a metered database service delegates calls and times them.
+     */
+    @Test
+    void givenMeteredDatabaseService_WhenGetBookByISBN_ThenDelegatedAndTimed() {
+        DatabaseService metered = new MeteredDatabaseService(databaseService, metrics);
+        metered.getBookByISBN("123");
+        metered.getBookByISBN("123");
+        verify(databaseService, times(2)).getBookByISBN("123");
+        assertEquals(2, metrics.getHistogram("db.getBookByISBN").getCount());
+    }
+
+    /**
+     * Verifies that a metered review service counts failures by exception type and rethrows them.
+     */
+    @Test
+    void givenFailingReviewService_WhenGetReviewsForBook_ThenFailureCounted() {
+        doThrow(new ReviewException("down")).when(reviewService).getReviewsForBook(anyString());
+        ReviewService metered = new MeteredReviewService(reviewService, metrics);
+        assertThrows(ReviewException.class, () -> metered.getReviewsForBook("123"));
+        assertEquals(1, metrics.getCount("review.getReviewsForBook.failure.ReviewException"));
+        assertEquals(1, metrics.getHistogram("review.getReviewsForBook").getCount());
+    }
+
+// *********************************************************End of Metered services Tests***************************************************************
+}
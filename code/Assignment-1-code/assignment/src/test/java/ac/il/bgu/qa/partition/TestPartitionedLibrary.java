@@ -0,0 +1,182 @@
+package ac.il.bgu.qa.partition;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.LibraryOutcome;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPartitionedLibrary {
+
+    private final String ValidID = "617865027123";
+
+    private InMemoryDatabaseService databaseService;
+    private Library library;
+    private PartitionedLibrary partitioned;
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    // Builds a valid ISBN-13 from a number.
+    private static String isbn(int n) {
+        String prefix = "978" + String.format("%09d", n);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = prefix.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : digit * 3;
+        }
+        return prefix + (10 - sum % 10) % 10;
+    }
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        databaseService = new InMemoryDatabaseService();
+        library = new Library(databaseService, reviewService);
+        library.registerUser(new User("Yali", ValidID, notificationService));
+        for (int i = 0; i < 50; i++) {
+            library.addBook(new Book(isbn(i), "Title " + i, "Author"));
+        }
+        partitioned = new PartitionedLibrary(library, 4, 1024);
+    }
+
+    @AfterEach
+    public void tearDown_AfterEach() {
+        partitioned.close();
+    }
+
+    /**
+     * Verifies that many concurrent borrows of the same book are serialized on its partition,
+     * so exactly one succeeds.
+     */
+    @Test
+    void givenConcurrentBorrowsOfOneBook_WhenRouted_ThenExactlyOneSucceeds() {
+        List<CompletableFuture<LibraryOutcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            outcomes.add(partitioned.borrowBook(isbn(7), ValidID));
+        }
+
+        long successes = outcomes.stream().map(CompletableFuture::join).filter(LibraryOutcome::isSuccess).count();
+        assertEquals(1, successes);
+        assertEquals(ValidID, databaseService.getBorrowerId(isbn(7)));
+    }
+
+    /**
+     * Verifies that ISBNs, whose string hashes share their low bits, are still spread over every partition.
+     */
+    @Test
+    void givenManyIsbns_WhenRouted_ThenSpreadOverAllPartitions() {
+        int[] counts = new int[partitioned.getPartitionCount()];
+        for (int i = 0; i < 4000; i++) {
+            counts[partitioned.partitionOf(isbn(i))]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 700, "partition got " + count);
+        }
+    }
+
+    /**
+     * Verifies that a batch borrow across partitions borrows every book when all are available.
+     */
+    @Test
+    void givenAvailableBooks_WhenBatchBorrowed_ThenAllBorrowed() throws Exception {
+        List<String> ISBNs = Arrays.asList(isbn(1), isbn(2), isbn(3), isbn(4), isbn(5));
+
+        Map<String, LibraryOutcome> outcomes = partitioned.borrowBooks(ISBNs, ValidID).get(5, TimeUnit.SECONDS);
+
+        assertEquals(ISBNs, new ArrayList<>(outcomes.keySet()));
+        assertTrue(outcomes.values().stream().allMatch(LibraryOutcome::isSuccess));
+        for (String ISBN : ISBNs) {
+            assertEquals(ValidID, databaseService.getBorrowerId(ISBN));
+        }
+        assertEquals(0, partitioned.getCompensationCount());
+    }
+
+    /**
+     * Verifies that when one book of a batch is already borrowed, the books borrowed for the batch
+     * are returned again.
+     */
+    @Test
+    void givenOneBorrowedBook_WhenBatchBorrowed_ThenOthersCompensated() throws Exception {
+        library.borrowBook(isbn(3), ValidID);
+        List<String> ISBNs = Arrays.asList(isbn(1), isbn(2), isbn(3));
+
+        Map<String, LibraryOutcome> outcomes = partitioned.borrowBooks(ISBNs, ValidID).get(5, TimeUnit.SECONDS);
+
+        assertEquals(LibraryOutcome.SUCCESS, outcomes.get(isbn(1)));
+        assertEquals(LibraryOutcome.BOOK_ALREADY_BORROWED, outcomes.get(isbn(3)));
+        assertEquals(2, partitioned.getCompensationCount());
+        assertFalse(databaseService.getBookByISBN(isbn(1)).isBorrowed());
+        assertFalse(databaseService.getBookByISBN(isbn(2)).isBorrowed());
+        assertNull(databaseService.getBorrowerId(isbn(1)));
+        assertTrue(databaseService.getBookByISBN(isbn(3)).isBorrowed());
+    }
+
+    /**
+     * Verifies that a batch whose last borrow fails while the library is closing still gets its
+     * compensating returns run, on a partition whose worker may already have exited.
+     */
+    @Test
+    void givenBatchFailingDuringClose_WhenClosed_ThenCompensationStillRuns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        String first = isbn(1);
+        String blocked = null;
+        PartitionedLibrary probe = new PartitionedLibrary(library, 2, 16);
+        for (int i = 2; blocked == null && i < 50; i++) {
+            if (probe.partitionOf(isbn(i)) != probe.partitionOf(first)) {
+                blocked = isbn(i);
+            }
+        }
+        probe.close();
+        assertNotNull(blocked);
+        String slow = blocked;
+        Library blocking = new Library(databaseService, reviewService) {
+            @Override
+            public LibraryOutcome tryBorrowBook(String ISBN, String userId) {
+                if (ISBN.equals(slow)) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.tryBorrowBook(ISBN, userId);
+            }
+        };
+        library.borrowBook(slow, ValidID);
+        PartitionedLibrary closing = new PartitionedLibrary(blocking, 2, 16);
+
+        CompletableFuture<Map<String, LibraryOutcome>> batch = closing.borrowBooks(Arrays.asList(first, slow), ValidID);
+        assertEquals(ValidID, CompletableFuture.supplyAsync(() -> {
+            while (databaseService.getBorrowerId(first) == null) {
+                Thread.yield();
+            }
+            return databaseService.getBorrowerId(first);
+        }).get(5, TimeUnit.SECONDS));
+        Thread closer = new Thread(closing::close);
+        closer.start();
+        Thread.sleep(50);
+        release.countDown();
+
+        Map<String, LibraryOutcome> outcomes = batch.get(5, TimeUnit.SECONDS);
+        closer.join(5000);
+        assertFalse(closer.isAlive());
+        assertEquals(LibraryOutcome.BOOK_ALREADY_BORROWED, outcomes.get(slow));
+        assertFalse(databaseService.getBookByISBN(first).isBorrowed());
+        assertNull(databaseService.getBorrowerId(first));
+    }
+}
@@ -0,0 +1,125 @@
+package ac.il.bgu.qa.popularity;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPopularityTracker {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private PopularityTracker tracker;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        tracker = new PopularityTracker(3, 1024, 4, 0);
+    }
+
+    @AfterEach
+    public void tearDown_AfterEach() {
+        tracker.close();
+    }
+
+    /**
+     * Verifies that the most frequent keys are reported in order among a long tail of rare keys,
+     * and that estimates never undercount.
+     */
+    @Test
+    void givenSkewedStream_WhenGetTopK_ThenHeavyHittersReportedInOrder() {
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 4; i++) {
+                tracker.record("hot");
+            }
+            tracker.record("warm");
+            tracker.record("warm");
+            tracker.record("mild");
+            tracker.record("rare-" + round);
+        }
+
+        assertEquals(Arrays.asList("hot", "warm", "mild"), new ArrayList<>(tracker.getTopK().keySet()));
+        assertTrue(tracker.estimate("hot") >= 400);
+        assertTrue(tracker.estimate("rare-7") >= 1);
+        assertEquals(1024 * 4 * 8, tracker.getSketchMemoryBytes());
+    }
+
+    /**
+     * Verifies that a decay halves counts, so recent keys overtake old ones.
+     */
+    @Test
+    void givenDecay_WhenRecord_ThenOlderCountsHalved() {
+        for (int i = 0; i < 100; i++) {
+            tracker.record("old");
+        }
+        tracker.decay();
+        tracker.record("new");
+
+        assertEquals(50, tracker.estimate("old"));
+        assertEquals(50, tracker.getTopK().get("old").longValue());
+        for (int i = 0; i < 60; i++) {
+            tracker.record("new");
+        }
+        assertEquals("new", tracker.getTopK().keySet().iterator().next());
+    }
+
+    /**
+     * Verifies that the decay runs on the scheduler once the interval passes, without any key being recorded.
+     */
+    @Test
+    void givenDecayInterval_WhenElapsed_ThenCountsHalvedInBackground() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (PopularityTracker decaying = new PopularityTracker(3, 1024, 4, 20, scheduler)) {
+            for (int i = 0; i < 100; i++) {
+                decaying.record("old");
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (decaying.estimate("old") == 100 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(decaying.estimate("old") < 100);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies that the library records successful borrows and lookups in their trackers.
+     */
+    @Test
+    void givenTrackers_WhenBorrowAndGetBook_ThenIsbnCounted() {
+        PopularityTracker borrows = new PopularityTracker(10, 256, 4, 0);
+        PopularityTracker lookups = new PopularityTracker(10, 256, 4, 0);
+        Library library = new Library(databaseService, reviewService);
+        library.setPopularityTrackers(borrows, lookups);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(new Book(ValidISBN, "Title", "Author"));
+        when(databaseService.getUserById(ValidID)).thenReturn(new User("Yali", ValidID, notificationService));
+
+        library.getBookByISBN(ValidISBN, ValidID);
+        library.borrowBook(ValidISBN, ValidID);
+        library.tryBorrowBook(ValidISBN, ValidID);
+
+        Map<String, Long> topBorrowed = borrows.getTopK();
+        assertEquals(1, topBorrowed.get(ValidISBN).longValue());
+        assertEquals(1, lookups.estimate(ValidISBN));
+    }
+}
@@ -0,0 +1,239 @@
+package ac.il.bgu.qa.reactive;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestReactiveLibrary {
+
+    private final String ValidID = "617865027123";
+
+    private ExecutorService executor;
+    private Library library;
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    /**
+     * Publishes a list of commands as they are requested, tracking how many are requested but not yet
+     * processed by the library.
+     */
+    private static final class CommandPublisher implements Flow.Publisher<LibraryCommand> {
+        private final List<LibraryCommand> commands;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final RuntimeException failure;
+        private volatile boolean cancelled;
+
+        CommandPublisher(List<LibraryCommand> commands, RuntimeException failure) {
+            this.commands = commands;
+            this.failure = failure;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super LibraryCommand> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    if (wip.getAndIncrement() != 0) {
+                        return;
+                    }
+                    do {
+                        while (!cancelled && requested.get() > 0 && next.get() < commands.size()) {
+                            requested.decrementAndGet();
+                            subscriber.onNext(commands.get(next.getAndIncrement()));
+                        }
+                        if (!cancelled && next.get() == commands.size()) {
+                            cancelled = true;
+                            if (failure != null) {
+                                subscriber.onError(failure);
+                            } else {
+                                subscriber.onComplete();
+                            }
+                        }
+                    } while (wip.decrementAndGet() != 0);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Collects results, requesting them in batches.
+     */
+    private static final class ResultCollector implements Flow.Subscriber<LibraryResult> {
+        private final int batch;
+        private final List<LibraryResult> results = new CopyOnWriteArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        ResultCollector(int batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onNext(LibraryResult item) {
+            results.add(item);
+            if (batch > 0 && results.size() % batch == 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Builds the n-th valid ISBN-13.
+     *
+     * @param n the number of the ISBN
+     * @return a valid ISBN-13
+     */
+    private static String isbn(int n) {
+        String prefix = "978" + String.format("%09d", n);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = prefix.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : digit * 3;
+        }
+        return prefix + (10 - sum % 10) % 10;
+    }
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newFixedThreadPool(4);
+        library = new Library(new InMemoryDatabaseService(), reviewService);
+        library.registerUser(new User("Yali", ValidID, notificationService));
+        for (int i = 0; i < 50; i++) {
+            library.addBook(new Book(isbn(i), "Title " + i, "Author"));
+        }
+    }
+
+    @AfterEach
+    public void tearDown_AfterEach() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verifies that every command yields a result, failed operations included, and that no more
+     * commands than the in-flight limit are ever outstanding.
+     */
+    @Test
+    void givenCommandStream_WhenProcessed_ThenOneResultPerCommandWithinInFlightLimit() throws InterruptedException {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Library counting = new Library(new InMemoryDatabaseService(), reviewService) {
+            @Override
+            public void borrowBook(String ISBN, String userId) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    library.borrowBook(ISBN, userId);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        List<LibraryCommand> commands = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            commands.add(LibraryCommand.borrow(isbn(i), ValidID));
+        }
+        ReactiveLibrary reactive = new ReactiveLibrary(counting, executor, 3);
+        ResultCollector collector = new ResultCollector(10);
+        reactive.subscribe(collector);
+        new CommandPublisher(commands, null).subscribe(reactive);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+        assertNull(collector.error);
+        assertEquals(60, collector.results.size());
+        long failures = collector.results.stream().filter(result -> !result.isSuccess()).count();
+        assertEquals(10, failures);
+        assertTrue(collector.results.stream().filter(result -> !result.isSuccess())
+                .allMatch(result -> result.getError() instanceof BookNotFoundException));
+        assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+    }
+
+    /**
+     * Verifies that no command is taken from upstream before results are requested,
+     * and only as many as were requested afterwards.
+     */
+    @Test
+    void givenNoDemand_WhenSubscribed_ThenNoCommandsRequested() throws InterruptedException {
+        List<LibraryCommand> commands = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            commands.add(LibraryCommand.getBook(isbn(i), ValidID));
+        }
+        CommandPublisher publisher = new CommandPublisher(commands, null);
+        ReactiveLibrary reactive = new ReactiveLibrary(library, executor, 8);
+        ResultCollector collector = new ResultCollector(0);
+        reactive.subscribe(collector);
+        publisher.subscribe(reactive);
+
+        assertEquals(0, publisher.next.get());
+
+        collector.subscription.request(2);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, publisher.next.get());
+        assertEquals(2, collector.results.size());
+        assertEquals("Title 0", collector.results.stream()
+                .filter(result -> result.getCommand() == commands.get(0)).findFirst().get().getBook().getTitle());
+    }
+
+    /**
+     * Verifies that an upstream failure is passed on to the subscriber.
+     */
+    @Test
+    void givenFailingUpstream_WhenProcessed_ThenErrorSignalled() throws InterruptedException {
+        List<LibraryCommand> commands = new ArrayList<>();
+        commands.add(LibraryCommand.returnBook(isbn(1)));
+        ReactiveLibrary reactive = new ReactiveLibrary(library, executor, 4);
+        ResultCollector collector = new ResultCollector(10);
+        reactive.subscribe(collector);
+        new CommandPublisher(commands, new IllegalStateException("gateway closed")).subscribe(reactive);
+
+        assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+        assertEquals("gateway closed", collector.error.getMessage());
+    }
+}
@@ -0,0 +1,129 @@
+package ac.il.bgu.qa.replication;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestReplicatedDatabaseService {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private InMemoryDatabaseService primary;
+    private InMemoryDatabaseService firstReplica;
+    private InMemoryDatabaseService secondReplica;
+    private AtomicLong clock;
+    private ReplicatedDatabaseService replicated;
+    private Library library;
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        primary = new InMemoryDatabaseService();
+        firstReplica = new InMemoryDatabaseService();
+        secondReplica = new InMemoryDatabaseService();
+        clock = new AtomicLong();
+        replicated = new ReplicatedDatabaseService(primary, Arrays.asList(firstReplica, secondReplica), 1000, clock::get);
+        library = new Library(replicated, reviewService);
+        library.setLookupService(replicated.replicaReads());
+    }
+
+    /**
+     * Simulates the replication process catching up with the primary for one book.
+     *
+     * @param ISBN the ISBN of the replicated book
+     */
+    private void replicate(String ISBN) {
+        Book book = primary.getBookByISBN(ISBN);
+        Book copy = new Book(book.getISBN(), book.getTitle(), book.getAuthor());
+        if (book.isBorrowed()) {
+            copy.borrow();
+        }
+        firstReplica.addBook(ISBN, copy);
+        secondReplica.addBook(ISBN, copy);
+    }
+
+    /**
+     * Verifies that lookups are spread over the replicas in turn once the read-your-writes window has passed.
+     */
+    @Test
+    void givenReplicatedBook_WhenLookedUpRepeatedly_ThenReplicasUsedInTurn() {
+        DatabaseService first = spy(new InMemoryDatabaseService());
+        DatabaseService second = spy(new InMemoryDatabaseService());
+        replicated = new ReplicatedDatabaseService(primary, Arrays.asList(first, second), 1000, clock::get);
+
+        for (int i = 0; i < 4; i++) {
+            replicated.replicaReads().getBookByISBN(ValidISBN);
+        }
+
+        verify(first, times(2)).getBookByISBN(ValidISBN);
+        verify(second, times(2)).getBookByISBN(ValidISBN);
+        assertEquals(4, replicated.getReplicaLookupCount());
+    }
+
+    /**
+     * Verifies that a book just added is read from the primary while the replicas lag,
+     * and from the replicas after the window.
+     */
+    @Test
+    void givenLaggingReplicas_WhenBookJustAdded_ThenReadFromPrimaryUntilWindowPasses() {
+        library.addBook(new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie"));
+
+        assertNotNull(replicated.replicaReads().getBookByISBN(ValidISBN));
+        assertEquals(1, replicated.getPrimaryLookupCount());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertNull(replicated.replicaReads().getBookByISBN(ValidISBN));
+        assertEquals(1, replicated.getReplicaLookupCount());
+    }
+
+    /**
+     * Verifies that the session that just borrowed a book sees it as borrowed, even though the replicas
+     * still show it available, while the borrow itself checks the primary.
+     */
+    @Test
+    void givenLaggingReplicas_WhenBookJustBorrowed_ThenLookupSeesOwnWrite() {
+        library.addBook(new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie"));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+        replicate(ValidISBN);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        library.borrowBook(ValidISBN, ValidID);
+
+        assertThrows(BookAlreadyBorrowedException.class, () -> library.getBookByISBN(ValidISBN, ValidID));
+        assertFalse(firstReplica.getBookByISBN(ValidISBN).isBorrowed());
+        assertThrows(BookAlreadyBorrowedException.class, () -> library.borrowBook(ValidISBN, ValidID));
+    }
+
+    /**
+     * Verifies that a failing replica is skipped and the lookup answered by the primary.
+     */
+    @Test
+    void givenFailingReplica_WhenLookedUp_ThenPrimaryAnswers() {
+        DatabaseService failing = mock(DatabaseService.class);
+        when(failing.getUserById(ValidID)).thenThrow(new IllegalStateException("replica down"));
+        replicated = new ReplicatedDatabaseService(primary, Arrays.asList(failing), 1000, clock::get);
+        User user = new User("Yali", ValidID, notificationService);
+        primary.registerUser(ValidID, user);
+
+        assertSame(user, replicated.replicaReads().getUserById(ValidID));
+        assertEquals(1, replicated.getFailoverCount());
+    }
+}
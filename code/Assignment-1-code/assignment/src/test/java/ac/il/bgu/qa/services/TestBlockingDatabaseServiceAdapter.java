@@ -0,0 +1,118 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBlockingDatabaseServiceAdapter {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private BlockingDatabaseServiceAdapter adapter;
+    private Book book;
+    private User user;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        adapter = new BlockingDatabaseServiceAdapter(databaseService, 4, 16);
+        book = new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie");
+        user = new User("Yali", ValidID, notificationService);
+    }
+
+    @AfterEach
+    public void tearDown_AfterEach() {
+        adapter.close();
+    }
+
+    /**
+     * Verifies that futures complete with the blocking service's results and failures.
+     */
+    @Test
+    void givenBlockingService_WhenCalledThroughAdapter_ThenFuturesCarryResults() throws Exception {
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        doThrow(new IllegalStateException("write failed")).when(databaseService).returnBook(ValidISBN);
+
+        assertSame(book, adapter.getBookByISBN(ValidISBN).get(5, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> adapter.returnBook(ValidISBN).get(5, TimeUnit.SECONDS));
+        assertEquals("write failed", failure.getCause().getMessage());
+    }
+
+    /**
+     * Verifies that calls beyond the pool and queue capacity fail at once instead of queueing.
+     */
+    @Test
+    void givenSaturatedAdapter_WhenCalled_ThenFutureRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(databaseService.getUserById(ValidID)).thenAnswer(invocation -> {
+            release.await();
+            return user;
+        });
+        adapter.close();
+        adapter = new BlockingDatabaseServiceAdapter(databaseService, 1, 1);
+
+        CompletableFuture<User> running = adapter.getUserById(ValidID);
+        CompletableFuture<User> queued = adapter.getUserById(ValidID);
+        CompletableFuture<User> rejected = adapter.getUserById(ValidID);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        release.countDown();
+        assertSame(user, running.get(5, TimeUnit.SECONDS));
+        assertSame(user, queued.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Verifies that the library fetches the book and the user at the same time when an async lookup
+     * service is configured: the book lookup completes only once the user lookup has started.
+     */
+    @Test
+    void givenAsyncLookupService_WhenBorrowBook_ThenBookAndUserFetchedConcurrently() {
+        CountDownLatch userLookupStarted = new CountDownLatch(1);
+        when(databaseService.getUserById(ValidID)).thenAnswer(invocation -> {
+            userLookupStarted.countDown();
+            return user;
+        });
+        when(databaseService.getBookByISBN(ValidISBN)).thenAnswer(invocation ->
+                userLookupStarted.await(5, TimeUnit.SECONDS) ? book : null);
+        Library library = new Library(databaseService, reviewService);
+        library.setAsyncLookupService(adapter);
+
+        library.borrowBook(ValidISBN, ValidID);
+
+        assertTrue(book.isBorrowed());
+        verify(databaseService, times(1)).borrowBook(ValidISBN, ValidID);
+    }
+
+    /**
+     * Verifies that failures are reported in the same order as with sequential lookups:
+     * a missing book is reported even when the user is missing too.
+     */
+    @Test
+    void givenMissingBookAndUser_WhenBorrowBookWithAsyncLookups_ThenBookNotFoundReported() {
+        Library library = new Library(databaseService, reviewService);
+        library.setAsyncLookupService(adapter);
+
+        assertThrows(BookNotFoundException.class, () -> library.borrowBook(ValidISBN, ValidID));
+        verify(databaseService, never()).borrowBook(anyString(), anyString());
+    }
+}
@@ -0,0 +1,113 @@
+package ac.il.bgu.qa.services;
+
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHedgingReviewService {
+
+    private final String ValidISBN = "3790792363427";
+
+    private final List<String> primaryReviews = Collections.singletonList("From the primary");
+    private final List<String> secondaryReviews = Collections.singletonList("From the secondary");
+
+    private ExecutorService executor;
+    // Released to let a slow primary request finish
+    private CountDownLatch unblock;
+    // Whether the primary answers slowly
+    private AtomicBoolean slow;
+
+    @Mock
+    private ReviewService primary;
+    @Mock
+    private ReviewService secondary;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newCachedThreadPool();
+        unblock = new CountDownLatch(1);
+        slow = new AtomicBoolean();
+        when(primary.getReviewsForBook(ValidISBN)).thenAnswer(invocation -> {
+            if (slow.get()) {
+                unblock.await(10, TimeUnit.SECONDS);
+            }
+            return primaryReviews;
+        });
+        when(secondary.getReviewsForBook(ValidISBN)).thenReturn(secondaryReviews);
+    }
+
+    @AfterEach
+    public void tearDown_AfterEach() {
+        unblock.countDown();
+        executor.shutdownNow();
+    }
+
+    // Makes enough fast requests for the service to start hedging.
+    private void warmUp(HedgingReviewService service) {
+        for (int i = 0; i < HedgingReviewService.MIN_SAMPLES; i++) {
+            assertSame(primaryReviews, service.getReviewsForBook(ValidISBN));
+        }
+        assertTrue(service.getHedgeDelayNanos() >= 0);
+    }
+
+    /**
+     * Verifies that no request is hedged before enough latencies were observed.
+     */
+    @Test
+    void givenNoObservedLatency_WhenGetReviews_ThenNotHedged() {
+        HedgingReviewService service = new HedgingReviewService(primary, secondary, executor, 95, 1.0);
+
+        assertEquals(-1, service.getHedgeDelayNanos());
+        assertSame(primaryReviews, service.getReviewsForBook(ValidISBN));
+        verify(secondary, never()).getReviewsForBook(anyString());
+    }
+
+    /**
+     * Verifies that a slow primary request is hedged, the secondary's answer returned,
+     * and the primary request abandoned and its service closed.
+     */
+    @Test
+    void givenSlowPrimary_WhenGetReviews_ThenSecondaryWinsAndPrimaryClosed() {
+        HedgingReviewService service = new HedgingReviewService(primary, secondary, executor, 95, 0.05);
+        warmUp(service);
+        slow.set(true);
+
+        assertSame(secondaryReviews, service.getReviewsForBook(ValidISBN));
+
+        verify(primary, times(1)).close();
+        verify(secondary, never()).close();
+        assertEquals(1, service.getHedgeCount());
+        assertEquals(1, service.getHedgeWinCount());
+    }
+
+    /**
+     * Verifies that once the budget is used up slow requests wait for the primary instead of being hedged.
+     */
+    @Test
+    void givenExhaustedBudget_WhenGetReviews_ThenPrimaryAwaited() throws Exception {
+        HedgingReviewService service = new HedgingReviewService(primary, secondary, executor, 95, 0.05);
+        warmUp(service);
+        slow.set(true);
+        service.getReviewsForBook(ValidISBN);
+
+        executor.submit(() -> {
+            Thread.sleep(100);
+            unblock.countDown();
+            return null;
+        });
+        assertSame(primaryReviews, service.getReviewsForBook(ValidISBN));
+
+        verify(secondary, times(1)).getReviewsForBook(ValidISBN);
+        assertEquals(1, service.getHedgeCount());
+        assertEquals(22, service.getRequestCount());
+    }
+}
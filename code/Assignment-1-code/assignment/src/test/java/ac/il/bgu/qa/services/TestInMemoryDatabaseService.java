@@ -0,0 +1,198 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.LibraryOutcome;
+import ac.il.bgu.qa.User;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestInMemoryDatabaseService {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private InMemoryDatabaseService databaseService;
+    private Library library;
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        databaseService = new InMemoryDatabaseService();
+        library = new Library(databaseService, reviewService);
+    }
+
+    /**
+     * Verifies that books and users added through the library can be looked up again.
+     */
+    @Test
+    void givenAddedBookAndUser_WhenLookedUp_ThenFound() {
+        Book book = new Book(ValidISBN, "Title", "Dale Carnegie");
+        User user = new User("Yali", ValidID, notificationService);
+        library.addBook(book);
+        library.registerUser(user);
+
+        assertSame(book, databaseService.getBookByISBN(ValidISBN));
+        assertSame(user, databaseService.getUserById(ValidID));
+        assertEquals(1, databaseService.getBookCount());
+        assertEquals(1, databaseService.getUserCount());
+    }
+
+    /**
+     * Verifies that borrowing and returning through the library tracks the borrowing user.
+     */
+    @Test
+    void givenBorrowedBook_WhenReturned_ThenBorrowerCleared() {
+        library.addBook(new Book(ValidISBN, "Title", "Dale Carnegie"));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+
+        library.borrowBook(ValidISBN, ValidID);
+        assertEquals(ValidID, databaseService.getBorrowerId(ValidISBN));
+        assertTrue(databaseService.getBookByISBN(ValidISBN).isBorrowed());
+
+        library.returnBook(ValidISBN);
+        assertNull(databaseService.getBorrowerId(ValidISBN));
+        assertFalse(databaseService.getBookByISBN(ValidISBN).isBorrowed());
+    }
+
+    /**
+     * Verifies that each borrower of a multi-copy book is given their own copy, and that a user
+     * returning frees exactly the copy they hold.
+     */
+    @Test
+    void givenMultiCopyBook_WhenUsersBorrowAndReturn_ThenCopiesTracked() {
+        library.addBook(new Book(ValidISBN, "Title", "Dale Carnegie", 2));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+        library.registerUser(new User("Noa", "617865027124", notificationService));
+
+        library.borrowBook(ValidISBN, ValidID);
+        library.borrowBook(ValidISBN, "617865027124");
+        assertTrue(databaseService.getBookByISBN(ValidISBN).isBorrowed());
+        assertEquals(LibraryOutcome.BOOK_ALREADY_BORROWED, library.tryBorrowBook(ValidISBN, ValidID));
+        assertEquals(ValidID, databaseService.getHolders(ValidISBN).get(1));
+        assertEquals("617865027124", databaseService.getHolders(ValidISBN).get(2));
+
+        library.returnBook(ValidISBN, ValidID);
+        assertEquals(1, databaseService.getBookByISBN(ValidISBN).getAvailableCopies());
+        assertNull(databaseService.getHolders(ValidISBN).get(1));
+        assertEquals("617865027124", databaseService.getBorrowerId(ValidISBN));
+    }
+
+    /**
+     * Verifies that a user who holds no copy cannot return one, so the copy another user holds
+     * is not lent out again.
+     */
+    @Test
+    void givenCopyHeldByOtherUser_WhenReturnedByNonHolder_ThenRejectedAndCopyKept() {
+        library.addBook(new Book(ValidISBN, "Title", "Dale Carnegie", 2));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+        library.registerUser(new User("Noa", "617865027124", notificationService));
+        library.borrowBook(ValidISBN, ValidID);
+
+        assertEquals(LibraryOutcome.BOOK_NOT_BORROWED, library.tryReturnBook(ValidISBN, "617865027124"));
+
+        assertEquals(1, databaseService.getBookByISBN(ValidISBN).getAvailableCopies());
+        assertEquals(ValidID, databaseService.getHolders(ValidISBN).get(1));
+        assertTrue(databaseService.holdsCopy(ValidISBN, ValidID));
+        assertFalse(databaseService.holdsCopy(ValidISBN, "617865027124"));
+    }
+
+    /**
+     * Verifies that many threads borrowing the same book at once get exactly as many copies as exist.
+     */
+    @Test
+    void givenConcurrentBorrowers_WhenBorrowBestseller_ThenEveryCopyLentExactlyOnce() throws Exception {
+        int copies = 50;
+        int borrowers = 200;
+        library.addBook(new Book(ValidISBN, "Title", "Dale Carnegie", copies));
+        for (int i = 0; i < borrowers; i++) {
+            library.registerUser(new User("Reader " + i, String.format("%012d", i), notificationService));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<LibraryOutcome>> outcomes = new ArrayList<>();
+        try {
+            for (int i = 0; i < borrowers; i++) {
+                String userId = String.format("%012d", i);
+                outcomes.add(executor.submit(() -> library.tryBorrowBook(ValidISBN, userId)));
+            }
+            int successes = 0;
+            for (Future<LibraryOutcome> outcome : outcomes) {
+                if (outcome.get() == LibraryOutcome.SUCCESS) {
+                    successes++;
+                } else {
+                    assertEquals(LibraryOutcome.BOOK_ALREADY_BORROWED, outcome.get());
+                }
+            }
+            assertEquals(copies, successes);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, databaseService.getBookByISBN(ValidISBN).getAvailableCopies());
+        assertEquals(copies, databaseService.getHolders(ValidISBN).size());
+    }
+
+    /**
+     * Verifies that when a user returns their copy twice at once, and both returns pass the holder check,
+     * only one return succeeds and the book's available copies go up by exactly one.
+     */
+    @Test
+    void givenConcurrentReturnsOfSameCopy_WhenReturnedByUser_ThenReturnedExactlyOnce() throws Exception {
+        // Holds both returns after the holder check until each has passed it.
+        CyclicBarrier checked = new CyclicBarrier(2);
+        databaseService = new InMemoryDatabaseService() {
+            @Override
+            public boolean holdsCopy(String ISBN, String userId) {
+                boolean holds = super.holdsCopy(ISBN, userId);
+                try {
+                    checked.await(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return holds;
+            }
+        };
+        library = new Library(databaseService, reviewService);
+        String otherId = "617865027124";
+        library.addBook(new Book(ValidISBN, "Title", "Dale Carnegie", 2));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+        library.registerUser(new User("Noa", otherId, notificationService));
+        library.borrowBook(ValidISBN, ValidID);
+        library.borrowBook(ValidISBN, otherId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<LibraryOutcome>> outcomes = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                outcomes.add(executor.submit(() -> library.tryReturnBook(ValidISBN, ValidID)));
+            }
+            int successes = 0;
+            for (Future<LibraryOutcome> outcome : outcomes) {
+                if (outcome.get() == LibraryOutcome.SUCCESS) {
+                    successes++;
+                } else {
+                    assertEquals(LibraryOutcome.BOOK_NOT_BORROWED, outcome.get());
+                }
+            }
+            assertEquals(1, successes);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, databaseService.getBookByISBN(ValidISBN).getAvailableCopies());
+        assertFalse(databaseService.getHolders(ValidISBN).containsValue(ValidID));
+        assertEquals(otherId, databaseService.getHolders(ValidISBN).get(2));
+    }
+}
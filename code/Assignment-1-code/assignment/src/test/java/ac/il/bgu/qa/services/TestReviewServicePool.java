@@ -0,0 +1,139 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.errors.ReviewServiceUnavailableException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.Collections;
+import java.util.function.Supplier;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestReviewServicePool {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    @Mock
+    private ReviewService connection;
+    @Mock
+    private ReviewService secondConnection;
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService unusedReviewService;
+    @Mock
+    private Book book;
+    @Mock
+    private User user;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Verifies that a released connection is reused by the next lease instead of opening a new one.
+     */
+    @Test
+    void givenReleasedConnection_WhenLease_ThenConnectionReused() {
+        ReviewServicePool pool = new ReviewServicePool(() -> connection, 2, service -> true, 60_000, 100);
+
+        ReviewService first = pool.lease();
+        pool.release(first);
+        ReviewService second = pool.lease();
+
+        assertSame(first, second);
+        assertEquals(1, pool.getCreatedCount());
+        verify(connection, never()).close();
+    }
+
+    /**
+     * Verifies that an idle connection failing its health check is closed and replaced.
+     */
+    @Test
+    void givenUnhealthyIdleConnection_WhenLease_ThenClosedAndReplaced() {
+        ReviewServicePool pool = new ReviewServicePool(mockFactory(), 1, service -> service != connection, 60_000, 100);
+
+        pool.release(pool.lease());
+        ReviewService leased = pool.lease();
+
+        assertSame(secondConnection, leased);
+        verify(connection, times(1)).close();
+    }
+
+    /**
+     * Verifies that connections idle longer than the limit are evicted and closed.
+     */
+    @Test
+    void givenExpiredIdleConnection_WhenEvictIdle_ThenClosed() throws InterruptedException {
+        ReviewServicePool pool = new ReviewServicePool(() -> connection, 1, service -> true, 1, 100);
+        ReviewService leased = pool.lease();
+        pool.release(leased);
+        Thread.sleep(5);
+
+        pool.evictIdle();
+
+        assertEquals(0, pool.getIdleCount());
+        verify(connection, times(1)).close();
+    }
+
+    /**
+     * Verifies that a lease fails fast once every connection is leased and none is released in time.
+     */
+    @Test
+    void givenExhaustedPool_WhenLease_ThenThrowReviewServiceUnavailableException() {
+        ReviewServicePool pool = new ReviewServicePool(() -> connection, 1, service -> true, 60_000, 10);
+        pool.lease();
+        assertThrows(ReviewServiceUnavailableException.class, pool::lease);
+    }
+
+    /**
+     * Verifies that the library returns a pooled connection instead of closing it after fetching reviews.
+     */
+    @Test
+    void givenPool_WhenNotifyUserWithBookReviews_ThenConnectionReturnedNotClosed() {
+        ReviewServicePool pool = new ReviewServicePool(() -> connection, 1, service -> true, 60_000, 100);
+        Library library = new Library(databaseService, unusedReviewService);
+        library.setReviewServicePool(pool);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+        when(connection.getReviewsForBook(ValidISBN)).thenReturn(Collections.singletonList("Good review"));
+
+        library.notifyUserWithBookReviews(ValidISBN, ValidID);
+        library.notifyUserWithBookReviews(ValidISBN, ValidID);
+
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getIdleCount());
+        verify(connection, never()).close();
+        verifyNoInteractions(unusedReviewService);
+    }
+
+    /**
+     * Verifies that the library discards a pooled connection whose review fetch failed.
+     */
+    @Test
+    void givenFailingConnection_WhenNotifyUserWithBookReviews_ThenConnectionInvalidated() {
+        ReviewServicePool pool = new ReviewServicePool(() -> connection, 1, service -> true, 60_000, 100);
+        Library library = new Library(databaseService, unusedReviewService);
+        library.setReviewServicePool(pool);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(user);
+        doThrow(new ReviewException("down")).when(connection).getReviewsForBook(ValidISBN);
+
+        assertThrows(ReviewServiceUnavailableException.class, () -> library.notifyUserWithBookReviews(ValidISBN, ValidID));
+
+        assertEquals(0, pool.getIdleCount());
+        verify(connection, times(1)).close();
+    }
+
+    // Hands out the first mock connection, then the second.
+    private Supplier<ReviewService> mockFactory() {
+        ReviewService[] connections = { connection, secondConnection };
+        int[] next = { 0 };
+        return () -> connections[next[0]++];
+    }
+}
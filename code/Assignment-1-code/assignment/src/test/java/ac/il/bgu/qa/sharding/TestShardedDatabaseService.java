@@ -0,0 +1,165 @@
+package ac.il.bgu.qa.sharding;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestShardedDatabaseService {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private Map<String, InMemoryDatabaseService> shards;
+    private ShardedDatabaseService shardedService;
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        shards = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            shards.put("shard-" + i, new InMemoryDatabaseService());
+        }
+        shardedService = new ShardedDatabaseService(shards, 64);
+    }
+
+    /**
+     * Verifies that books are spread over all shards and each is stored only on the shard that owns it.
+     */
+    @Test
+    void givenManyBooks_WhenAdded_ThenSpreadOverShards() {
+        for (int i = 0; i < 3000; i++) {
+            String ISBN = String.format("978%010d", i);
+            shardedService.addBook(ISBN, new Book(ISBN, "Title " + i, "Author"));
+        }
+
+        int total = 0;
+        for (InMemoryDatabaseService shard : shards.values()) {
+            assertTrue(shard.getBookCount() > 500, "shard holds " + shard.getBookCount());
+            total += shard.getBookCount();
+        }
+        assertEquals(3000, total);
+        String ISBN = String.format("978%010d", 42);
+        assertNotNull(shards.get(shardedService.shardOf(ISBN)).getBookByISBN(ISBN));
+    }
+
+    /**
+     * Verifies that the library works unchanged on top of the sharded service.
+     */
+    @Test
+    void givenShardedService_WhenLibraryBorrowsAndReturns_ThenOwningShardUpdated() {
+        Library library = new Library(shardedService, reviewService);
+        library.addBook(new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie"));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+
+        library.borrowBook(ValidISBN, ValidID);
+        assertEquals(ValidID, shards.get(shardedService.shardOf(ValidISBN)).getBorrowerId(ValidISBN));
+
+        library.returnBook(ValidISBN);
+        assertNull(shards.get(shardedService.shardOf(ValidISBN)).getBorrowerId(ValidISBN));
+    }
+
+    /**
+     * Verifies that a batch lookup run in parallel finds the existing books and leaves out missing ones.
+     */
+    @Test
+    void givenBooksOnSeveralShards_WhenBatchLookup_ThenFoundBooksReturned() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            shardedService = new ShardedDatabaseService(shards, 64, executor);
+            List<String> ISBNs = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                String ISBN = String.format("978%010d", i);
+                shardedService.addBook(ISBN, new Book(ISBN, "Title " + i, "Author"));
+                ISBNs.add(ISBN);
+            }
+            ISBNs.add("9789999999999");
+
+            Map<String, Book> found = shardedService.getBooksByISBN(ISBNs);
+            assertEquals(30, found.size());
+            assertEquals("Title 7", found.get(String.format("978%010d", 7)).getTitle());
+            assertFalse(found.containsKey("9789999999999"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that adding a shard moves only some of the keys, onto the new shard, and keeps
+     * every book, user and borrower reachable.
+     */
+    @Test
+    void givenPopulatedShards_WhenShardAdded_ThenKeysMovedAndStillReachable() {
+        for (int i = 0; i < 1000; i++) {
+            String ISBN = String.format("978%010d", i);
+            shardedService.addBook(ISBN, new Book(ISBN, "Title " + i, "Author"));
+        }
+        shardedService.registerUser(ValidID, new User("Yali", ValidID, notificationService));
+        shardedService.borrowBook(ValidISBN, ValidID);
+        shardedService.addBook(ValidISBN, new Book(ValidISBN, "Title", "Author"));
+
+        InMemoryDatabaseService added = new InMemoryDatabaseService();
+        shardedService.addShard("shard-3", added);
+
+        assertTrue(added.getBookCount() > 100 && added.getBookCount() < 500, "moved " + added.getBookCount());
+        for (int i = 0; i < 1000; i++) {
+            assertNotNull(shardedService.getBookByISBN(String.format("978%010d", i)));
+        }
+        assertNotNull(shardedService.getUserById(ValidID));
+        InMemoryDatabaseService owner = (InMemoryDatabaseService) shardedService.getShards().get(shardedService.shardOf(ValidISBN));
+        assertEquals(ValidID, owner.getBorrowerId(ValidISBN));
+    }
+
+    /**
+     * Verifies that when a multi-copy book moves to another shard, every holder of a borrowed copy moves with it.
+     */
+    @Test
+    void givenMultiCopyBookBorrowedByManyUsers_WhenShardRemoved_ThenAllHoldersMoved() {
+        shardedService.addBook(ValidISBN, new Book(ValidISBN, "Title", "Author", 3));
+        shardedService.borrowBook(ValidISBN, ValidID);
+        shardedService.borrowBook(ValidISBN, "000000000001");
+        shardedService.borrowBook(ValidISBN, "000000000002");
+        shardedService.returnBook(ValidISBN, "000000000001");
+
+        shardedService.removeShard(shardedService.shardOf(ValidISBN));
+
+        InMemoryDatabaseService owner = (InMemoryDatabaseService) shardedService.getShards().get(shardedService.shardOf(ValidISBN));
+        assertEquals(Arrays.asList(ValidID, "000000000002"), new ArrayList<>(owner.getHolders(ValidISBN).values()));
+    }
+
+    /**
+     * Verifies that removing a shard moves all of its keys to the remaining shards,
+     * and that the last shard cannot be removed.
+     */
+    @Test
+    void givenPopulatedShards_WhenShardRemoved_ThenAllKeysStillReachable() {
+        for (int i = 0; i < 300; i++) {
+            String ISBN = String.format("978%010d", i);
+            shardedService.addBook(ISBN, new Book(ISBN, "Title " + i, "Author"));
+        }
+
+        shardedService.removeShard("shard-0");
+        shardedService.removeShard("shard-1");
+
+        assertEquals(Arrays.asList("shard-2"), new ArrayList<>(shardedService.getShards().keySet()));
+        assertEquals(300, shards.get("shard-2").getBookCount());
+        assertThrows(IllegalArgumentException.class, () -> shardedService.removeShard("shard-2"));
+    }
+}
@@ -0,0 +1,125 @@
+package ac.il.bgu.qa.storage;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOffHeapBookStore {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private OffHeapBookStore store;
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        store = new OffHeapBookStore(1024, 4);
+    }
+
+    /**
+     * Verifies that a stored book is read back with the same fields, including non-ASCII text.
+     */
+    @Test
+    void givenStoredBook_WhenGet_ThenFieldsRoundTrip() {
+        store.put("978-0-306-40615-7", "Les Mis\u00e9rables", "Victor Hugo", false);
+
+        Book book = store.get("978-0-306-40615-7");
+        assertEquals("978-0-306-40615-7", book.getISBN());
+        assertEquals("Les Mis\u00e9rables", book.getTitle());
+        assertEquals("Victor Hugo", book.getAuthor());
+        assertFalse(book.isBorrowed());
+    }
+
+    /**
+     * Verifies that hyphenated and plain forms of an ISBN refer to the same book,
+     * and that unknown or malformed ISBNs are not found.
+     */
+    @Test
+    void givenStoredBook_WhenGetWithOtherIsbnForm_ThenSameBook() {
+        store.put("9780306406157", "Title", "Author", false);
+
+        assertNotNull(store.get("978-0306406157"));
+        assertNull(store.get(ValidISBN));
+        assertNull(store.get("not an isbn"));
+    }
+
+    /**
+     * Verifies that many books spread over several slabs and index resizes all stay readable.
+     */
+    @Test
+    void givenManyBooks_WhenGet_ThenAllFound() {
+        for (int i = 0; i < 2000; i++) {
+            store.put(String.format("978%010d", i), "Title " + i, "Author " + i, false);
+        }
+
+        assertEquals(2000, store.size());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals("Title " + i, store.get(String.format("978%010d", i)).getTitle());
+        }
+    }
+
+    /**
+     * Verifies that borrowing and returning through a view updates the stored record
+     * and rejects invalid transitions.
+     */
+    @Test
+    void givenView_WhenBorrowAndReturn_ThenRecordUpdated() {
+        store.put(ValidISBN, "Title", "Author", false);
+
+        store.get(ValidISBN).borrow();
+        assertTrue(store.get(ValidISBN).isBorrowed());
+        assertThrows(IllegalStateException.class, () -> store.get(ValidISBN).borrow());
+
+        store.get(ValidISBN).returnBook();
+        assertFalse(store.get(ValidISBN).isBorrowed());
+        assertThrows(IllegalStateException.class, () -> store.get(ValidISBN).returnBook());
+    }
+
+    /**
+     * Verifies that the library works unchanged on top of the off-heap database service.
+     */
+    @Test
+    void givenOffHeapDatabaseService_WhenLibraryBorrowsAndReturns_ThenStateTracked() {
+        OffHeapDatabaseService databaseService = new OffHeapDatabaseService(store);
+        Library library = new Library(databaseService, reviewService);
+        library.addBook(new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie"));
+        library.registerUser(new User("Yali", ValidID, notificationService));
+
+        library.borrowBook(ValidISBN, ValidID);
+        assertTrue(databaseService.getBookByISBN(ValidISBN).isBorrowed());
+        assertEquals(ValidID, databaseService.getBorrowerId(ValidISBN));
+
+        library.returnBook(ValidISBN);
+        assertFalse(databaseService.getBookByISBN(ValidISBN).isBorrowed());
+        assertNull(databaseService.getBorrowerId(ValidISBN));
+    }
+
+    /**
+     * Verifies that a book borrowed under its hyphenated ISBN is held and returned under the plain form.
+     */
+    @Test
+    void givenBookBorrowedWithHyphenatedIsbn_WhenReturnedWithPlainIsbn_ThenBorrowerTracked() {
+        OffHeapDatabaseService databaseService = new OffHeapDatabaseService(store);
+        String hyphenated = "379-0-7923-6342-7";
+        databaseService.addBook(ValidISBN, new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie"));
+
+        databaseService.borrowBook(hyphenated, ValidID);
+        assertEquals(ValidID, databaseService.getBorrowerId(ValidISBN));
+        assertTrue(databaseService.holdsCopy(ValidISBN, ValidID));
+
+        databaseService.returnBook(ValidISBN);
+        assertNull(databaseService.getBorrowerId(hyphenated));
+        assertFalse(databaseService.holdsCopy(hyphenated, ValidID));
+    }
+}
@@ -0,0 +1,193 @@
+package ac.il.bgu.qa.storage;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.LibraryOutcome;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TestSharedBorrowTable {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Runs in a separate JVM. "borrow FILE COUNT" tries to borrow COUNT books and prints how many it got;
+     * "crash FILE" borrows one book and halts without closing the table.
+     */
+    public static final class Child {
+        public static void main(String[] args) throws Exception {
+            SharedBorrowTable table = new SharedBorrowTable(Paths.get(args[1]), 16, 64);
+            if (args[0].equals("crash")) {
+                table.tryBorrow("3790792363427");
+                Runtime.getRuntime().halt(3);
+            }
+            int borrowed = 0;
+            for (int i = 0; i < Integer.parseInt(args[2]); i++) {
+                if (table.tryBorrow(String.format("978%010d", i))) {
+                    borrowed++;
+                }
+            }
+            System.out.println(borrowed);
+            table.close();
+        }
+    }
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    // Starts a child JVM running Child with the given arguments.
+    private static Process startChild(String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Child.class.getName());
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return new ProcessBuilder(command).redirectErrorStream(true).start();
+    }
+
+    /**
+     * Verifies that processes racing to borrow the same books through one shared file borrow each book exactly once.
+     */
+    @Test
+    void givenProcessesRacing_WhenBorrowingSameBooks_ThenEachBorrowedOnce() throws Exception {
+        Path file = directory.resolve("borrows");
+        List<Process> children = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            children.add(startChild("borrow", file.toString(), "300"));
+        }
+
+        int total = 0;
+        for (Process child : children) {
+            assertTrue(child.waitFor(60, TimeUnit.SECONDS));
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+                total += Integer.parseInt(output.readLine().trim());
+            }
+            assertEquals(0, child.exitValue());
+        }
+
+        assertEquals(300, total);
+        try (SharedBorrowTable table = new SharedBorrowTable(file, 16, 64)) {
+            for (int i = 0; i < 300; i++) {
+                assertTrue(table.isBorrowed(String.format("978%010d", i)));
+            }
+        }
+    }
+
+    /**
+     * Verifies that a borrow made by a process that crashes without closing the table is kept,
+     * and that the crashed process leaves no stripe locked.
+     */
+    @Test
+    void givenProcessCrashedAfterBorrow_WhenReopened_ThenBorrowKeptAndStripeUnlocked() throws Exception {
+        Path file = directory.resolve("borrows");
+        Process child = startChild("crash", file.toString());
+        assertTrue(child.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(3, child.exitValue());
+
+        try (SharedBorrowTable table = new SharedBorrowTable(file, 1, 1)) {
+            assertEquals(16 * 64, table.getCapacity());
+            assertTrue(table.isBorrowed(ValidISBN));
+            assertFalse(table.tryBorrow(ValidISBN));
+            assertTrue(table.tryReturn(ValidISBN));
+            assertFalse(table.tryReturn(ValidISBN));
+        }
+    }
+
+    /**
+     * Verifies that two libraries with separate databases sharing one table never lend the same book twice,
+     * and that each sees the other's borrows and returns.
+     */
+    @Test
+    void givenLibrariesSharingTable_WhenOneBorrows_ThenOtherSeesItBorrowed() throws Exception {
+        try (SharedBorrowTable table = new SharedBorrowTable(directory.resolve("borrows"), 4, 16)) {
+            Library first = new Library(new SharedBorrowStateDatabaseService(new InMemoryDatabaseService(), table), reviewService);
+            Library second = new Library(new SharedBorrowStateDatabaseService(new InMemoryDatabaseService(), table), reviewService);
+            for (Library library : new Library[] { first, second }) {
+                library.addBook(new Book(ValidISBN, "Title", "Author"));
+                library.registerUser(new User("Yali", ValidID, notificationService));
+            }
+
+            assertEquals(LibraryOutcome.SUCCESS, first.tryBorrowBook(ValidISBN, ValidID));
+            assertEquals(LibraryOutcome.BOOK_ALREADY_BORROWED, second.tryBorrowBook(ValidISBN, ValidID));
+
+            assertEquals(LibraryOutcome.SUCCESS, second.tryReturnBook(ValidISBN));
+            assertEquals(LibraryOutcome.BOOK_NOT_BORROWED, first.tryReturnBook(ValidISBN));
+            assertEquals(LibraryOutcome.SUCCESS, first.tryBorrowBook(ValidISBN, ValidID));
+        }
+    }
+
+    /**
+     * Verifies that a borrow or return the underlying database fails is given back in the shared table,
+     * so other processes do not see a change the database never recorded.
+     */
+    @Test
+    void givenFailingDatabase_WhenBorrowOrReturn_ThenSharedClaimReverted() throws Exception {
+        DatabaseService failing = mock(DatabaseService.class);
+        doThrow(new RuntimeException("database down")).when(failing).borrowBook(ValidISBN, ValidID);
+        doThrow(new RuntimeException("database down")).when(failing).returnBook(ValidISBN);
+        try (SharedBorrowTable table = new SharedBorrowTable(directory.resolve("borrows"), 4, 16)) {
+            SharedBorrowStateDatabaseService service = new SharedBorrowStateDatabaseService(failing, table);
+
+            assertThrows(RuntimeException.class, () -> service.borrowBook(ValidISBN, ValidID));
+            assertFalse(table.isBorrowed(ValidISBN));
+
+            assertTrue(table.tryBorrow(ValidISBN));
+            assertThrows(RuntimeException.class, () -> service.returnBook(ValidISBN));
+            assertTrue(table.isBorrowed(ValidISBN));
+        }
+    }
+
+    /**
+     * Verifies that a file whose header claims no stripes, or more slots than fit one mapping,
+     * is refused instead of failing on the first lookup.
+     */
+    @Test
+    void givenCorruptGeometryInHeader_WhenOpened_ThenRejected() throws Exception {
+        Path file = directory.resolve("borrows");
+        new SharedBorrowTable(file, 16, 64).close();
+
+        for (int[] geometry : new int[][] { { 0, 64 }, { Integer.MAX_VALUE, 1 << 20 } }) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putInt(geometry[0]).putInt(geometry[1]).flip();
+                channel.write(header, 12);
+            }
+            assertThrows(IOException.class, () -> new SharedBorrowTable(file, 16, 64));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ac.il.bgu.qa.storage;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStringInternPool {
+
+    private StringInternPool pool;
+
+    @Mock
+    private ReviewService reviewService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        pool = new StringInternPool(4);
+    }
+
+    /**
+     * Verifies that equal strings are mapped to the first instance interned and that the saving is counted.
+     */
+    @Test
+    void givenEqualStrings_WhenInterned_ThenSameInstanceReturned() {
+        String first = new String("Dale Carnegie");
+        String second = new String("Dale Carnegie");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertSame(first, pool.intern(first));
+
+        assertEquals(3, pool.getLookupCount());
+        assertEquals(1, pool.getDeduplicatedCount());
+        assertTrue(pool.getEstimatedSavedBytes() > 0);
+        assertEquals(1, pool.size());
+    }
+
+    /**
+     * Verifies that null is passed through without being pooled.
+     */
+    @Test
+    void givenNull_WhenInterned_ThenNullReturned() {
+        assertNull(pool.intern(null));
+        assertEquals(0, pool.size());
+    }
+
+    /**
+     * Verifies that books added through the library share one author string and keep their other fields.
+     */
+    @Test
+    void givenBooksBySameAuthor_WhenAddedThroughLibrary_ThenAuthorStoredOnce() {
+        InMemoryDatabaseService store = new InMemoryDatabaseService();
+        Library library = new Library(new InterningDatabaseService(store, pool), reviewService);
+
+        library.addBook(new Book("3790792363427", "How To Win Friends And Influence People", new String("Dale Carnegie")));
+        library.addBook(new Book("9780306406157", "How to Stop Worrying and Start Living", new String("Dale Carnegie")));
+
+        Book first = store.getBookByISBN("3790792363427");
+        Book second = store.getBookByISBN("9780306406157");
+        assertSame(first.getAuthor(), second.getAuthor());
+        assertEquals("How to Stop Worrying and Start Living", second.getTitle());
+        assertEquals("9780306406157", second.getISBN());
+        assertEquals(1, pool.getDeduplicatedCount());
+    }
+}
@@ -0,0 +1,117 @@
+package ac.il.bgu.qa.tracing;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTracing {
+
+    private final String ValidISBN = "3790792363427";
+
+    private InMemorySpanExporter exporter;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private Book book;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        exporter = new InMemorySpanExporter();
+    }
+
+    /**
+     * Verifies that a sampled library operation produces a root span with child spans
+     * for the database calls it makes, all in the same trace.
+     */
+    @Test
+    void givenSampledTracer_WhenReturnBook_ThenChildSpansForDatabaseCalls() {
+        Tracer tracer = new Tracer(1.0, exporter);
+        Library library = new Library(new TracingDatabaseService(databaseService, tracer), reviewService);
+        library.setTracer(tracer);
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(book.isBorrowed()).thenReturn(true);
+
+        library.returnBook(ValidISBN);
+
+        List<Span> spans = exporter.getFinishedSpans();
+        assertEquals(3, spans.size());
+        Span root = spans.get(2);
+        assertEquals("library.returnBook", root.getName());
+        assertNull(root.getParentSpanId());
+        assertEquals("db.getBookByISBN", spans.get(0).getName());
+        assertEquals("db.returnBook", spans.get(1).getName());
+        for (Span child : spans.subList(0, 2)) {
+            assertEquals(root.getSpanId(), child.getParentSpanId());
+            assertEquals(root.getTraceId(), child.getTraceId());
+        }
+        assertEquals(Span.Status.OK, root.getStatus());
+        assertNull(tracer.currentSpan());
+    }
+
+    /**
+     * Verifies that a failed operation marks its span as an error with the exception type.
+     */
+    @Test
+    void givenSampledTracer_WhenBorrowBookNotFound_ThenRootSpanIsError() {
+        Tracer tracer = new Tracer(1.0, exporter);
+        Library library = new Library(databaseService, reviewService);
+        library.setTracer(tracer);
+
+        assertThrows(BookNotFoundException.class, () -> library.borrowBook(ValidISBN, "617865027123"));
+
+        Span root = exporter.getFinishedSpans().get(0);
+        assertEquals(Span.Status.ERROR, root.getStatus());
+        assertEquals(BookNotFoundException.class.getName(), root.getAttributes().get("exception.type"));
+    }
+
+    /**
+     * Verifies that nothing is exported for unsampled traces, including their nested spans,
+     * and that the next trace starts clean.
+     */
+    @Test
+    void givenZeroSampleRatio_WhenSpansStarted_ThenNothingExported() {
+        Tracer tracer = new Tracer(0.0, exporter);
+        Span root = tracer.startSpan("root");
+        Span child = tracer.startSpan("child");
+        assertFalse(root.isRecording());
+        child.end();
+        root.end();
+
+        assertTrue(exporter.getFinishedSpans().isEmpty());
+        assertNull(tracer.currentSpan());
+    }
+
+    /**
+     * Verifies that the file exporter writes one JSON object per span.
+     */
+    @Test
+    void givenFileExporter_WhenSpanEnded_ThenJsonLineWritten(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("spans.jsonl");
+        try (FileSpanExporter fileExporter = new FileSpanExporter(file)) {
+            Tracer tracer = new Tracer(1.0, fileExporter);
+            tracer.startSpan("review.getReviewsForBook").setAttribute("isbn", ValidISBN).end();
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"name\":\"review.getReviewsForBook\""));
+        assertTrue(lines.get(0).contains("\"isbn\":\"" + ValidISBN + "\""));
+        assertTrue(lines.get(0).contains("\"status\":\"OK\""));
+    }
+}
@@ -0,0 +1,115 @@
+package ac.il.bgu.qa.warmup;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.cache.CachingDatabaseService;
+import ac.il.bgu.qa.cache.CachingReviewService;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLibraryWarmUp {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    private ExecutorService executor;
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private DatabaseService databaseService;
+    @Mock
+    private ReviewService reviewService;
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown_AfterEach() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verifies that a hot list survives being saved and loaded, and that comments and blank lines are skipped.
+     */
+    @Test
+    void givenHotList_WhenSavedAndLoaded_ThenEntriesRoundTrip() throws IOException {
+        Path file = directory.resolve("hot.txt");
+        new HotList(Arrays.asList(ValidISBN, "9780306406157"), Collections.singletonList(ValidID)).save(file);
+        Files.write(file, Arrays.asList("# trending", ""), StandardOpenOption.APPEND);
+
+        HotList loaded = HotList.load(file);
+        assertEquals(Arrays.asList(ValidISBN, "9780306406157"), loaded.getISBNs());
+        assertEquals(Collections.singletonList(ValidID), loaded.getUserIds());
+    }
+
+    /**
+     * Verifies that the library is not ready until the warm-up finished, and that the warmed
+     * book, user and reviews are then served from the caches.
+     */
+    @Test
+    void givenWarmUp_WhenFinished_ThenLibraryReadyAndServedFromCache() throws InterruptedException {
+        Book book = new Book(ValidISBN, "How To Win Friends And Influence People", "Dale Carnegie");
+        when(databaseService.getBookByISBN(ValidISBN)).thenReturn(book);
+        when(databaseService.getUserById(ValidID)).thenReturn(new User("Yali", ValidID, notificationService));
+        when(reviewService.getReviewsForBook(ValidISBN)).thenReturn(Collections.singletonList("Great book!"));
+        CachingDatabaseService cachingDatabase = new CachingDatabaseService(databaseService, 100, 100);
+        CachingReviewService cachingReviews = new CachingReviewService(reviewService, 100);
+        Library library = new Library(cachingDatabase, cachingReviews);
+        LibraryWarmUp warmUp = new LibraryWarmUp(cachingDatabase, cachingReviews, executor, 1000);
+        library.setWarmUp(warmUp);
+
+        assertFalse(library.isReady());
+        warmUp.start(new HotList(Collections.singletonList(ValidISBN), Collections.singletonList(ValidID)));
+        assertTrue(warmUp.awaitReady(5, TimeUnit.SECONDS));
+        assertTrue(library.isReady());
+        assertEquals(2, warmUp.getPrefetchedCount());
+
+        library.getBookByISBN(ValidISBN, ValidID);
+
+        verify(databaseService, times(1)).getBookByISBN(ValidISBN);
+        verify(databaseService, times(1)).getUserById(ValidID);
+        verify(reviewService, times(1)).getReviewsForBook(ValidISBN);
+        verify(notificationService, times(1)).notifyUser(eq(ValidID), anyString());
+    }
+
+    /**
+     * Verifies that prefetches are paced to the configured rate and that failures are counted without
+     * stopping the warm-up.
+     */
+    @Test
+    void givenRateLimit_WhenWarmingUp_ThenRequestsPacedAndFailuresCounted() throws InterruptedException {
+        when(databaseService.getUserById(anyString())).thenThrow(new IllegalStateException("database down"));
+        LibraryWarmUp warmUp = new LibraryWarmUp(databaseService, null, executor, 50);
+
+        long start = System.nanoTime();
+        warmUp.start(new HotList(Collections.emptyList(), Arrays.asList("1", "2", "3", "4", "5", "6")));
+        assertTrue(warmUp.awaitReady(5, TimeUnit.SECONDS));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(6, warmUp.getFailureCount());
+        assertEquals(0, warmUp.getPrefetchedCount());
+    }
+}
@@ -0,0 +1,197 @@
+package ac.il.bgu.qa.writebehind;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TestWriteBehindDatabaseService {
+
+    private final String ValidID = "617865027123";
+    private final String ValidISBN = "3790792363427";
+
+    @Mock
+    private DatabaseService databaseService;
+
+    @TempDir
+    Path directory;
+
+    private WriteBehindDatabaseService writeBehind;
+
+    @BeforeEach
+    public void setup_BeforeEach() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    public void tearDown_AfterEach() throws Exception {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    /**
+     * Verifies that a borrow is only queued, the book handed out keeps its borrowed state,
+     * and the borrow reaches the underlying service on flush.
+     */
+    @Test
+    void givenBorrow_WhenFlushed_ThenWrittenToDelegate() throws Exception {
+        InMemoryDatabaseService store = spy(new InMemoryDatabaseService());
+        writeBehind = new WriteBehindDatabaseService(store, 60_000, 100, directory.resolve("spill"));
+        writeBehind.addBook(ValidISBN, new Book(ValidISBN, "Title", "Author"));
+
+        writeBehind.getBookByISBN(ValidISBN).borrow();
+        writeBehind.borrowBook(ValidISBN, ValidID);
+        assertTrue(writeBehind.getBookByISBN(ValidISBN).isBorrowed());
+        assertNull(store.getBorrowerId(ValidISBN));
+        assertEquals(1, writeBehind.getPendingCount());
+
+        assertEquals(1, writeBehind.flush());
+        assertEquals(ValidID, store.getBorrowerId(ValidISBN));
+        assertEquals(0, writeBehind.getPendingCount());
+        assertEquals(1, writeBehind.getFlushedCount());
+    }
+
+    /**
+     * Verifies that a return following a borrow by the same user cancels it, so nothing is written.
+     */
+    @Test
+    void givenBorrowThenReturn_WhenFlushed_ThenNothingWritten() throws Exception {
+        writeBehind = new WriteBehindDatabaseService(databaseService, 60_000, 100, directory.resolve("spill"));
+
+        writeBehind.borrowBook(ValidISBN, ValidID);
+        writeBehind.returnBook(ValidISBN, ValidID);
+        writeBehind.borrowBook(ValidISBN, ValidID);
+        writeBehind.returnBook(ValidISBN);
+
+        assertEquals(0, writeBehind.getPendingCount());
+        assertEquals(2, writeBehind.getMergedCount());
+        assertEquals(0, writeBehind.flush());
+        verify(databaseService, never()).borrowBook(anyString(), anyString());
+        verify(databaseService, never()).returnBook(anyString());
+    }
+
+    /**
+     * Verifies that queued changes are flushed in the background once the staleness bound passes.
+     */
+    @Test
+    void givenStalenessBound_WhenElapsed_ThenFlushedInBackground() throws Exception {
+        writeBehind = new WriteBehindDatabaseService(databaseService, 20, 100, directory.resolve("spill"));
+
+        writeBehind.borrowBook(ValidISBN, ValidID);
+
+        verify(databaseService, timeout(2000)).borrowBook(ValidISBN, ValidID);
+    }
+
+    /**
+     * Verifies that changes the underlying service rejects are spilled on close, in order,
+     * and replayed by the next instance, which deletes the spill file once they are written.
+     */
+    @Test
+    void givenFailingDelegate_WhenClosed_ThenSpilledAndReplayed() throws Exception {
+        Path spill = directory.resolve("spill");
+        doThrow(new RuntimeException("down")).when(databaseService).borrowBook(anyString(), anyString());
+        WriteBehindDatabaseService failing = new WriteBehindDatabaseService(databaseService, 60_000, 100, spill);
+        failing.borrowBook(ValidISBN, ValidID);
+        failing.returnBook(ValidISBN);
+        failing.borrowBook(ValidISBN, "000000000001");
+        failing.close();
+
+        assertTrue(Files.exists(spill));
+        assertEquals(1, failing.getFailedWriteCount());
+        assertEquals(1, failing.getMergedCount());
+
+        DatabaseService recovered = mock(DatabaseService.class);
+        writeBehind = new WriteBehindDatabaseService(recovered, 60_000, 100, spill);
+        assertEquals(1, writeBehind.getPendingCount());
+        writeBehind.flush();
+
+        verify(recovered).borrowBook(ValidISBN, "000000000001");
+        assertFalse(Files.exists(spill));
+    }
+
+    /**
+     * Verifies that a change the store rejects for good is dropped and reported at once,
+     * without holding up the book's later changes.
+     */
+    @Test
+    void givenPermanentRejection_WhenFlushed_ThenDroppedAndLaterChangesWritten() throws Exception {
+        doThrow(new BookAlreadyBorrowedException("Book was already borrowed!")).when(databaseService).borrowBook(ValidISBN, ValidID);
+        writeBehind = new WriteBehindDatabaseService(databaseService, 60_000, 100, directory.resolve("spill"));
+
+        writeBehind.borrowBook(ValidISBN, ValidID);
+        writeBehind.borrowBook(ValidISBN, "000000000001");
+
+        assertEquals(1, writeBehind.flush());
+        assertEquals(0, writeBehind.getPendingCount());
+        assertEquals(1, writeBehind.getRejectedCount());
+        WriteBehindDatabaseService.RejectedChange rejected = writeBehind.getRejectedChanges().get(0);
+        assertEquals(ValidISBN, rejected.getISBN());
+        assertTrue(rejected.isBorrow());
+        assertEquals(ValidID, rejected.getUserId());
+        assertTrue(rejected.getError() instanceof BookAlreadyBorrowedException);
+        verify(databaseService).borrowBook(ValidISBN, "000000000001");
+    }
+
+    /**
+     * Verifies that a change failing transiently is retried on later flushes and dropped once out of attempts.
+     */
+    @Test
+    void givenTransientFailures_WhenAttemptsExhausted_ThenDropped() throws Exception {
+        doThrow(new RuntimeException("timeout")).when(databaseService).borrowBook(anyString(), anyString());
+        writeBehind = new WriteBehindDatabaseService(databaseService, 60_000, 100, directory.resolve("spill"), 3);
+
+        writeBehind.borrowBook(ValidISBN, ValidID);
+        writeBehind.flush();
+        writeBehind.flush();
+        assertEquals(1, writeBehind.getPendingCount());
+        assertEquals(0, writeBehind.getRejectedCount());
+
+        writeBehind.flush();
+        assertEquals(0, writeBehind.getPendingCount());
+        assertEquals(1, writeBehind.getRejectedCount());
+        assertEquals(3, writeBehind.getFailedWriteCount());
+        verify(databaseService, times(3)).borrowBook(ValidISBN, ValidID);
+    }
+
+    /**
+     * Verifies that a borrow being written still counts towards holdsCopy, and that a return queued
+     * meanwhile is written after it instead of cancelling it.
+     */
+    @Test
+    void givenBorrowBeingWritten_WhenHoldsCopyAndReturn_ThenBorrowStillVisible() throws Exception {
+        writeBehind = new WriteBehindDatabaseService(databaseService, 60_000, 100, directory.resolve("spill"));
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(databaseService).borrowBook(ValidISBN, ValidID);
+
+        writeBehind.borrowBook(ValidISBN, ValidID);
+        CompletableFuture<Integer> flush = CompletableFuture.supplyAsync(writeBehind::flush);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        assertTrue(writeBehind.holdsCopy(ValidISBN, ValidID));
+        writeBehind.returnBook(ValidISBN, ValidID);
+        assertFalse(writeBehind.holdsCopy(ValidISBN, ValidID));
+        proceed.countDown();
+
+        assertEquals(2, flush.get(5, TimeUnit.SECONDS));
+        assertEquals(0, writeBehind.getMergedCount());
+        InOrder order = inOrder(databaseService);
+        order.verify(databaseService).borrowBook(ValidISBN, ValidID);
+        order.verify(databaseService).returnBook(ValidISBN, ValidID);
+    }
+}
@@ -0,0 +1,43 @@
+package ac.il.bgu.qa;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Runs every benchmark with 1, 4 and one-per-processor threads, writing the results
+ * of each run as JSON so they can be tracked over time.
+ * Usage: {@code java -jar benchmarks.jar [output directory] [benchmark regex]}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        File outputDirectory = new File(args.length > 0 ? args[0] : "jmh-results");
+        String include = args.length > 1 ? args[1] : ".*Benchmark.*";
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + outputDirectory);
+        }
+
+        // The same count may appear twice on small machines, run it once.
+        Set<Integer> threadCounts = new LinkedHashSet<>();
+        threadCounts.add(1);
+        threadCounts.add(4);
+        threadCounts.add(Runtime.getRuntime().availableProcessors());
+
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(outputDirectory, "results-" + threads + "-threads.json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.codec.BookCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding books with the binary codec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private Book book;
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup() {
+        book = new Book("9780306406157", "How To Win Friends And Influence People", "Dale Carnegie");
+        buffer = ByteBuffer.allocate(256);
+        encoded = ByteBuffer.wrap(BookCodec.encode(book));
+    }
+
+    @Benchmark
+    public int encode() {
+        buffer.clear();
+        BookCodec.encode(book, buffer);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public Book decode() {
+        encoded.rewind();
+        return BookCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public String viewTitle() {
+        encoded.rewind();
+        return BookCodec.view(encoded).getTitle();
+    }
+}
@@ -0,0 +1,49 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Service stand-ins that answer immediately, so benchmarks measure the library itself.
+ */
+final class Fakes {
+
+    private Fakes() {
+    }
+
+    /**
+     * A review service returning the same fixed reviews for every book.
+     */
+    static final class FixedReviewService implements ReviewService {
+
+        // The reviews returned for every book.
+        private final List<String> reviews = Arrays.asList(
+                "A timeless classic.", "Could not put it down.", "Too long, but worth it.");
+
+        @Override
+        public List<String> getReviewsForBook(String ISBN) {
+            return reviews;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A notification service that discards every message.
+     */
+    static final class DiscardingNotificationService implements NotificationService {
+
+        // The length of the last message, read so the message cannot be optimized away.
+        volatile int lastMessageLength;
+
+        @Override
+        public void notifyUser(String userId, String message) {
+            lastMessageLength = message.length();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ac.il.bgu.qa;
+
+/**
+ * Generates valid ISBN-13 numbers for benchmarks and load tests.
+ */
+public final class Isbns {
+
+    private Isbns() {
+    }
+
+    /**
+     * Builds the n-th valid ISBN-13 in the 978 prefix range.
+     *
+     * @param n A number between 0 and 999,999,999.
+     * @return A valid ISBN-13 without hyphens.
+     */
+    public static String isbn(long n) {
+        String prefix = "978" + String.format("%09d", n);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = prefix.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : digit * 3;
+        }
+        int checkDigit = (10 - sum % 10) % 10;
+        return prefix + checkDigit;
+    }
+
+    /**
+     * Builds the n-th valid 12-digit user Id.
+     *
+     * @param n A number between 0 and 999,999,999,999.
+     * @return A valid user Id.
+     */
+    public static String userId(long n) {
+        return String.format("%012d", n);
+    }
+}
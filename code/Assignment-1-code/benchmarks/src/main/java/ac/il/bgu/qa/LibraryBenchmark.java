@@ -0,0 +1,96 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the library's operations against an in-memory database and a fixed review service.
+ * The library is shared by all benchmark threads; each thread works on its own books and user,
+ * so the measured operations always succeed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryBenchmark {
+
+    // Number of books each thread adds per iteration of the addBook benchmark.
+    private static final int BOOKS_PER_THREAD = 1 << 16;
+
+    private InMemoryDatabaseService databaseService;
+    private Library library;
+
+    // Hands out disjoint ISBN and user Id ranges to benchmark threads.
+    private final AtomicLong threadCounter = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        databaseService = new InMemoryDatabaseService();
+        library = new Library(databaseService, new Fakes.FixedReviewService());
+    }
+
+    /**
+     * Per-thread books and user.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        // ISBNs this thread adds during one iteration; the library is replaced before the next.
+        String[] newIsbns;
+        int nextNewIsbn;
+
+        // A book and user already in the library, used for borrowing and notifications.
+        String isbn;
+        String userId;
+
+        // Keeps notification messages from being optimized away.
+        Fakes.DiscardingNotificationService notificationService;
+
+        @Setup(Level.Iteration)
+        public void setup(LibraryBenchmark benchmark) {
+            long thread = benchmark.threadCounter.getAndIncrement();
+            newIsbns = new String[BOOKS_PER_THREAD];
+            for (int i = 0; i < BOOKS_PER_THREAD; i++) {
+                newIsbns[i] = Isbns.isbn(1_000_000 + thread * BOOKS_PER_THREAD + i);
+            }
+            nextNewIsbn = 0;
+
+            isbn = Isbns.isbn(thread);
+            userId = Isbns.userId(thread);
+            notificationService = new Fakes.DiscardingNotificationService();
+            benchmark.library.addBook(new Book(isbn, "How To Win Friends And Influence People", "Dale Carnegie"));
+            benchmark.library.registerUser(new User("Reader " + thread, userId, notificationService));
+        }
+    }
+
+    /**
+     * Adding books grows the library, so there is no steady state to average over. Each iteration
+     * instead adds exactly {@link #BOOKS_PER_THREAD} books per thread to a fresh library and reports
+     * the time of the whole batch; divide the score by the batch size for the time per book.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10, batchSize = BOOKS_PER_THREAD)
+    @Measurement(iterations = 20, batchSize = BOOKS_PER_THREAD)
+    public void addBook(ThreadState state) {
+        library.addBook(new Book(state.newIsbns[state.nextNewIsbn++], "The Pragmatic Programmer", "Andrew Hunt"));
+    }
+
+    @Benchmark
+    public void borrowAndReturnBook(ThreadState state) {
+        library.borrowBook(state.isbn, state.userId);
+        library.returnBook(state.isbn);
+    }
+
+    @Benchmark
+    public int notifyUserWithBookReviews(ThreadState state) {
+        library.notifyUserWithBookReviews(state.isbn, state.userId);
+        return state.notificationService.lastMessageLength;
+    }
+}
@@ -0,0 +1,266 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.metrics.LatencyHistogram;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a library with an open-loop mix of operations and reports throughput and latency percentiles.
+ * <p>
+ * Requests are issued on a fixed schedule regardless of how fast earlier requests complete, and each
+ * request's response time is measured from when it was scheduled rather than when a worker picked it up.
+ * Queueing delay under overload is therefore included, which corrects for coordinated omission.
+ * Books are picked with a Zipfian popularity distribution and users uniformly.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar ac.il.bgu.qa.LoadGenerator [--option=value ...]} with options
+ * {@code rate} (requests per second), {@code duration} (seconds), {@code workers}, {@code books},
+ * {@code users}, {@code theta} (Zipfian skew) and {@code mix} (e.g. {@code add:2,register:1,borrow:30,return:27,lookup:40}).
+ */
+public class LoadGenerator {
+
+    /**
+     * The operations the generator issues.
+     */
+    enum Operation {
+        ADD("add"), REGISTER("register"), BORROW("borrow"), RETURN("return"), LOOKUP("lookup");
+
+        // The name used in the mix option and the report.
+        final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+
+    // Configuration, with defaults that suit a laptop.
+    private double rate = 20_000;
+    private int durationSeconds = 30;
+    private int workers = 64;
+    private int books = 100_000;
+    private int users = 10_000;
+    private double theta = 0.99;
+    private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+    // The system under load.
+    private Library library;
+    private ZipfianGenerator popularity;
+    private Fakes.DiscardingNotificationService notificationService;
+
+    // Counters for ISBNs and user Ids handed out to new books and users.
+    private final AtomicLong nextNewBook = new AtomicLong();
+    private final AtomicLong nextNewUser = new AtomicLong();
+
+    // Response time measured from the scheduled start, and service time measured from the actual start.
+    private final Map<Operation, LatencyHistogram> responseTimes = new EnumMap<>(Operation.class);
+    private final LatencyHistogram serviceTimes = new LatencyHistogram();
+    // Outcome counts, by operation and outcome.
+    private final ConcurrentHashMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator();
+        generator.configure(args);
+        generator.populate();
+        generator.run();
+    }
+
+    /**
+     * Parses {@code --option=value} arguments.
+     *
+     * @param args The command line arguments.
+     */
+    void configure(String[] args) {
+        mix.put(Operation.ADD, 2);
+        mix.put(Operation.REGISTER, 1);
+        mix.put(Operation.BORROW, 30);
+        mix.put(Operation.RETURN, 27);
+        mix.put(Operation.LOOKUP, 40);
+
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (key) {
+                case "rate": rate = Double.parseDouble(value); break;
+                case "duration": durationSeconds = Integer.parseInt(value); break;
+                case "workers": workers = Integer.parseInt(value); break;
+                case "books": books = Integer.parseInt(value); break;
+                case "users": users = Integer.parseInt(value); break;
+                case "theta": theta = Double.parseDouble(value); break;
+                case "mix": parseMix(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+    }
+
+    // Parses a mix such as "borrow:50,return:50"; operations not listed get no weight.
+    private void parseMix(String value) {
+        mix.clear();
+        for (Operation operation : Operation.values()) {
+            mix.put(operation, 0);
+        }
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            Operation operation = null;
+            for (Operation candidate : Operation.values()) {
+                if (candidate.label.equals(parts[0].trim())) {
+                    operation = candidate;
+                }
+            }
+            if (operation == null || parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            mix.put(operation, Integer.parseInt(parts[1].trim()));
+        }
+    }
+
+    /**
+     * Creates the library and fills it with the initial books and users.
+     */
+    void populate() {
+        library = new Library(new InMemoryDatabaseService(), new Fakes.FixedReviewService());
+        notificationService = new Fakes.DiscardingNotificationService();
+        popularity = new ZipfianGenerator(books, theta);
+        for (int i = 0; i < books; i++) {
+            library.addBook(new Book(Isbns.isbn(i), "Title " + i, "Author"));
+        }
+        for (int i = 0; i < users; i++) {
+            library.registerUser(new User("User " + i, Isbns.userId(i), notificationService));
+        }
+        for (Operation operation : Operation.values()) {
+            responseTimes.put(operation, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Issues requests at the configured rate for the configured duration, then prints the report.
+     */
+    void run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long totalRequests = (long) (rate * durationSeconds);
+        int totalWeight = 0;
+        for (int weight : mix.values()) {
+            totalWeight += weight;
+        }
+
+        long start = System.nanoTime();
+        for (long i = 0; i < totalRequests; i++) {
+            long scheduled = start + i * intervalNanos;
+            long now;
+            while ((now = System.nanoTime()) < scheduled) {
+                LockSupport.parkNanos(scheduled - now);
+            }
+            Operation operation = pick(ThreadLocalRandom.current().nextInt(totalWeight));
+            executor.execute(() -> execute(operation, scheduled));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+
+        report(totalRequests, elapsed);
+    }
+
+    // Maps a number below the total weight to an operation.
+    private Operation pick(int draw) {
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            draw -= entry.getValue();
+            if (draw < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty operation mix.");
+    }
+
+    /**
+     * Runs a single operation and records its latency and outcome.
+     *
+     * @param operation The operation to run.
+     * @param scheduled The time at which the operation was scheduled to start.
+     */
+    private void execute(Operation operation, long scheduled) {
+        long started = System.nanoTime();
+        String outcome = "ok";
+        try {
+            switch (operation) {
+                case ADD:
+                    library.addBook(new Book(Isbns.isbn(books + nextNewBook.getAndIncrement()), "New title", "Author"));
+                    break;
+                case REGISTER:
+                    library.registerUser(new User("New user", Isbns.userId(users + nextNewUser.getAndIncrement()), notificationService));
+                    break;
+                case BORROW:
+                    library.borrowBook(Isbns.isbn(popularity.next()), randomUser());
+                    break;
+                case RETURN:
+                    library.returnBook(Isbns.isbn(popularity.next()));
+                    break;
+                case LOOKUP:
+                    library.getBookByISBN(Isbns.isbn(popularity.next()), randomUser());
+                    break;
+            }
+        } catch (RuntimeException e) {
+            outcome = e.getClass().getSimpleName();
+        }
+        long finished = System.nanoTime();
+        responseTimes.get(operation).record(finished - scheduled);
+        serviceTimes.record(finished - started);
+        outcomes.computeIfAbsent(operation.label + " " + outcome, key -> new LongAdder()).increment();
+    }
+
+    // Picks a registered user uniformly.
+    private String randomUser() {
+        return Isbns.userId(ThreadLocalRandom.current().nextInt(users));
+    }
+
+    /**
+     * Prints throughput, outcome counts and latency percentiles.
+     *
+     * @param requests     The number of requests issued.
+     * @param elapsedNanos The time it took to complete them.
+     */
+    private void report(long requests, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Requests: %d in %.1f s, target %.0f/s, achieved %.0f/s%n",
+                requests, seconds, rate, requests / seconds);
+
+        System.out.println("Outcomes:");
+        Map<String, Long> sorted = new TreeMap<>();
+        outcomes.forEach((key, count) -> sorted.put(key, count.sum()));
+        sorted.forEach((key, count) -> System.out.printf("  %-40s %d%n", key, count));
+
+        System.out.println("Response time (from scheduled start, microseconds):");
+        System.out.printf("  %-10s %10s %10s %10s %10s %10s%n", "operation", "p50", "p90", "p99", "p99.9", "max");
+        LatencyHistogram all = new LatencyHistogram();
+        for (Map.Entry<Operation, LatencyHistogram> entry : responseTimes.entrySet()) {
+            printPercentiles(entry.getKey().label, entry.getValue());
+            all.add(entry.getValue());
+        }
+        printPercentiles("all", all);
+        System.out.println("Service time (from actual start, microseconds):");
+        printPercentiles("all", serviceTimes);
+    }
+
+    // Prints one row of percentiles, converted to microseconds.
+    private static void printPercentiles(String label, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        System.out.printf("  %-10s %10.1f %10.1f %10.1f %10.1f %10.1f%n", label,
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMax() / 1e3);
+    }
+}
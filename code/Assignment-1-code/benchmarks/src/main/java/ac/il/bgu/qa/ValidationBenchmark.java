@@ -0,0 +1,45 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the input validation performed at the start of every library operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private Library library;
+
+    @Setup
+    public void setup() {
+        library = new Library(new InMemoryDatabaseService(), new Fakes.FixedReviewService());
+    }
+
+    @Benchmark
+    public boolean isISBNValid() {
+        return library.isISBNValid("9780306406157");
+    }
+
+    @Benchmark
+    public boolean isISBNValidHyphenated() {
+        return library.isISBNValid("978-0-306-40615-7");
+    }
+
+    @Benchmark
+    public boolean isAuthorValid() {
+        return library.isAuthorValid("Dale Carnegie");
+    }
+
+    @Benchmark
+    public boolean isUserIdValid() {
+        return library.isUserIdValid("617865027123");
+    }
+}
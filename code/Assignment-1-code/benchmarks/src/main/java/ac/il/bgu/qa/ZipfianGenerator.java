@@ -0,0 +1,63 @@
+package ac.il.bgu.qa;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws item ranks from a Zipfian distribution, where rank 0 is the most popular item.
+ * Uses the rejection-free method of Gray et al. ("Quickly Generating Billion-Record Synthetic Databases").
+ */
+public class ZipfianGenerator {
+
+    // Number of items to draw from.
+    private final long items;
+    // Skew of the distribution; larger values concentrate more draws on the top items.
+    private final double theta;
+    // Precomputed constants of the method.
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    /**
+     * Constructs a new ZipfianGenerator.
+     *
+     * @param items The number of items, at least 2.
+     * @param theta The skew, between 0 (exclusive) and 1 (exclusive); 0.99 matches common workloads.
+     */
+    public ZipfianGenerator(long items, double theta) {
+        if (items < 2 || theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("Invalid Zipfian parameters.");
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    }
+
+    /**
+     * Draws the next item rank.
+     *
+     * @return A rank between 0 and items - 1.
+     */
+    public long next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        long rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, items - 1);
+    }
+
+    // Computes the generalized harmonic number of the given order.
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}